@@ -1,19 +1,32 @@
 package com.betting;
 
+import com.betting.api.controller.OfferController;
 import com.betting.api.controller.SessionController;
 import com.betting.api.controller.StakeController;
+import com.betting.api.controller.StreamController;
 import com.betting.core.service.SessionService;
 import com.betting.core.service.StakeService;
+import com.betting.core.service.impl.OffHeapStakeServiceImpl;
 import com.betting.core.service.impl.SessionServiceImpl;
+import com.betting.core.service.impl.ShardedStakeServiceImpl;
+import com.betting.core.service.impl.SignedSessionServiceImpl;
 import com.betting.core.service.impl.StakeServiceImpl;
+import com.betting.core.service.impl.TopKStakeServiceImpl;
 import com.betting.infrastructure.config.BettingConfig;
 import com.betting.infrastructure.http.interceptor.LoggingInterceptor;
 import com.betting.infrastructure.http.resolver.*;
 import com.betting.infrastructure.http.router.Router;
+import com.betting.infrastructure.http.stream.LeaderboardBroadcaster;
+import com.betting.infrastructure.persistence.FileOfferArchive;
+import com.betting.infrastructure.persistence.StakeLog;
+import com.betting.infrastructure.persistence.StakeSnapshots;
 import com.betting.util.Logger;
 import com.sun.net.httpserver.HttpServer;
 
+import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.concurrent.Executors;
 
@@ -37,6 +50,10 @@ public class BettingApplication {
     private static final BettingConfig config = new BettingConfig();
     private HttpServer server;
     private SessionService sessionService;
+    private StakeService stakeService;
+    private StakeLog stakeLog;
+    private StakeSnapshots stakeSnapshots;
+    private LeaderboardBroadcaster leaderboardBroadcaster;
 
     public static void main(String[] args) throws Exception {
         BettingApplication app = new BettingApplication();
@@ -53,8 +70,13 @@ public class BettingApplication {
         Logger.info("Starting betting service...");
 
         // Initialize services
-        sessionService = new SessionServiceImpl();
-        StakeService stakeService = new StakeServiceImpl();
+        sessionService = createSessionService();
+        stakeService = createStakeService();
+        stakeLog = openStakeLog(stakeService);
+        startOfferCompaction(stakeService);
+        leaderboardBroadcaster = new LeaderboardBroadcaster(stakeService, config.getStreamIntervalMillis(),
+                config.getStreamHeartbeatSeconds() * 1000L, config.getStreamMaxSubscribers(),
+                config.getStreamWriterThreads());
 
         // Create router
         Router router = createRouter(sessionService, stakeService);
@@ -68,12 +90,94 @@ public class BettingApplication {
         Logger.info("Server started on port %d with %d threads", config.getPort(), config.getThreadPoolSize());
     }
 
+    private StakeService createStakeService() {
+        String engine = config.getStakeEngine();
+        Logger.info("Using stake engine: %s", engine);
+        return switch (engine.toLowerCase()) {
+            case "topk" -> new TopKStakeServiceImpl();
+            case "sharded" -> new ShardedStakeServiceImpl(config.getStakeShards());
+            case "offheap" -> new OffHeapStakeServiceImpl();
+            case "skiplist" -> new StakeServiceImpl();
+            default -> {
+                Logger.warn("Unknown stake engine '%s', using skiplist", engine);
+                yield new StakeServiceImpl();
+            }
+        };
+    }
+
+    private SessionService createSessionService() {
+        String mode = config.getSessionMode();
+        Logger.info("Using session mode: %s", mode);
+        if (!mode.equalsIgnoreCase("signed")) {
+            if (!mode.equalsIgnoreCase("map")) {
+                Logger.warn("Unknown session mode '%s', using map", mode);
+            }
+            return new SessionServiceImpl();
+        }
+        if (config.getSessionSecret().isEmpty()) {
+            Logger.warn("No session secret set, signing with a random one: sessions end on restart");
+            return new SignedSessionServiceImpl();
+        }
+        return new SignedSessionServiceImpl(config.getSessionSecret().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Compacts idle and closed offers in the background; the sharded engine already keeps
+     * its books as flat arrays and is left as is
+     */
+    private void startOfferCompaction(StakeService stakeService) throws IOException {
+        if (!(stakeService instanceof StakeServiceImpl stakeServiceImpl) || config.getOfferIdleSeconds() <= 0) {
+            return;
+        }
+
+        FileOfferArchive archive = config.getOfferArchiveDirectory().isEmpty()
+                ? null : new FileOfferArchive(Path.of(config.getOfferArchiveDirectory()));
+        stakeServiceImpl.startCompaction(config.getOfferIdleSeconds() * 1000L,
+                config.getOfferClosedSeconds() * 1000L, archive);
+        Logger.info("Compacting offers idle for %d s or closed for %d s, archive: %s",
+                config.getOfferIdleSeconds(), config.getOfferClosedSeconds(),
+                archive == null ? "none" : config.getOfferArchiveDirectory());
+    }
+
+    /**
+     * Restores the latest snapshot and replays the stake log after it into the engine, then
+     * journals every new raise to the log and starts taking snapshots
+     *
+     * @return the open log, or null if durability is disabled
+     */
+    private StakeLog openStakeLog(StakeService stakeService) throws IOException {
+        if (config.getWalDirectory().isEmpty()) {
+            return null;
+        }
+
+        long startTime = System.currentTimeMillis();
+        Path directory = Path.of(config.getWalDirectory());
+        StakeLog log = new StakeLog(directory,
+                config.getWalSegmentMegabytes() << 20, config.getWalFlushMillis());
+        stakeSnapshots = new StakeSnapshots(directory.resolve("snapshots"),
+                Runtime.getRuntime().availableProcessors());
+        long cut = stakeSnapshots.restore(stakeService);
+        long records = log.replay(cut, stakeService.replayTarget());
+        if (stakeService instanceof ShardedStakeServiceImpl shardedStakeService) {
+            shardedStakeService.flush();
+        }
+        stakeService.attachJournal(log);
+        if (config.getSnapshotIntervalSeconds() > 0) {
+            stakeSnapshots.start(stakeService, log, config.getSnapshotIntervalSeconds());
+        }
+
+        Logger.info("Restored stakes from %s (snapshot cut %d, %d log records) in %d ms",
+                config.getWalDirectory(), cut, records, System.currentTimeMillis() - startTime);
+        return log;
+    }
+
     private Router createRouter(SessionService sessionService, StakeService stakeService) {
         // Create parameter resolvers
         List<ParamResolver> resolvers = List.of(
                 new PathParamResolver(),
                 new QueryParamResolver(),
                 new BodyParamResolver(),
+                new HeaderParamResolver(),
                 new HttpExchangeResolver()
         );
 
@@ -86,7 +190,9 @@ public class BettingApplication {
         // Register controllers
         router.registerControllers(
                 new SessionController(sessionService),
-                new StakeController(sessionService, stakeService)
+                new StakeController(sessionService, stakeService, leaderboardBroadcaster),
+                new OfferController(stakeService, config.getAdminToken()),
+                new StreamController(leaderboardBroadcaster)
         );
 
         return router;
@@ -97,6 +203,11 @@ public class BettingApplication {
         Logger.info("Shutting down betting service...");
 
         try {
+            // Close event streams first, so stopping the server does not wait for them
+            if (leaderboardBroadcaster != null) {
+                leaderboardBroadcaster.shutdown();
+            }
+
             // Stop HTTP server
             if (server != null) {
                 server.stop(5); // 5 second timeout
@@ -107,6 +218,21 @@ public class BettingApplication {
                 sessionServiceImpl.shutdown();
             }
 
+            // Drain and stop stake shard owners, or stop offer compaction
+            if (stakeService instanceof ShardedStakeServiceImpl shardedStakeService) {
+                shardedStakeService.shutdown();
+            } else if (stakeService instanceof StakeServiceImpl stakeServiceImpl) {
+                stakeServiceImpl.shutdown();
+            }
+
+            // Stop snapshots, then force the stake log after the last raise has been journaled
+            if (stakeSnapshots != null) {
+                stakeSnapshots.shutdown();
+            }
+            if (stakeLog != null) {
+                stakeLog.shutdown();
+            }
+
             Logger.info("Service shutdown completed");
         } catch (Exception e) {
             Logger.error("Error during shutdown", e, e.getMessage());
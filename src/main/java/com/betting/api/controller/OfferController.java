@@ -0,0 +1,87 @@
+package com.betting.api.controller;
+
+import com.betting.api.exception.BettingException;
+import com.betting.core.model.OfferStatus;
+import com.betting.core.service.StakeService;
+import com.betting.infrastructure.http.router.BodyParam;
+import com.betting.infrastructure.http.router.HeaderParam;
+import com.betting.infrastructure.http.router.PathParam;
+import com.betting.infrastructure.http.router.Route;
+import com.betting.util.BettingValidator;
+import com.betting.util.Logger;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Locale;
+
+/**
+ * Bet offer lifecycle: open, suspended and closed
+ * <p>
+ * Anyone may read a status; changing one takes the operators' admin token in the
+ * {@code X-Admin-Token} header, since a close cannot be undone.
+ */
+public class OfferController {
+
+    private final StakeService stakeService;
+    private final byte[] adminToken;
+
+    /**
+     * @param adminToken token required to change a status; empty rejects every change
+     */
+    public OfferController(StakeService stakeService, String adminToken) {
+        this.stakeService = stakeService;
+        this.adminToken = adminToken.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Route(method = "PUT", path = "/{betOfferId}/status")
+    public String putStatus(@PathParam("betOfferId") int betOfferId,
+                            @HeaderParam("X-Admin-Token") String token,
+                            @BodyParam("status") String status) {
+        authorize(token);
+        BettingValidator.betOffer(betOfferId);
+        OfferStatus next = parseStatus(status);
+
+        try {
+            stakeService.setOfferStatus(betOfferId, next);
+            return "";
+        } catch (BettingException e) {
+            // Re-throw BettingException as-is
+            throw e;
+        } catch (Exception e) {
+            Logger.error("Error changing offer status", e, e.getMessage());
+            throw new BettingException(BettingException.ErrorCode.INTERNAL_ERROR,
+                "Failed to change status of betOfferId: " + betOfferId);
+        }
+    }
+
+    @Route(method = "GET", path = "/{betOfferId}/status")
+    public String getStatus(@PathParam("betOfferId") int betOfferId) {
+        BettingValidator.betOffer(betOfferId);
+
+        return stakeService.getOfferStatus(betOfferId).name();
+    }
+
+    /**
+     * Compares the whole token whatever the first difference, so timing reveals nothing
+     */
+    private void authorize(String token) {
+        if (adminToken.length == 0 || token == null
+                || !MessageDigest.isEqual(adminToken, token.getBytes(StandardCharsets.UTF_8))) {
+            throw new BettingException(BettingException.ErrorCode.ADMIN_REQUIRED,
+                "Changing an offer status takes a valid X-Admin-Token header");
+        }
+    }
+
+    private static OfferStatus parseStatus(String status) {
+        if (status == null || status.isBlank()) {
+            throw new BettingException(BettingException.ErrorCode.MISSING_PARAMETER,
+                "Offer status is missing");
+        }
+        try {
+            return OfferStatus.valueOf(status.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new BettingException(BettingException.ErrorCode.INVALID_PARAMETER_FORMAT,
+                "Unknown offer status: " + status);
+        }
+    }
+}
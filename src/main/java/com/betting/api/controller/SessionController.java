@@ -4,6 +4,7 @@ import com.betting.api.exception.BettingException;
 import com.betting.core.model.Session;
 import com.betting.core.service.SessionService;
 import com.betting.infrastructure.http.router.PathParam;
+import com.betting.infrastructure.http.router.QueryParam;
 import com.betting.infrastructure.http.router.Route;
 import com.betting.util.BettingValidator;
 
@@ -27,4 +28,20 @@ public class SessionController {
                 "Failed to create session for customer: " + customerId);
         }
     }
+
+    /**
+     * Logs a session out: later requests with its key are rejected
+     */
+    @Route(method = "DELETE", path = "/session")
+    public String deleteSession(@QueryParam("sessionkey") String sessionKey) {
+        if (sessionKey == null || sessionKey.isBlank()) {
+            throw new BettingException(BettingException.ErrorCode.MISSING_PARAMETER,
+                "Session key is required");
+        }
+        if (!sessionService.invalidateSession(sessionKey)) {
+            throw new BettingException(BettingException.ErrorCode.INVALID_SESSION,
+                "Invalid or expired session: " + sessionKey);
+        }
+        return "";
+    }
 }
@@ -1,24 +1,45 @@
 package com.betting.api.controller;
 
 import com.betting.api.exception.BettingException;
+import com.betting.core.model.Leaderboard;
+import com.betting.core.model.StakeResult;
 import com.betting.core.service.SessionService;
 import com.betting.core.service.StakeService;
 import com.betting.infrastructure.http.router.BodyParam;
+import com.betting.infrastructure.http.router.ETags;
+import com.betting.infrastructure.http.router.HeaderParam;
 import com.betting.infrastructure.http.router.PathParam;
 import com.betting.infrastructure.http.router.QueryParam;
+import com.betting.infrastructure.http.router.Response;
 import com.betting.infrastructure.http.router.Route;
+import com.betting.infrastructure.http.stream.LeaderboardBroadcaster;
 import com.betting.util.Logger;
 import com.betting.util.BettingValidator;
+import com.sun.net.httpserver.HttpExchange;
 
-import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 public class StakeController {
+    private static final int MAX_BATCH_SIZE = 10_000;
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int DEFAULT_WINDOW_MINUTES = 5;
+
     private final SessionService sessionService;
     private final StakeService stakeService;
+    private final LeaderboardBroadcaster broadcaster;
 
     public StakeController(SessionService sessionService, StakeService stakeService) {
+        this(sessionService, stakeService, null);
+    }
+
+    /**
+     * @param broadcaster parks long polls of the leaderboard; without one, {@code wait} is ignored
+     */
+    public StakeController(SessionService sessionService, StakeService stakeService,
+                           LeaderboardBroadcaster broadcaster) {
         this.sessionService = sessionService;
         this.stakeService = stakeService;
+        this.broadcaster = broadcaster;
     }
 
     @Route(method = "POST", path = "/{betOfferId}/stake")
@@ -43,14 +64,59 @@ public class StakeController {
         }
     }
 
+    /**
+     * Submits many stakes under one session
+     * <p>
+     * Body: comma-separated {@code betOfferId=stake} items. Response: one result code per item,
+     * in request order (see {@link StakeResult}), e.g. {@code AAOA}.
+     */
+    @Route(method = "POST", path = "/stakes")
+    public String postStakes(@QueryParam("sessionkey") String sessionKey,
+                             @BodyParam String body) {
+        int customerId = BettingValidator.authenticateCustomer(sessionKey, sessionService);
+        StakeBatch batch = parseBatch(body);
+
+        try {
+            StakeResult[] results = stakeService.submitStakes(customerId, batch.betOfferIds(), batch.stakes());
+            StringBuilder codes = new StringBuilder(results.length);
+            for (StakeResult result : results) {
+                codes.append(result.getCode());
+            }
+            return codes.toString();
+        } catch (BettingException e) {
+            // Re-throw BettingException as-is
+            throw e;
+        } catch (Exception e) {
+            Logger.error("Error submitting stake batch", e, e.getMessage());
+            throw new BettingException(BettingException.ErrorCode.INTERNAL_ERROR,
+                "Failed to submit stake batch for customer: " + customerId);
+        }
+    }
 
+    /**
+     * Top 20 by default; {@code limit} and {@code offset} select another range of ranks
+     * <p>
+     * The top 20 carries an {@code ETag} of its version: a matching {@code If-None-Match} is
+     * answered {@code 304 Not Modified}, or, with {@code wait} seconds, held until the
+     * leaderboard changes or the wait ends.
+     */
     @Route(method = "GET", path = "/{betOfferId}/highstakes")
-    public String getHighStakes(@PathParam("betOfferId") int betOfferId) {
+    public Response getHighStakes(@PathParam("betOfferId") int betOfferId,
+                                  @QueryParam("limit") Integer limit,
+                                  @QueryParam("offset") Integer offset,
+                                  @QueryParam("wait") Integer wait,
+                                  @HeaderParam("If-None-Match") String ifNoneMatch,
+                                  HttpExchange exchange) {
         BettingValidator.betOffer(betOfferId);
 
         try {
-            List<String> top20 = stakeService.getTop20Stakes(betOfferId);
-            return String.join(",", top20);
+            if (limit == null && offset == null) {
+                return getTopStakes(betOfferId, wait == null ? 0 : wait, ifNoneMatch, exchange);
+            }
+            int first = offset == null ? 0 : offset;
+            int size = limit == null ? DEFAULT_PAGE_SIZE : limit;
+            BettingValidator.leaderboardPage(first, size);
+            return Response.ok(stakeService.getStakes(betOfferId, first, size).body());
         } catch (BettingException e) {
             // Re-throw BettingException as-is
             throw e;
@@ -59,6 +125,156 @@ public class StakeController {
                     "Failed to retrieve top stakes for betOfferId: " + betOfferId);
         }
     }
-}
 
+    private Response getTopStakes(int betOfferId, int wait, String ifNoneMatch, HttpExchange exchange) {
+        BettingValidator.leaderboardWait(wait);
+        // Published by the stake engine; its version decides a conditional request before any body is touched
+        Leaderboard current = stakeService.getLeaderboard(betOfferId);
+        String etag = ETags.of(current.getVersion());
+        if (!ETags.matches(ifNoneMatch, etag)) {
+            return Response.ok(current.body()).header("ETag", etag);
+        }
+        if (wait > 0 && broadcaster != null && exchange != null) {
+            broadcaster.await(betOfferId, current.getVersion(), wait * 1000L, exchange);
+            return Response.DEFERRED;
+        }
+        return Response.notModified().header("ETag", etag);
+    }
+
+    /**
+     * Top 20 by the highest stake submitted within the last {@code minutes}, 5 by default
+     */
+    @Route(method = "GET", path = "/{betOfferId}/highstakes/recent")
+    public byte[] getRecentHighStakes(@PathParam("betOfferId") int betOfferId,
+                                      @QueryParam("minutes") Integer minutes) {
+        BettingValidator.betOffer(betOfferId);
+        int window = minutes == null ? DEFAULT_WINDOW_MINUTES : minutes;
+
+        try {
+            return stakeService.getRecentLeaderboard(betOfferId, TimeUnit.MINUTES.toMillis(window)).body();
+        } catch (BettingException e) {
+            // Re-throw BettingException as-is
+            throw e;
+        } catch (Exception e) {
+            throw new BettingException(BettingException.ErrorCode.INTERNAL_ERROR,
+                    "Failed to retrieve recent top stakes for betOfferId: " + betOfferId);
+        }
+    }
+
+    /**
+     * Count, sum, p50/p90/p99 and max of the customers' max stakes on the offer
+     */
+    @Route(method = "GET", path = "/{betOfferId}/distribution")
+    public String getStakeDistribution(@PathParam("betOfferId") int betOfferId) {
+        BettingValidator.betOffer(betOfferId);
+
+        try {
+            return stakeService.getStakeDistribution(betOfferId).format();
+        } catch (BettingException e) {
+            // Re-throw BettingException as-is
+            throw e;
+        } catch (Exception e) {
+            throw new BettingException(BettingException.ErrorCode.INTERNAL_ERROR,
+                    "Failed to retrieve stake distribution for betOfferId: " + betOfferId);
+        }
+    }
 
+    /**
+     * Lowest stake that would enter the top {@code n} of the offer right now
+     */
+    @Route(method = "GET", path = "/{betOfferId}/threshold")
+    public String getEntryThreshold(@PathParam("betOfferId") int betOfferId,
+                                    @QueryParam("n") Integer n) {
+        BettingValidator.betOffer(betOfferId);
+        int rank = n == null ? DEFAULT_PAGE_SIZE : n;
+        BettingValidator.leaderboardRank(rank);
+
+        try {
+            return Integer.toString(stakeService.getEntryThreshold(betOfferId, rank));
+        } catch (BettingException e) {
+            // Re-throw BettingException as-is
+            throw e;
+        } catch (Exception e) {
+            throw new BettingException(BettingException.ErrorCode.INTERNAL_ERROR,
+                    "Failed to retrieve entry threshold for betOfferId: " + betOfferId);
+        }
+    }
+
+    /**
+     * Top 20 customers by the sum of their max stakes over every offer, as {@code customerId=total}
+     */
+    @Route(method = "GET", path = "/highstakes")
+    public byte[] getCustomerHighStakes() {
+        try {
+            return stakeService.getCustomerLeaderboard().body();
+        } catch (Exception e) {
+            throw new BettingException(BettingException.ErrorCode.INTERNAL_ERROR,
+                    "Failed to retrieve the customer leaderboard");
+        }
+    }
+
+    /**
+     * Position of one customer on the offer, including outside the top 20; equal stakes share a rank
+     */
+    @Route(method = "GET", path = "/{betOfferId}/rank/{customerId}")
+    public String getRank(@PathParam("betOfferId") int betOfferId,
+                          @PathParam("customerId") int customerId) {
+        BettingValidator.betOffer(betOfferId);
+        BettingValidator.customer(customerId);
+
+        try {
+            return Integer.toString(stakeService.getRank(betOfferId, customerId));
+        } catch (BettingException e) {
+            // Re-throw BettingException as-is
+            throw e;
+        } catch (Exception e) {
+            throw new BettingException(BettingException.ErrorCode.INTERNAL_ERROR,
+                    "Failed to retrieve rank of customer " + customerId + " for betOfferId: " + betOfferId);
+        }
+    }
+
+    /**
+     * Parses {@code betOfferId=stake,betOfferId=stake,...}; range checks are left to the engine
+     */
+    private static StakeBatch parseBatch(String body) {
+        if (body == null || body.isBlank()) {
+            throw new BettingException(BettingException.ErrorCode.MISSING_PARAMETER,
+                "Stake batch is empty");
+        }
+
+        // Counted before anything is allocated per item, so an oversized body is rejected cheaply
+        String text = body.trim();
+        int end = text.length();
+        while (end > 0 && text.charAt(end - 1) == ',') {
+            end--;
+        }
+        int count = 1;
+        for (int comma = text.indexOf(','); comma >= 0 && comma < end; comma = text.indexOf(',', comma + 1)) {
+            if (++count > MAX_BATCH_SIZE) {
+                throw new BettingException(BettingException.ErrorCode.INVALID_PARAMETER_FORMAT,
+                    "Stake batch exceeds " + MAX_BATCH_SIZE + " items");
+            }
+        }
+
+        int[] betOfferIds = new int[count];
+        int[] stakes = new int[count];
+        int start = 0;
+        for (int i = 0; i < count; i++) {
+            int comma = i == count - 1 ? end : text.indexOf(',', start);
+            String item = text.substring(start, comma);
+            int separator = item.indexOf('=');
+            try {
+                betOfferIds[i] = Integer.parseInt(item.substring(0, Math.max(separator, 0)).trim());
+                stakes[i] = Integer.parseInt(item.substring(separator + 1).trim());
+            } catch (NumberFormatException e) {
+                throw new BettingException(BettingException.ErrorCode.INVALID_PARAMETER_FORMAT,
+                    "Invalid stake batch item " + (i + 1) + ": " + item);
+            }
+            start = comma + 1;
+        }
+        return new StakeBatch(betOfferIds, stakes);
+    }
+
+    private record StakeBatch(int[] betOfferIds, int[] stakes) {
+    }
+}
@@ -0,0 +1,32 @@
+package com.betting.api.controller;
+
+import com.betting.infrastructure.http.router.PathParam;
+import com.betting.infrastructure.http.router.Route;
+import com.betting.infrastructure.http.stream.LeaderboardBroadcaster;
+import com.betting.util.BettingValidator;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+
+/**
+ * Server-Sent Events streams of leaderboard changes
+ */
+public class StreamController {
+
+    private final LeaderboardBroadcaster broadcaster;
+
+    public StreamController(LeaderboardBroadcaster broadcaster) {
+        this.broadcaster = broadcaster;
+    }
+
+    /**
+     * Opens a {@code text/event-stream} of the offer's top 20: one {@code leaderboard} event
+     * now and one after each change, its ID the leaderboard version
+     */
+    @Route(method = "GET", path = "/{betOfferId}/highstakes/stream")
+    public void streamHighStakes(@PathParam("betOfferId") int betOfferId, HttpExchange exchange) throws IOException {
+        BettingValidator.betOffer(betOfferId);
+
+        broadcaster.subscribe(betOfferId, exchange);
+    }
+}
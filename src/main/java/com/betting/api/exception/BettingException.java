@@ -49,12 +49,15 @@ public class BettingException extends RuntimeException {
         INVALID_SESSION("Invalid session", 403),
         SESSION_EXPIRED("Session expired", 403),
         SESSION_NOT_FOUND("Session not found", 404),
+        ADMIN_REQUIRED("Admin credential required", 403),
         
         // Stake related errors
         INVALID_STAKE_AMOUNT("Invalid stake amount", 400),
         INVALID_BET_OFFER_ID("Invalid bet offer ID", 400),
         STAKE_TOO_LOW("Stake amount too low", 400),
         STAKE_TOO_HIGH("Stake amount too high", 400),
+        OFFER_SUSPENDED("Bet offer is suspended", 409),
+        OFFER_CLOSED("Bet offer is closed", 409),
         
         // Customer related errors
         INVALID_CUSTOMER_ID("Invalid customer ID", 400),
@@ -0,0 +1,99 @@
+package com.betting.core.model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable, version-stamped top stakes of one bet offer
+ * <p>
+ * The response body ({@code customerId=stake} entries joined by commas) is encoded to UTF-8
+ * once when the leaderboard is built, so serving it needs no per-request allocation.
+ */
+public final class Leaderboard {
+
+    public static final Leaderboard EMPTY = new Leaderboard(0, new int[0], new int[0]);
+
+    private final long version;
+    private final int[] customerIds;
+    private final int[] stakes;
+    private final byte[] body;
+
+    /**
+     * @param version     monotonically increasing per offer, bumped whenever the top entries change
+     * @param customerIds customer IDs, highest stake first; the array is owned by the leaderboard
+     * @param stakes      stakes matching {@code customerIds}; the array is owned by the leaderboard
+     */
+    public Leaderboard(long version, int[] customerIds, int[] stakes) {
+        if (customerIds.length != stakes.length) {
+            throw new IllegalArgumentException("Customer IDs and stakes must have the same length");
+        }
+        this.version = version;
+        this.customerIds = customerIds;
+        this.stakes = stakes;
+        this.body = render(customerIds, stakes);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int size() {
+        return customerIds.length;
+    }
+
+    public int getCustomerId(int index) {
+        return customerIds[index];
+    }
+
+    public int getStake(int index) {
+        return stakes[index];
+    }
+
+    /**
+     * @return the pre-encoded UTF-8 response body; shared, must not be modified
+     */
+    public byte[] body() {
+        return body;
+    }
+
+    /**
+     * @return entries formatted as customerId=stake, highest stake first
+     */
+    public List<String> entries() {
+        List<String> result = new ArrayList<>(customerIds.length);
+        for (int i = 0; i < customerIds.length; i++) {
+            result.add(customerIds[i] + "=" + stakes[i]);
+        }
+        return result;
+    }
+
+    /**
+     * @return entries ranked {@code offset + 1} to {@code offset + limit}, with this leaderboard's version
+     */
+    public Leaderboard slice(int offset, int limit) {
+        int from = Math.min(offset, customerIds.length);
+        int to = (int) Math.min((long) from + limit, customerIds.length);
+        if (from == 0 && to == customerIds.length) {
+            return this;
+        }
+        return new Leaderboard(version, Arrays.copyOfRange(customerIds, from, to), Arrays.copyOfRange(stakes, from, to));
+    }
+
+    private static byte[] render(int[] customerIds, int[] stakes) {
+        StringBuilder sb = new StringBuilder(customerIds.length * 16);
+        for (int i = 0; i < customerIds.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(customerIds[i]).append('=').append(stakes[i]);
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String toString() {
+        return new String(body, StandardCharsets.UTF_8);
+    }
+}
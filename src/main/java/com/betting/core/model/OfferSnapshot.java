@@ -0,0 +1,35 @@
+package com.betting.core.model;
+
+/**
+ * Point-in-time copy of one bet offer's stake state, for snapshots, restore and compaction
+ *
+ * @param betOfferId  the offer
+ * @param customerIds every customer with a stake on the offer, ascending
+ * @param stakes      max stake of each customer, matching {@code customerIds}
+ * @param leaderboard the offer's top entries, which keep their tie order across a restore
+ * @param status      the offer's lifecycle status
+ */
+public record OfferSnapshot(int betOfferId, int[] customerIds, int[] stakes, Leaderboard leaderboard,
+                            OfferStatus status) {
+
+    public OfferSnapshot {
+        if (customerIds.length != stakes.length) {
+            throw new IllegalArgumentException("Customer IDs and stakes must have the same length");
+        }
+    }
+
+    /**
+     * Snapshot of an open offer
+     */
+    public OfferSnapshot(int betOfferId, int[] customerIds, int[] stakes, Leaderboard leaderboard) {
+        this(betOfferId, customerIds, stakes, leaderboard, OfferStatus.OPEN);
+    }
+
+    public OfferSnapshot withStatus(OfferStatus status) {
+        return new OfferSnapshot(betOfferId, customerIds, stakes, leaderboard, status);
+    }
+
+    public int size() {
+        return customerIds.length;
+    }
+}
@@ -0,0 +1,44 @@
+package com.betting.core.model;
+
+import java.util.Optional;
+
+/**
+ * Lifecycle of a bet offer: open on its first stake, suspended and reopened at will, and
+ * closed for good
+ */
+public enum OfferStatus {
+    /**
+     * Accepting stakes
+     */
+    OPEN('O'),
+    /**
+     * Temporarily not accepting stakes, e.g. while the odds are being changed
+     */
+    SUSPENDED('S'),
+    /**
+     * Settled; no further stakes, and the offer can no longer be reopened
+     */
+    CLOSED('C');
+
+    private final char code;
+
+    OfferStatus(char code) {
+        this.code = code;
+    }
+
+    /**
+     * @return the single-character code used in logs and snapshots
+     */
+    public char getCode() {
+        return code;
+    }
+
+    public static Optional<OfferStatus> fromCode(int code) {
+        for (OfferStatus status : values()) {
+            if (status.code == code) {
+                return Optional.of(status);
+            }
+        }
+        return Optional.empty();
+    }
+}
@@ -4,8 +4,8 @@ public class Session {
 
     private final int customerId;
     /**
-     * session key : a "reasonably" unique - letters and digits only string identifying the session
-     * example: "QWER12A"
+     * session key : a unique - letters and digits only string identifying the session
+     * example: "QWER3ZABT7CDEF2GHJKLMN4PQA"
      */
     private final String sessionKey;
     private volatile long expiryTime;
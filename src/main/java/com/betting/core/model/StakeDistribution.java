@@ -0,0 +1,23 @@
+package com.betting.core.model;
+
+/**
+ * Distribution of the customers' max stakes on one bet offer
+ *
+ * @param count number of customers with a stake
+ * @param sum   sum of their max stakes
+ * @param p50   median max stake, rounded up to within about 3%
+ * @param p90   90th percentile, rounded up likewise
+ * @param p99   99th percentile, rounded up likewise
+ * @param max   highest max stake, exact
+ */
+public record StakeDistribution(long count, long sum, int p50, int p90, int p99, int max) {
+
+    public static final StakeDistribution EMPTY = new StakeDistribution(0, 0, 0, 0, 0, 0);
+
+    /**
+     * @return {@code count=..,sum=..,p50=..,p90=..,p99=..,max=..}
+     */
+    public String format() {
+        return "count=" + count + ",sum=" + sum + ",p50=" + p50 + ",p90=" + p90 + ",p99=" + p99 + ",max=" + max;
+    }
+}
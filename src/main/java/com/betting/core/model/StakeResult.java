@@ -0,0 +1,27 @@
+package com.betting.core.model;
+
+/**
+ * Outcome of one item of a stake batch, reported as a single character
+ */
+public enum StakeResult {
+    /**
+     * Stake accepted; like a single submit, it only counts if higher than the customer's max
+     */
+    ACCEPTED('A'),
+    INVALID_BET_OFFER('O'),
+    INVALID_STAKE('S'),
+    /**
+     * The offer is suspended or closed
+     */
+    OFFER_NOT_OPEN('N');
+
+    private final char code;
+
+    StakeResult(char code) {
+        this.code = code;
+    }
+
+    public char getCode() {
+        return code;
+    }
+}
@@ -0,0 +1,24 @@
+package com.betting.core.service;
+
+import com.betting.core.model.OfferSnapshot;
+
+import java.io.IOException;
+
+/**
+ * Cold storage for compacted bet offers, so that their stakes need not stay on the heap
+ */
+public interface OfferArchive {
+
+    /**
+     * Stores an offer, replacing any earlier copy; durable once this returns
+     */
+    void store(OfferSnapshot snapshot) throws IOException;
+
+    /**
+     * @return the offer last stored
+     * @throws IOException if the offer was never stored or cannot be read back
+     */
+    OfferSnapshot load(int betOfferId) throws IOException;
+
+    void delete(int betOfferId) throws IOException;
+}
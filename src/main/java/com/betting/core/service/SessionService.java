@@ -3,9 +3,32 @@ package com.betting.core.service;
 import com.betting.core.model.Session;
 
 public interface SessionService {
+
+    /**
+     * Returned by {@link #authenticate} for a session that is unknown, forged or expired
+     */
+    int INVALID_SESSION = -1;
+
     Session createOrGetSession(int customerId);
 
     boolean validateSession(String sessionKey);
 
     int getCustomerId(String sessionKey);
+
+    /**
+     * Validates a session and resolves its customer in one step
+     *
+     * @return the customer ID, 0 if the session is valid but has no customer, or
+     * {@link #INVALID_SESSION}
+     */
+    default int authenticate(String sessionKey) {
+        return validateSession(sessionKey) ? getCustomerId(sessionKey) : INVALID_SESSION;
+    }
+
+    /**
+     * Ends a session before it expires, e.g. on logout
+     *
+     * @return true if the session was valid
+     */
+    boolean invalidateSession(String sessionKey);
 }
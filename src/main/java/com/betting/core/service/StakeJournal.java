@@ -0,0 +1,25 @@
+package com.betting.core.service;
+
+import com.betting.core.model.OfferStatus;
+
+/**
+ * Receives every stake that raised a customer's max stake, and every offer status change,
+ * e.g. to make them durable
+ * <p>
+ * Called on the submitting (or shard-owner) thread before the submit completes, so
+ * implementations must be cheap and thread-safe.
+ */
+@FunctionalInterface
+public interface StakeJournal {
+
+    StakeJournal NONE = (customerId, betOfferId, stake) -> {
+    };
+
+    void append(int customerId, int betOfferId, int stake);
+
+    /**
+     * Receives every change of an offer's lifecycle status
+     */
+    default void offerStatus(int betOfferId, OfferStatus status) {
+    }
+}
@@ -1,8 +1,144 @@
 package com.betting.core.service;
 
+import com.betting.api.exception.BettingException;
+import com.betting.core.model.Leaderboard;
+import com.betting.core.model.OfferSnapshot;
+import com.betting.core.model.OfferStatus;
+import com.betting.core.model.StakeDistribution;
+import com.betting.core.model.StakeResult;
+
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface StakeService {
     void submitStake(int customerId, int betOfferId, int stake);
     List<String> getTop20Stakes(int betOfferId);
+
+    /**
+     * @return the pre-rendered top 20 of the offer, {@link Leaderboard#EMPTY} if it has no stakes
+     */
+    Leaderboard getLeaderboard(int betOfferId);
+
+    /**
+     * @return the top 20 customers by the sum of their max stakes over every offer, rendered
+     * like an offer's leaderboard ({@code customerId=total})
+     */
+    Leaderboard getCustomerLeaderboard();
+
+    /**
+     * @param windowMillis how far back to look, rounded up to the engine's window buckets
+     * @return the offer's top 20 customers by their highest stake submitted within the window
+     * @throws BettingException {@code INVALID_PARAMETER_FORMAT} if the window is not positive
+     *                          or longer than the engine keeps
+     */
+    Leaderboard getRecentLeaderboard(int betOfferId, long windowMillis);
+
+    /**
+     * @return count, sum, percentiles and max of the customers' max stakes on the offer,
+     * {@link StakeDistribution#EMPTY} if it has no stakes
+     */
+    StakeDistribution getStakeDistribution(int betOfferId);
+
+    /**
+     * Ranks {@code offset + 1} to {@code offset + limit} of the offer, highest stake first, in
+     * the order of {@link #getLeaderboard}; engines that keep only the top entries return
+     * nothing past them
+     */
+    Leaderboard getStakes(int betOfferId, int offset, int limit);
+
+    /**
+     * @return the lowest stake that would enter the offer's top {@code n} now: one above the
+     * n-th highest stake, or 0 while fewer than {@code n} customers have a stake
+     * @throws BettingException {@code INVALID_PARAMETER_FORMAT} if {@code n} is past the
+     *                          entries the engine keeps
+     */
+    int getEntryThreshold(int betOfferId, int n);
+
+    /**
+     * @return the customer's position on the offer: 1 + the number of customers with a higher
+     * stake, so equal stakes share a rank
+     * @throws BettingException {@code CUSTOMER_NOT_FOUND} if the customer has no stake on the
+     *                          offer, or none among the entries the engine keeps
+     */
+    int getRank(int betOfferId, int customerId);
+
+    /**
+     * Moves an offer through its lifecycle; offers are open until first suspended or closed
+     *
+     * @throws BettingException {@code OFFER_CLOSED} when reopening or suspending a closed offer
+     */
+    void setOfferStatus(int betOfferId, OfferStatus status);
+
+    OfferStatus getOfferStatus(int betOfferId);
+
+    /**
+     * Applies a raise replayed from the stake log: like {@link #submitStake}, but accepted
+     * whatever the offer's status, since it was accepted before
+     */
+    void restoreStake(int customerId, int betOfferId, int stake);
+
+    /**
+     * @return a journal applying replayed stake log records to this engine, without journaling them
+     */
+    default StakeJournal replayTarget() {
+        return new StakeJournal() {
+            @Override
+            public void append(int customerId, int betOfferId, int stake) {
+                restoreStake(customerId, betOfferId, stake);
+            }
+
+            @Override
+            public void offerStatus(int betOfferId, OfferStatus status) {
+                // The snapshot may already hold a later close: older records cannot reopen the offer
+                if (status == OfferStatus.CLOSED || getOfferStatus(betOfferId) != OfferStatus.CLOSED) {
+                    setOfferStatus(betOfferId, status);
+                }
+            }
+        };
+    }
+
+    /**
+     * Starts passing every accepted stake raise and status change to {@code journal}; call
+     * before serving requests
+     */
+    void attachJournal(StakeJournal journal);
+
+    /**
+     * Passes a copy of every offer to {@code consumer} without blocking submits
+     * <p>
+     * Weakly consistent: each copy holds every raise applied before the call, and may hold
+     * some applied during it.
+     */
+    void exportOffers(Consumer<OfferSnapshot> consumer);
+
+    /**
+     * Merges a snapshot of one offer into the engine, without journaling it; call before
+     * serving requests. Different offers may be imported concurrently.
+     */
+    void importOffer(OfferSnapshot snapshot);
+
+    /**
+     * Submits many stakes of one customer; an invalid item is reported without failing the batch
+     *
+     * @param betOfferIds offer of each item
+     * @param stakes      stake of each item, matching {@code betOfferIds}
+     * @return the result of each item, in request order
+     */
+    default StakeResult[] submitStakes(int customerId, int[] betOfferIds, int[] stakes) {
+        StakeResult[] results = new StakeResult[betOfferIds.length];
+        for (int i = 0; i < betOfferIds.length; i++) {
+            try {
+                submitStake(customerId, betOfferIds[i], stakes[i]);
+                results[i] = StakeResult.ACCEPTED;
+            } catch (BettingException e) {
+                results[i] = switch (e.getErrorCode()) {
+                    case INVALID_BET_OFFER_ID -> StakeResult.INVALID_BET_OFFER;
+                    case INVALID_STAKE_AMOUNT, STAKE_TOO_HIGH -> StakeResult.INVALID_STAKE;
+                    case OFFER_SUSPENDED, OFFER_CLOSED -> StakeResult.OFFER_NOT_OPEN;
+                    default -> throw e;
+                };
+            }
+        }
+        return results;
+    }
 }
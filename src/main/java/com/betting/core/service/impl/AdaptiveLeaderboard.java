@@ -0,0 +1,305 @@
+package com.betting.core.service.impl;
+
+import com.betting.core.model.Leaderboard;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Top-K leaderboard of one bet offer that splits itself under write contention
+ * <p>
+ * Normally a single {@link LeaderboardCache}. When too many publish CASes fail within a
+ * window (a hot offer during a big match), writes move to per-stripe top-K caches chosen by
+ * customer hash, and reads merge the stripes' top entries. Every customer lives in exactly one
+ * stripe, so the merged top K of the stripes is the offer's top K. The merged leaderboard is
+ * cached until a stripe changes. Once the offer's write rate drops, the stripes are merged
+ * back into a single cache.
+ * <p>
+ * A layout switch seeds the new layout from the old one before publishing it, then re-applies
+ * the old layout's final entries, which catches writers that published to the old layout
+ * after seeding but before the switch. A writer that finds the layout changed under it
+ * re-applies its stake to the new one. Applying a stake is a max-merge, so repeats are
+ * harmless. Equal stakes keep arrival order within a
+ * stripe, but not across stripes while the offer is split.
+ */
+class AdaptiveLeaderboard {
+
+    private static final long WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    /**
+     * Failed publish CASes per window that split the leaderboard
+     */
+    private static final long HOT_CONTENTION = 64;
+
+    /**
+     * Admitted stakes per window below which a split leaderboard is merged back
+     */
+    private static final long COOL_OFFERS = 256;
+
+    private static final int STRIPES = Math.max(2, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2));
+
+    /**
+     * Version jump on a layout switch; more than the writers that can still be in flight
+     * on the old layout, so versions keep increasing across the switch
+     */
+    private static final long LAYOUT_VERSION_GAP = 1 << 16;
+
+    private final int capacity;
+    private final long windowNanos;
+    private final long hotContention;
+    private final long coolOffers;
+    private final AtomicReference<Layout> layout;
+    private final LongAdder contention = new LongAdder();
+    private final LongAdder offers = new LongAdder();
+    private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+
+    AdaptiveLeaderboard(int capacity) {
+        this(capacity, Leaderboard.EMPTY);
+    }
+
+    /**
+     * @param initial first published leaderboard, e.g. restored from a snapshot
+     */
+    AdaptiveLeaderboard(int capacity, Leaderboard initial) {
+        this(capacity, initial, WINDOW_NANOS, HOT_CONTENTION, COOL_OFFERS);
+    }
+
+    /**
+     * @param windowNanos   length of a measurement window
+     * @param hotContention failed publish CASes per window that split the leaderboard
+     * @param coolOffers    admitted stakes per window below which it is merged back
+     */
+    AdaptiveLeaderboard(int capacity, long windowNanos, long hotContention, long coolOffers) {
+        this(capacity, Leaderboard.EMPTY, windowNanos, hotContention, coolOffers);
+    }
+
+    private AdaptiveLeaderboard(int capacity, Leaderboard initial, long windowNanos, long hotContention,
+                                long coolOffers) {
+        this.capacity = capacity;
+        this.windowNanos = windowNanos;
+        this.hotContention = hotContention;
+        this.coolOffers = coolOffers;
+        this.layout = new AtomicReference<>(new Single(new LeaderboardCache(capacity, initial)));
+    }
+
+    Leaderboard get() {
+        return layout.get().get();
+    }
+
+    /**
+     * Cheap pre-check against the published leaderboard
+     *
+     * @return true if a customer now holding {@code stake} can enter the top entries
+     */
+    boolean admits(int stake) {
+        return layout.get().admits(stake);
+    }
+
+    /**
+     * Publishes a customer's new maximum stake if it changes the top entries
+     */
+    void offer(int customerId, int stake) {
+        Layout current = layout.get();
+        while (true) {
+            int failures = current.offer(customerId, stake);
+            if (failures > 0) {
+                contention.add(failures);
+            }
+            Layout latest = layout.get();
+            if (latest == current) {
+                break;
+            }
+            current = latest;
+        }
+        offers.increment();
+        adapt();
+    }
+
+    /**
+     * @return true while writes go to per-stripe caches
+     */
+    boolean isSplit() {
+        return layout.get() instanceof Striped;
+    }
+
+    /**
+     * Once per window, splits a contended leaderboard or merges back a cooled one
+     */
+    private void adapt() {
+        long now = System.nanoTime();
+        long start = windowStart.get();
+        if (now - start < windowNanos || !windowStart.compareAndSet(start, now)) {
+            return;
+        }
+
+        long failures = contention.sumThenReset();
+        long admitted = offers.sumThenReset();
+        Layout current = layout.get();
+        Layout next;
+        if (current instanceof Single && failures >= hotContention) {
+            next = split(current.get());
+        } else if (current instanceof Striped && admitted < coolOffers) {
+            next = join(current.get());
+        } else {
+            return;
+        }
+        if (!layout.compareAndSet(current, next)) {
+            return;
+        }
+
+        // Writers that published to the old layout after the seed was read, and saw it still
+        // current, do not re-apply; their entries are in its final state. Re-apply them like a
+        // writer would, following the layout if it switches again meanwhile
+        Leaderboard last = current.get();
+        while (true) {
+            for (int i = 0; i < last.size(); i++) {
+                next.offer(last.getCustomerId(i), last.getStake(i));
+            }
+            Layout latest = layout.get();
+            if (latest == next) {
+                break;
+            }
+            next = latest;
+        }
+    }
+
+    private Striped split(Leaderboard seed) {
+        LeaderboardCache[] stripes = new LeaderboardCache[STRIPES];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new LeaderboardCache(capacity);
+        }
+        Striped striped = new Striped(stripes, seed.getVersion() + LAYOUT_VERSION_GAP);
+        for (int i = 0; i < seed.size(); i++) {
+            striped.offer(seed.getCustomerId(i), seed.getStake(i));
+        }
+        return striped;
+    }
+
+    private Single join(Leaderboard merged) {
+        Leaderboard seed = new Leaderboard(merged.getVersion() + LAYOUT_VERSION_GAP,
+                copyCustomerIds(merged), copyStakes(merged));
+        return new Single(new LeaderboardCache(capacity, seed));
+    }
+
+    private static int[] copyCustomerIds(Leaderboard leaderboard) {
+        int[] customerIds = new int[leaderboard.size()];
+        for (int i = 0; i < customerIds.length; i++) {
+            customerIds[i] = leaderboard.getCustomerId(i);
+        }
+        return customerIds;
+    }
+
+    private static int[] copyStakes(Leaderboard leaderboard) {
+        int[] stakes = new int[leaderboard.size()];
+        for (int i = 0; i < stakes.length; i++) {
+            stakes[i] = leaderboard.getStake(i);
+        }
+        return stakes;
+    }
+
+    private interface Layout {
+        Leaderboard get();
+
+        boolean admits(int stake);
+
+        int offer(int customerId, int stake);
+    }
+
+    private record Single(LeaderboardCache cache) implements Layout {
+        @Override
+        public Leaderboard get() {
+            return cache.get();
+        }
+
+        @Override
+        public boolean admits(int stake) {
+            return cache.admits(stake);
+        }
+
+        @Override
+        public int offer(int customerId, int stake) {
+            return cache.offer(customerId, stake);
+        }
+    }
+
+    private final class Striped implements Layout {
+
+        private final LeaderboardCache[] stripes;
+        private final long baseVersion;
+
+        /**
+         * Last merged leaderboard, valid while the stripe versions still add up to its key
+         */
+        private final AtomicReference<Merged> merged = new AtomicReference<>();
+
+        Striped(LeaderboardCache[] stripes, long baseVersion) {
+            this.stripes = stripes;
+            this.baseVersion = baseVersion;
+        }
+
+        @Override
+        public Leaderboard get() {
+            // Stripe versions only go up, so their sum identifies the stripes' state
+            Leaderboard[] boards = new Leaderboard[stripes.length];
+            long key = 0;
+            for (int i = 0; i < stripes.length; i++) {
+                boards[i] = stripes[i].get();
+                key += boards[i].getVersion();
+            }
+            Merged cached = merged.get();
+            if (cached != null && cached.key == key) {
+                return cached.leaderboard;
+            }
+            Leaderboard leaderboard = merge(boards, baseVersion + key);
+            merged.set(new Merged(key, leaderboard));
+            return leaderboard;
+        }
+
+        @Override
+        public boolean admits(int stake) {
+            // The K-th stake only goes up, so a stale merged leaderboard still rules out low stakes
+            Merged cached = merged.get();
+            return cached == null || cached.leaderboard.size() < capacity
+                    || stake > cached.leaderboard.getStake(capacity - 1);
+        }
+
+        @Override
+        public int offer(int customerId, int stake) {
+            int h = customerId * 0x9E3779B9;
+            LeaderboardCache stripe = stripes[(h ^ (h >>> 16)) & (stripes.length - 1)];
+            return stripe.admits(stake) ? stripe.offer(customerId, stake) : 0;
+        }
+
+        private Leaderboard merge(Leaderboard[] boards, long version) {
+            int[] positions = new int[boards.length];
+            int[] customerIds = new int[capacity];
+            int[] stakes = new int[capacity];
+            int size = 0;
+            while (size < capacity) {
+                int best = -1;
+                for (int i = 0; i < boards.length; i++) {
+                    if (positions[i] < boards[i].size() && (best < 0
+                            || boards[i].getStake(positions[i]) > boards[best].getStake(positions[best]))) {
+                        best = i;
+                    }
+                }
+                if (best < 0) {
+                    break;
+                }
+                customerIds[size] = boards[best].getCustomerId(positions[best]);
+                stakes[size++] = boards[best].getStake(positions[best]++);
+            }
+            if (size < capacity) {
+                customerIds = Arrays.copyOf(customerIds, size);
+                stakes = Arrays.copyOf(stakes, size);
+            }
+            return new Leaderboard(version, customerIds, stakes);
+        }
+    }
+
+    private record Merged(long key, Leaderboard leaderboard) {
+    }
+}
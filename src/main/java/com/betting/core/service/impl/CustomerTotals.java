@@ -0,0 +1,54 @@
+package com.betting.core.service.impl;
+
+import com.betting.core.model.Leaderboard;
+import com.betting.util.IntMaxMap;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cross-offer customer leaderboard: customers ranked by the sum of their max stakes over
+ * every offer
+ * <p>
+ * Kept up to date by the delta of each raise, so it never scans the offers. A raise adds to
+ * the customer's own counter and, only if the new total can enter the top entries, offers it
+ * to an {@link AdaptiveLeaderboard}, which splits into stripes when those publishes contend.
+ * Submits of different customers therefore share no counter and no lock; most only read the
+ * published leaderboard.
+ * <p>
+ * Totals only go up, like max stakes, so late or concurrent publishes of the same customer
+ * are harmless max-merges. A total above {@link Integer#MAX_VALUE} is shown as
+ * {@code Integer.MAX_VALUE} on the leaderboard.
+ */
+final class CustomerTotals implements RaiseListener {
+
+    private final ConcurrentHashMap<Integer, AtomicLong> totals = new ConcurrentHashMap<>();
+    private final AdaptiveLeaderboard leaderboard = new AdaptiveLeaderboard(StakeServiceImpl.TOP_STAKES_LIMIT);
+
+    /**
+     * Adds the raise of one customer's max stake on one offer to their total; does nothing
+     * unless {@code oldStake} is lower than {@code stake}
+     *
+     * @param oldStake previous max stake on the offer, or {@link IntMaxMap#NO_VALUE}
+     */
+    @Override
+    public void raise(int customerId, int oldStake, int stake) {
+        if (oldStake >= stake) {
+            return;
+        }
+        AtomicLong counter = totals.get(customerId);
+        if (counter == null) {
+            counter = totals.computeIfAbsent(customerId, id -> new AtomicLong());
+        }
+        long total = counter.addAndGet(stake - Math.max(oldStake, 0));
+
+        int shown = (int) Math.min(total, Integer.MAX_VALUE);
+        if (leaderboard.admits(shown)) {
+            leaderboard.offer(customerId, shown);
+        }
+    }
+
+    Leaderboard leaderboard() {
+        return leaderboard.get();
+    }
+}
@@ -0,0 +1,117 @@
+package com.betting.core.service.impl;
+
+import com.betting.core.model.Leaderboard;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Read-copy-update top-K leaderboard of one bet offer
+ * <p>
+ * Writers derive a new immutable {@link Leaderboard} from the published one and swap it in
+ * with a CAS; readers do a single volatile load and always see a complete, consistent
+ * leaderboard (no customer twice, none missing, stakes in order).
+ * <p>
+ * Applying a stake is a max-merge, so concurrent or late applies for the same customer
+ * commute. Because per-customer stakes only go up, the K-th stake only goes up as well, and
+ * a customer that falls out of the top K can only return through a new, higher submit.
+ * Equal stakes keep arrival order: the first customer to reach a stake ranks first.
+ */
+class LeaderboardCache {
+
+    private final int capacity;
+    private final AtomicReference<Leaderboard> published;
+
+    LeaderboardCache(int capacity) {
+        this(capacity, Leaderboard.EMPTY);
+    }
+
+    /**
+     * @param initial first published leaderboard, at most {@code capacity} entries
+     */
+    LeaderboardCache(int capacity, Leaderboard initial) {
+        this.capacity = capacity;
+        this.published = new AtomicReference<>(initial);
+    }
+
+    Leaderboard get() {
+        return published.get();
+    }
+
+    /**
+     * Cheap pre-check against the published leaderboard
+     *
+     * @return true if a customer now holding {@code stake} can enter the top entries
+     */
+    boolean admits(int stake) {
+        return admits(published.get(), stake);
+    }
+
+    /**
+     * Publishes a customer's new maximum stake if it changes the top entries
+     *
+     * @return number of failed publish attempts, a measure of write contention
+     */
+    int offer(int customerId, int stake) {
+        int failures = 0;
+        while (true) {
+            Leaderboard current = published.get();
+            Leaderboard next = merge(current, customerId, stake);
+            if (next == current || published.compareAndSet(current, next)) {
+                return failures;
+            }
+            failures++;
+        }
+    }
+
+    private boolean admits(Leaderboard current, int stake) {
+        return current.size() < capacity || stake > current.getStake(capacity - 1);
+    }
+
+    /**
+     * @return a new leaderboard with the stake applied, or {@code current} if nothing changes
+     */
+    private Leaderboard merge(Leaderboard current, int customerId, int stake) {
+        if (!admits(current, stake)) {
+            return current;
+        }
+
+        int size = current.size();
+        int existing = -1;
+        for (int i = 0; i < size; i++) {
+            if (current.getCustomerId(i) == customerId) {
+                if (current.getStake(i) >= stake) {
+                    return current;
+                }
+                existing = i;
+                break;
+            }
+        }
+
+        // Insert after every other entry with an equal or higher stake
+        int[] customerIds = new int[Math.min(existing >= 0 ? size : size + 1, capacity)];
+        int[] stakes = new int[customerIds.length];
+        int target = 0;
+        boolean inserted = false;
+        for (int i = 0; i < size && target < customerIds.length; i++) {
+            if (i == existing) {
+                continue;
+            }
+            if (!inserted && current.getStake(i) < stake) {
+                customerIds[target] = customerId;
+                stakes[target++] = stake;
+                inserted = true;
+                if (target == customerIds.length) {
+                    break;
+                }
+            }
+            customerIds[target] = current.getCustomerId(i);
+            stakes[target++] = current.getStake(i);
+        }
+        if (!inserted && target < customerIds.length) {
+            customerIds[target] = customerId;
+            stakes[target++] = stake;
+        }
+
+        return new Leaderboard(current.getVersion() + 1, customerIds, stakes);
+    }
+}
@@ -0,0 +1,368 @@
+package com.betting.core.service.impl;
+
+import com.betting.core.model.Leaderboard;
+import com.betting.core.model.OfferSnapshot;
+import com.betting.core.model.OfferStatus;
+import com.betting.core.model.StakeDistribution;
+import com.betting.util.IntMaxMap;
+import com.betting.util.LogHistogram;
+import com.betting.util.SlabAllocator;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Stake state of one bet offer in off-heap slab blocks
+ * <p>
+ * Holds:
+ * - the customerId -> max stake table, open addressing over packed (customerId, stake) longs
+ * - the working top entries, highest stake first, ties in arrival order
+ * - the published leaderboard, the only per-offer state readers touch, on the heap
+ * - a histogram of the max stakes, also on the heap, counted by the submit that wins each raise
+ * <p>
+ * The max stake is raised with a single CAS on the off-heap slot, under the shared side of
+ * a read-write lock; growing the table and releasing the book take the exclusive side.
+ * Only stakes that reach the top entries take the book's monitor to update them.
+ */
+final class OffHeapBook {
+
+    /**
+     * Returned by {@link #submit} once the book's memory has been released
+     */
+    static final int RELEASED = Integer.MIN_VALUE;
+
+    private static final VarHandle SLOTS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int TABLE_FULL = Integer.MIN_VALUE + 1;
+
+    private final SlabAllocator slabs;
+    private final int leaderboardSize;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicInteger size = new AtomicInteger();
+    private final LogHistogram histogram = new LogHistogram(StakeServiceImpl.MAX_STAKE_LIMIT);
+
+    // Guarded by lock: read under the read lock, replaced under the write lock
+    private ByteBuffer table;
+    private ByteBuffer top;
+
+    // Guarded by this
+    private int topSize;
+    private long versionFloor;
+
+    /**
+     * Lowest stake that can change the top entries: 0 until they are full, then one above the last
+     */
+    private volatile int admission;
+    private volatile Leaderboard published = Leaderboard.EMPTY;
+
+    OffHeapBook(SlabAllocator slabs, int leaderboardSize) {
+        this(slabs, leaderboardSize, INITIAL_CAPACITY);
+    }
+
+    /**
+     * @param expectedSize number of customers the table should hold without growing
+     */
+    OffHeapBook(SlabAllocator slabs, int leaderboardSize, int expectedSize) {
+        this.slabs = slabs;
+        this.leaderboardSize = leaderboardSize;
+        int capacity = INITIAL_CAPACITY;
+        while (capacity * 3L / 4 < expectedSize) {
+            capacity <<= 1;
+        }
+        this.table = slabs.allocate(capacity * Long.BYTES);
+        this.top = slabs.allocate(leaderboardSize * Long.BYTES);
+    }
+
+    /**
+     * Raises a customer's max stake
+     *
+     * @return the previous max stake, {@link IntMaxMap#NO_VALUE}, or {@link #RELEASED}; the
+     * book changed if and only if a value other than {@code RELEASED} is lower than {@code stake}
+     */
+    int submit(int customerId, int stake) {
+        int oldStake;
+        while (true) {
+            ByteBuffer current;
+            lock.readLock().lock();
+            try {
+                current = table;
+                if (current == null) {
+                    return RELEASED;
+                }
+                oldStake = raise(current, customerId, stake);
+                if (oldStake != TABLE_FULL && oldStake < stake) {
+                    histogram.replace(oldStake, stake);
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            if (oldStake != TABLE_FULL) {
+                if (oldStake == IntMaxMap.NO_VALUE && size.get() > current.capacity() / Long.BYTES / 4 * 3) {
+                    grow(current);
+                }
+                break;
+            }
+            grow(current);
+        }
+
+        // Below the current top entries nothing on the leaderboard can change
+        if (oldStake < stake && stake >= admission) {
+            promote(customerId, stake);
+        }
+        return oldStake;
+    }
+
+    Leaderboard leaderboard() {
+        return published;
+    }
+
+    StakeDistribution distribution() {
+        return StakeServiceImpl.distribution(histogram, published);
+    }
+
+    /**
+     * @return number of customers with a stake
+     */
+    int size() {
+        return size.get();
+    }
+
+    /**
+     * Copies the book without blocking submits; the copy holds every raise completed before
+     * the call, and may hold some that complete during it
+     *
+     * @return the copy, or null if the book was released
+     */
+    OfferSnapshot snapshot(int betOfferId, OfferStatus status) {
+        Leaderboard board = published;
+        lock.readLock().lock();
+        try {
+            if (table == null) {
+                return null;
+            }
+            // (customerId, stake) in one long: customer IDs are positive, so sorting orders by customer
+            long[] packed = new long[Math.max(size.get(), 16)];
+            int count = 0;
+            for (int offset = 0; offset < table.capacity(); offset += Long.BYTES) {
+                long slot = (long) SLOTS.getVolatile(table, offset);
+                if (slot != 0) {
+                    if (count == packed.length) {
+                        packed = Arrays.copyOf(packed, count << 1);
+                    }
+                    packed[count++] = slot;
+                }
+            }
+            Arrays.sort(packed, 0, count);
+
+            int[] customerIds = new int[count];
+            int[] stakes = new int[count];
+            for (int i = 0; i < count; i++) {
+                customerIds[i] = (int) (packed[i] >>> 32);
+                stakes[i] = (int) packed[i];
+            }
+            return new OfferSnapshot(betOfferId, customerIds, stakes, board, status);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Merges a snapshot into the book: its leaderboard entries first, so equal stakes keep
+     * their order, then every other customer
+     *
+     * @param raises receives every raise the merge makes, or null when the book is rebuilt
+     *               from its own copy
+     */
+    void restore(OfferSnapshot snapshot, RaiseListener raises) {
+        Leaderboard board = snapshot.leaderboard();
+        synchronized (this) {
+            // Versions carry on from the snapshot's leaderboard
+            versionFloor = Math.max(versionFloor, board.getVersion());
+        }
+        for (int i = 0; i < board.size(); i++) {
+            restore(board.getCustomerId(i), board.getStake(i), raises);
+        }
+        for (int i = 0; i < snapshot.size(); i++) {
+            restore(snapshot.customerIds()[i], snapshot.stakes()[i], raises);
+        }
+    }
+
+    private void restore(int customerId, int stake, RaiseListener raises) {
+        int oldStake = submit(customerId, stake);
+        if (raises != null) {
+            raises.raise(customerId, oldStake, stake);
+        }
+    }
+
+    /**
+     * Copies the book and returns its blocks to the allocator; later submits get {@link #RELEASED}
+     *
+     * @return the copy, or null if the book was already released
+     */
+    synchronized OfferSnapshot release(int betOfferId, OfferStatus status) {
+        lock.writeLock().lock();
+        try {
+            if (table == null) {
+                return null;
+            }
+            // Raises that completed but have not reached the top entries yet would be lost with them
+            for (int offset = 0; offset < table.capacity(); offset += Long.BYTES) {
+                long slot = table.getLong(offset);
+                if (slot != 0 && (int) slot >= admission) {
+                    promote((int) (slot >>> 32), (int) slot);
+                }
+            }
+            OfferSnapshot copy = snapshot(betOfferId, status);
+            slabs.free(table);
+            slabs.free(top);
+            table = null;
+            top = null;
+            return copy;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private int raise(ByteBuffer t, int customerId, int stake) {
+        long update = (long) customerId << 32 | stake;
+        int mask = t.capacity() / Long.BYTES - 1;
+        int i = hash(customerId) & mask;
+        for (int probes = 0; probes <= mask; probes++, i = (i + 1) & mask) {
+            int offset = i * Long.BYTES;
+            while (true) {
+                long slot = (long) SLOTS.getVolatile(t, offset);
+                if (slot == 0) {
+                    if (SLOTS.compareAndSet(t, offset, 0L, update)) {
+                        size.incrementAndGet();
+                        return IntMaxMap.NO_VALUE;
+                    }
+                    continue;
+                }
+                if ((int) (slot >>> 32) != customerId) {
+                    break;
+                }
+                int current = (int) slot;
+                if (current >= stake || SLOTS.compareAndSet(t, offset, slot, update)) {
+                    return current;
+                }
+            }
+        }
+        return TABLE_FULL;
+    }
+
+    private int get(int customerId) {
+        lock.readLock().lock();
+        try {
+            if (table == null) {
+                return IntMaxMap.NO_VALUE;
+            }
+            int mask = table.capacity() / Long.BYTES - 1;
+            int i = hash(customerId) & mask;
+            for (int probes = 0; probes <= mask; probes++, i = (i + 1) & mask) {
+                long slot = (long) SLOTS.getVolatile(table, i * Long.BYTES);
+                if (slot == 0) {
+                    return IntMaxMap.NO_VALUE;
+                }
+                if ((int) (slot >>> 32) == customerId) {
+                    return (int) slot;
+                }
+            }
+            return IntMaxMap.NO_VALUE;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Doubles the table unless another thread already replaced {@code expected}
+     */
+    private void grow(ByteBuffer expected) {
+        lock.writeLock().lock();
+        try {
+            if (table != expected) {
+                return;
+            }
+            int capacity = expected.capacity() / Long.BYTES;
+            ByteBuffer next = slabs.allocate(capacity * 2 * Long.BYTES);
+            int mask = capacity * 2 - 1;
+            for (int offset = 0; offset < expected.capacity(); offset += Long.BYTES) {
+                long slot = expected.getLong(offset);
+                if (slot != 0) {
+                    int i = hash((int) (slot >>> 32)) & mask;
+                    while (next.getLong(i * Long.BYTES) != 0) {
+                        i = (i + 1) & mask;
+                    }
+                    next.putLong(i * Long.BYTES, slot);
+                }
+            }
+            table = next;
+            slabs.free(expected);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private synchronized void promote(int customerId, int stake) {
+        // A concurrent higher raise of the same customer promotes itself; this one is stale
+        if (top == null || get(customerId) != stake) {
+            return;
+        }
+
+        int existing = topSize;
+        for (int i = 0; i < topSize; i++) {
+            if (topCustomerId(i) == customerId) {
+                existing = i;
+                break;
+            }
+        }
+        if (existing < topSize && topStake(existing) == stake) {
+            return;
+        }
+        if (existing == topSize) {
+            if (topSize == leaderboardSize && stake <= topStake(topSize - 1)) {
+                return;
+            }
+            if (topSize < leaderboardSize) {
+                topSize++;
+            }
+        }
+
+        // Shift lower entries down over the customer's old place (or off the end), then insert
+        // after every remaining entry with an equal or higher stake
+        int target = Math.min(existing, topSize - 1);
+        while (target > 0 && topStake(target - 1) < stake) {
+            top.putLong(target * Long.BYTES, top.getLong((target - 1) * Long.BYTES));
+            target--;
+        }
+        top.putLong(target * Long.BYTES, (long) customerId << 32 | stake);
+
+        int[] customerIds = new int[topSize];
+        int[] stakes = new int[topSize];
+        for (int i = 0; i < topSize; i++) {
+            customerIds[i] = topCustomerId(i);
+            stakes[i] = topStake(i);
+        }
+        published = new Leaderboard(Math.max(published.getVersion(), versionFloor) + 1, customerIds, stakes);
+        if (topSize == leaderboardSize) {
+            admission = stakes[topSize - 1] + 1;
+        }
+    }
+
+    private int topCustomerId(int index) {
+        return (int) (top.getLong(index * Long.BYTES) >>> 32);
+    }
+
+    private int topStake(int index) {
+        return (int) top.getLong(index * Long.BYTES);
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
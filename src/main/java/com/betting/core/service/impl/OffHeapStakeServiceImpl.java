@@ -0,0 +1,348 @@
+package com.betting.core.service.impl;
+
+import com.betting.api.exception.BettingException;
+import com.betting.core.model.Leaderboard;
+import com.betting.core.model.OfferSnapshot;
+import com.betting.core.model.OfferStatus;
+import com.betting.core.model.StakeDistribution;
+import com.betting.core.service.StakeJournal;
+import com.betting.core.service.StakeService;
+import com.betting.util.Logger;
+import com.betting.util.SlabAllocator;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Off-Heap Stake Service Implementation
+ * <p>
+ * Alternative to {@link TopKStakeServiceImpl} for seasons with tens of millions of stakes:
+ * each offer's max stake table and working top entries live in blocks of direct memory
+ * from a shared {@link SlabAllocator}, so the garbage collector never traces them and the
+ * heap holds only a few small objects per offer.
+ * <p>
+ * Features:
+ * - Lock-free raise of the max stake with a single CAS on an off-heap slot
+ * - Submits below the current 20th stake skip the leaderboard entirely
+ * - Lock-free top retrieval of a pre-rendered leaderboard, published on the heap
+ * - Closing an offer returns its blocks to the allocator and keeps its stakes as two sorted
+ *   primitive arrays, which the collector does not need to look into
+ */
+public class OffHeapStakeServiceImpl implements StakeService {
+
+    private final SlabAllocator slabs;
+
+    /**
+     * Offers: betOfferId -> (status, off-heap book or closed copy)
+     */
+    private final ConcurrentHashMap<Integer, Offer> offers = new ConcurrentHashMap<>();
+
+    /**
+     * Every customer's sum of max stakes over the offers, and its leaderboard
+     */
+    private final CustomerTotals customerTotals = new CustomerTotals();
+    private final RecentStakes recentStakes = new RecentStakes();
+
+    /**
+     * Receives every accepted raise; attached once before requests are served
+     */
+    private volatile StakeJournal journal = StakeJournal.NONE;
+
+    public OffHeapStakeServiceImpl() {
+        this(new SlabAllocator());
+    }
+
+    public OffHeapStakeServiceImpl(SlabAllocator slabs) {
+        this.slabs = slabs;
+    }
+
+    @Override
+    public void submitStake(int customerId, int betOfferId, int stake) {
+        StakeServiceImpl.validateInput(customerId, betOfferId, stake);
+
+        Logger.debug("Submitting stake: customerId=%s, betOfferId=%s, stake=%s",
+                customerId, betOfferId, stake);
+
+        Offer offer = offer(betOfferId);
+        StakeServiceImpl.checkOpen(betOfferId, offer.status);
+        OffHeapBook book = offer.book;
+        int oldStake = book == null ? OffHeapBook.RELEASED : book.submit(customerId, stake);
+        if (oldStake == OffHeapBook.RELEASED) {
+            // Closed since the check above
+            StakeServiceImpl.checkOpen(betOfferId, OfferStatus.CLOSED);
+        }
+        journal(offer, customerId, stake, oldStake);
+        recentStakes.record(betOfferId, customerId, stake);
+    }
+
+    @Override
+    public void restoreStake(int customerId, int betOfferId, int stake) {
+        StakeServiceImpl.validateInput(customerId, betOfferId, stake);
+
+        Offer offer = offer(betOfferId);
+        OffHeapBook book = offer.book;
+        int oldStake = book == null ? OffHeapBook.RELEASED : book.submit(customerId, stake);
+        if (oldStake == OffHeapBook.RELEASED) {
+            oldStake = offer.mergeClosed(customerId, stake);
+        }
+        journal(offer, customerId, stake, oldStake);
+    }
+
+    private void journal(Offer offer, int customerId, int stake, int oldStake) {
+        if (oldStake < stake) {
+            int betOfferId = offer.betOfferId;
+            customerTotals.raise(customerId, oldStake, stake);
+            journal.append(customerId, betOfferId, stake);
+            Logger.debug("Updated stake: customerId=%s, betOfferId=%s, oldStake=%s, newStake=%s",
+                    customerId, betOfferId, oldStake, stake);
+        }
+    }
+
+    @Override
+    public void setOfferStatus(int betOfferId, OfferStatus status) {
+        StakeServiceImpl.validateBetOfferId(betOfferId);
+
+        if (offer(betOfferId).setStatus(status) != status) {
+            Logger.info("Bet offer %d is now %s", betOfferId, status);
+        }
+    }
+
+    @Override
+    public OfferStatus getOfferStatus(int betOfferId) {
+        StakeServiceImpl.validateBetOfferId(betOfferId);
+
+        Offer offer = offers.get(betOfferId);
+        return offer == null ? OfferStatus.OPEN : offer.status;
+    }
+
+    @Override
+    public List<String> getTop20Stakes(int betOfferId) {
+        return getLeaderboard(betOfferId).entries();
+    }
+
+    @Override
+    public Leaderboard getLeaderboard(int betOfferId) {
+        StakeServiceImpl.validateBetOfferId(betOfferId);
+
+        Offer offer = offers.get(betOfferId);
+        if (offer == null) {
+            Logger.debug("No stakes found for betOfferId=%s", betOfferId);
+            return Leaderboard.EMPTY;
+        }
+        return offer.leaderboard();
+    }
+
+    @Override
+    public Leaderboard getCustomerLeaderboard() {
+        return customerTotals.leaderboard();
+    }
+
+    @Override
+    public Leaderboard getRecentLeaderboard(int betOfferId, long windowMillis) {
+        StakeServiceImpl.validateBetOfferId(betOfferId);
+
+        return recentStakes.leaderboard(betOfferId, windowMillis);
+    }
+
+    @Override
+    public StakeDistribution getStakeDistribution(int betOfferId) {
+        StakeServiceImpl.validateBetOfferId(betOfferId);
+
+        Offer offer = offers.get(betOfferId);
+        return offer == null ? StakeDistribution.EMPTY : offer.distribution();
+    }
+
+    /**
+     * Only the top entries are kept, so pages are cut from the published leaderboard
+     */
+    @Override
+    public Leaderboard getStakes(int betOfferId, int offset, int limit) {
+        StakeServiceImpl.validatePage(offset, limit);
+
+        return getLeaderboard(betOfferId).slice(offset, limit);
+    }
+
+    @Override
+    public int getEntryThreshold(int betOfferId, int n) {
+        StakeServiceImpl.validateRank(n);
+
+        return StakeServiceImpl.boundedThreshold(getLeaderboard(betOfferId), n);
+    }
+
+    @Override
+    public int getRank(int betOfferId, int customerId) {
+        StakeServiceImpl.validateCustomerId(customerId);
+
+        int rank = StakeServiceImpl.boundedRank(getLeaderboard(betOfferId), customerId);
+        if (rank == 0) {
+            throw new BettingException(BettingException.ErrorCode.CUSTOMER_NOT_FOUND,
+                    "Customer " + customerId + " has no top " + StakeServiceImpl.TOP_STAKES_LIMIT
+                            + " stake on bet offer " + betOfferId);
+        }
+        return rank;
+    }
+
+    @Override
+    public void attachJournal(StakeJournal journal) {
+        this.journal = journal;
+    }
+
+    @Override
+    public void exportOffers(Consumer<OfferSnapshot> consumer) {
+        offers.forEach((betOfferId, offer) -> consumer.accept(offer.snapshot()));
+    }
+
+    @Override
+    public void importOffer(OfferSnapshot snapshot) {
+        StakeServiceImpl.validateBetOfferId(snapshot.betOfferId());
+
+        offer(snapshot.betOfferId()).restore(snapshot);
+    }
+
+    /**
+     * @return bytes of direct memory held by the engine's slabs
+     */
+    public long offHeapBytes() {
+        return slabs.reservedBytes();
+    }
+
+    private Offer offer(int betOfferId) {
+        return offers.computeIfAbsent(betOfferId, id -> new Offer(id, new OffHeapBook(slabs, StakeServiceImpl.TOP_STAKES_LIMIT)));
+    }
+
+    /**
+     * Status and stakes of one offer: an off-heap book while it may take stakes, a copy on
+     * the heap once closed. Status changes and restores take the offer's lock; submits do not.
+     */
+    private final class Offer {
+
+        private final int betOfferId;
+        private volatile OfferStatus status = OfferStatus.OPEN;
+
+        /**
+         * Live stakes, or null once closed
+         */
+        private volatile OffHeapBook book;
+
+        /**
+         * Stakes of a closed offer, or null while live
+         */
+        private volatile OfferSnapshot closed;
+
+        /**
+         * Stake distribution of the closed copy; the live book keeps a histogram instead
+         */
+        private volatile StakeDistribution closedDistribution = StakeDistribution.EMPTY;
+
+        Offer(int betOfferId, OffHeapBook book) {
+            this.betOfferId = betOfferId;
+            this.book = book;
+        }
+
+        Leaderboard leaderboard() {
+            while (true) {
+                // A close or reopen between the two reads can make both look null: read again
+                OffHeapBook current = book;
+                if (current != null) {
+                    return current.leaderboard();
+                }
+                OfferSnapshot copy = closed;
+                if (copy != null) {
+                    return copy.leaderboard();
+                }
+            }
+        }
+
+        StakeDistribution distribution() {
+            OffHeapBook current = book;
+            return current != null ? current.distribution() : closedDistribution;
+        }
+
+        /**
+         * Journals the change under the offer's lock, so the log holds its status changes in order
+         *
+         * @return the previous status
+         * @throws BettingException {@code OFFER_CLOSED} if the offer is closed and {@code next} is not
+         */
+        synchronized OfferStatus setStatus(OfferStatus next) {
+            OfferStatus previous = status;
+            if (previous == OfferStatus.CLOSED && next != OfferStatus.CLOSED) {
+                throw new BettingException(BettingException.ErrorCode.OFFER_CLOSED,
+                        "Bet offer " + betOfferId + " is closed for good");
+            }
+            if (previous != next) {
+                journal.offerStatus(betOfferId, next);
+            }
+            status = next;
+            if (next == OfferStatus.CLOSED) {
+                close();
+            }
+            return previous;
+        }
+
+        OfferSnapshot snapshot() {
+            OffHeapBook current = book;
+            OfferSnapshot copy = current != null ? current.snapshot(betOfferId, status) : null;
+            if (copy != null) {
+                return copy;
+            }
+            synchronized (this) {
+                return book != null ? snapshot() : closed;
+            }
+        }
+
+        /**
+         * Merges a snapshot into the offer and takes over its status
+         */
+        synchronized void restore(OfferSnapshot snapshot) {
+            status = snapshot.status();
+            reopen(snapshot.size()).restore(snapshot, customerTotals::raise);
+            if (status == OfferStatus.CLOSED) {
+                close();
+            }
+        }
+
+        /**
+         * Rare path of a log replay: applies a raise accepted just before the offer closed
+         *
+         * @return the previous max stake, as {@link OffHeapBook#submit}
+         */
+        synchronized int mergeClosed(int customerId, int stake) {
+            int oldStake = reopen(0).submit(customerId, stake);
+            if (status == OfferStatus.CLOSED) {
+                close();
+            }
+            return oldStake;
+        }
+
+        /**
+         * Caller holds the lock
+         *
+         * @return the live book, rebuilt off the heap from the closed copy if needed
+         */
+        private OffHeapBook reopen(int extraSize) {
+            OffHeapBook current = book;
+            if (current == null) {
+                current = new OffHeapBook(slabs, StakeServiceImpl.TOP_STAKES_LIMIT, closed.size() + extraSize);
+                current.restore(closed, null);
+                book = current;
+                closed = null;
+            }
+            return current;
+        }
+
+        /**
+         * Caller holds the lock: frees the book's blocks, keeping a sorted copy
+         */
+        private void close() {
+            OffHeapBook current = book;
+            if (current != null) {
+                OfferSnapshot copy = current.release(betOfferId, OfferStatus.CLOSED);
+                closedDistribution = StakeServiceImpl.distribution(copy);
+                closed = copy;
+                book = null;
+            }
+        }
+    }
+}
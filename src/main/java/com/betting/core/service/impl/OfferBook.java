@@ -0,0 +1,388 @@
+package com.betting.core.service.impl;
+
+import com.betting.core.model.Leaderboard;
+import com.betting.core.model.OfferSnapshot;
+import com.betting.core.model.OfferStatus;
+import com.betting.core.model.StakeDistribution;
+import com.betting.util.IntCountTree;
+import com.betting.util.IntMaxMap;
+import com.betting.util.LogHistogram;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.IntConsumer;
+
+/**
+ * All stake state of one bet offer, reached through a single lookup
+ * <p>
+ * Holds:
+ * - the customerId -> max stake table
+ * - the ordered stake index (stake -> bucket of customerIds, descending), absent for bounded books
+ * - the number of customers at each stake, for ranks beyond the leaderboard; absent for bounded
+ *   books, and for ordered ones until such a rank is first asked for
+ * - a histogram of the max stakes, rebuilt with the rest of the book from a snapshot
+ * - the pre-rendered, snapshot-published leaderboard, split into stripes while the offer is hot
+ * <p>
+ * Updates are lock-free: the max stake is raised with a single CAS, then the ordered index
+ * is repaired and the leaderboard republished if the submit reached the top entries.
+ * <p>
+ * A book being compacted is sealed first; a submit that raised a stake and then finds the
+ * book sealed must repeat the raise on whatever replaced it.
+ */
+class OfferBook {
+
+    private final IntMaxMap maxStakes;
+    private final ConcurrentSkipListMap<Integer, StakeBucket> index;
+    private final IntCountTree counts;
+    private final LogHistogram histogram = new LogHistogram(StakeServiceImpl.MAX_STAKE_LIMIT);
+    private final AdaptiveLeaderboard leaderboard;
+    private volatile boolean sealed;
+
+    /**
+     * Builds an empty book without stake counts
+     *
+     * @param leaderboardSize number of entries kept on the leaderboard
+     * @param ordered         whether to keep an ordered index over every customer, or only the top entries
+     */
+    OfferBook(int leaderboardSize, boolean ordered) {
+        this.maxStakes = new IntMaxMap();
+        this.index = ordered ? new ConcurrentSkipListMap<>(Collections.reverseOrder()) : null;
+        this.counts = null;
+        this.leaderboard = new AdaptiveLeaderboard(leaderboardSize);
+    }
+
+    /**
+     * Builds a book from a snapshot, bulk-loading the ordered index in stake order instead of
+     * inserting customers one at a time; the leaderboard carries on from the snapshot's, and
+     * equal stakes in the index keep the leaderboard's order, then customer order
+     *
+     * @param ranked whether to count the customers at each stake, if ordered
+     */
+    OfferBook(int leaderboardSize, boolean ordered, boolean ranked, OfferSnapshot snapshot) {
+        Leaderboard top = snapshot.leaderboard();
+        this.maxStakes = new IntMaxMap(snapshot.size());
+        this.leaderboard = new AdaptiveLeaderboard(leaderboardSize, top);
+        for (int i = 0; i < top.size(); i++) {
+            raise(top.getCustomerId(i), top.getStake(i));
+        }
+        for (int i = 0; i < snapshot.size(); i++) {
+            raise(snapshot.customerIds()[i], snapshot.stakes()[i]);
+        }
+        this.counts = ordered && ranked ? new IntCountTree(StakeServiceImpl.MAX_STAKE_LIMIT) : null;
+        this.index = ordered ? buildIndex(top) : null;
+    }
+
+    /**
+     * Raises a customer's max stake
+     *
+     * @return the previous max stake, or {@link IntMaxMap#NO_VALUE}; the book changed if and
+     * only if the returned value is lower than {@code stake}
+     */
+    int submit(int customerId, int stake) {
+        // Raise-to-max in one CAS: exactly one submit wins each transition oldStake -> stake
+        int oldStake = maxStakes.raise(customerId, stake);
+        if (oldStake >= stake) {
+            return oldStake;
+        }
+
+        histogram.replace(oldStake, stake);
+        if (index != null) {
+            updateIndex(customerId, oldStake, stake);
+        }
+        if (counts != null) {
+            // Counted once per transition, by the submit that won it
+            counts.add(stake);
+            if (oldStake != IntMaxMap.NO_VALUE) {
+                counts.remove(oldStake);
+            }
+        }
+
+        // Below the current top entries nothing on the leaderboard can change
+        if (leaderboard.admits(stake)) {
+            leaderboard.offer(customerId, stake);
+        }
+        return oldStake;
+    }
+
+    Leaderboard leaderboard() {
+        return leaderboard.get();
+    }
+
+    StakeDistribution distribution() {
+        return StakeServiceImpl.distribution(histogram, leaderboard.get());
+    }
+
+    /**
+     * Ranks {@code offset + 1} to {@code offset + limit} from the ordered index, stamped with
+     * the leaderboard's version
+     * <p>
+     * Weakly consistent like a snapshot: a customer moving between buckets during the walk
+     * is listed at most once, at their current stake.
+     */
+    Leaderboard page(int offset, int limit) {
+        long version = leaderboard.get().getVersion();
+        PageCollector page = new PageCollector(offset, limit);
+        for (Map.Entry<Integer, StakeBucket> entry : index.entrySet()) {
+            StakeBucket bucket = entry.getValue();
+            int bucketSize = bucket.size();
+            if (page.skip >= bucketSize) {
+                page.skip -= bucketSize;
+                continue;
+            }
+            page.stake = entry.getKey();
+            bucket.forEach(page);
+            if (page.isFull()) {
+                break;
+            }
+        }
+        return new Leaderboard(version, Arrays.copyOf(page.customerIds, page.size),
+                Arrays.copyOf(page.stakes, page.size));
+    }
+
+    /**
+     * @return whether the book counts customers per stake, for {@link #threshold} and {@link #rank}
+     */
+    boolean isRanked() {
+        return counts != null;
+    }
+
+    /**
+     * @return one above the n-th highest stake, or 0 if fewer than {@code n} customers have a stake
+     */
+    int threshold(int n) {
+        return counts.highest(n) + 1;
+    }
+
+    /**
+     * @return 1 + the number of customers with a higher stake, or 0 if the customer has none
+     */
+    int rank(int customerId) {
+        int stake = maxStakes.get(customerId);
+        return stake == IntMaxMap.NO_VALUE ? 0 : counts.countAbove(stake) + 1;
+    }
+
+    /**
+     * @return number of customers with a stake
+     */
+    int size() {
+        return maxStakes.size();
+    }
+
+    /**
+     * Marks the book as being replaced; see {@link #isSealed()}
+     */
+    void seal() {
+        sealed = true;
+    }
+
+    /**
+     * Checked after a raise: a copy taken after sealing holds every raise that completed before
+     * its submit saw the book unsealed, so only raises that see it sealed must be repeated
+     */
+    boolean isSealed() {
+        return sealed;
+    }
+
+    /**
+     * Copies the book without blocking submits; the copy holds every raise completed before
+     * the call, and may hold some that complete during it
+     */
+    OfferSnapshot snapshot(int betOfferId, OfferStatus status) {
+        Leaderboard top = leaderboard.get();
+
+        PackedEntries entries = new PackedEntries(maxStakes.size(), false);
+        maxStakes.forEach(entries);
+        Arrays.sort(entries.packed, 0, entries.size);
+
+        int[] customerIds = new int[entries.size];
+        int[] stakes = new int[entries.size];
+        for (int i = 0; i < customerIds.length; i++) {
+            customerIds[i] = (int) (entries.packed[i] >>> 32);
+            stakes[i] = (int) entries.packed[i];
+        }
+        return new OfferSnapshot(betOfferId, customerIds, stakes, top, status);
+    }
+
+    /**
+     * Merges a snapshot into the book: its leaderboard entries first, so equal stakes keep
+     * their order, then every other customer
+     *
+     * @param raises receives every raise the merge makes
+     */
+    void restore(OfferSnapshot snapshot, RaiseListener raises) {
+        Leaderboard top = snapshot.leaderboard();
+        for (int i = 0; i < top.size(); i++) {
+            int customerId = top.getCustomerId(i);
+            raises.raise(customerId, submit(customerId, top.getStake(i)), top.getStake(i));
+        }
+        for (int i = 0; i < snapshot.size(); i++) {
+            int customerId = snapshot.customerIds()[i];
+            int stake = snapshot.stakes()[i];
+            raises.raise(customerId, submit(customerId, stake), stake);
+        }
+    }
+
+    /**
+     * Raises a customer's max stake, the histogram and the leaderboard, leaving the index alone
+     */
+    private void raise(int customerId, int stake) {
+        int oldStake = maxStakes.raise(customerId, stake);
+        if (oldStake < stake) {
+            histogram.replace(oldStake, stake);
+            if (leaderboard.admits(stake)) {
+                leaderboard.offer(customerId, stake);
+            }
+        }
+    }
+
+    private ConcurrentSkipListMap<Integer, StakeBucket> buildIndex(Leaderboard top) {
+        PackedEntries entries = new PackedEntries(maxStakes.size(), true);
+        maxStakes.forEach(entries);
+        Arrays.sort(entries.packed, 0, entries.size);
+
+        // Stake groups from the highest down; the sorted map is copied into the skip list in linear time
+        TreeMap<Integer, StakeBucket> buckets = new TreeMap<>(Collections.reverseOrder());
+        int lowestTopStake = top.size() == 0 ? Integer.MAX_VALUE : top.getStake(top.size() - 1);
+        int end = entries.size;
+        while (end > 0) {
+            int stake = (int) (entries.packed[end - 1] >>> 32);
+            int start = end - 1;
+            while (start > 0 && (int) (entries.packed[start - 1] >>> 32) == stake) {
+                start--;
+            }
+
+            StakeBucket bucket = new StakeBucket();
+            boolean onTop = stake >= lowestTopStake;
+            if (onTop) {
+                for (int i = 0; i < top.size(); i++) {
+                    if (maxStakes.get(top.getCustomerId(i)) == stake) {
+                        bucket.add(top.getCustomerId(i));
+                    }
+                }
+            }
+            for (int i = start; i < end; i++) {
+                int customerId = (int) entries.packed[i];
+                if (counts != null) {
+                    counts.add(stake);
+                }
+                if (!onTop || !isOnLeaderboard(top, customerId)) {
+                    bucket.add(customerId);
+                }
+            }
+            buckets.put(stake, bucket);
+            end = start;
+        }
+        return new ConcurrentSkipListMap<>(buckets);
+    }
+
+    private static boolean isOnLeaderboard(Leaderboard top, int customerId) {
+        for (int i = 0; i < top.size(); i++) {
+            if (top.getCustomerId(i) == customerId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void updateIndex(int customerId, int oldStake, int stake) {
+        // Add customer to new stake position before leaving the old one, so they are never missing
+        addCustomerToStake(stake, customerId);
+
+        // Remove customer from old stake position if exists
+        if (oldStake != IntMaxMap.NO_VALUE) {
+            removeCustomerFromStake(oldStake, customerId);
+        }
+
+        // A concurrent higher submit may already have moved the customer past this stake,
+        // possibly before our add landed; whoever sees the newer max cleans up behind itself
+        if (maxStakes.get(customerId) != stake) {
+            removeCustomerFromStake(stake, customerId);
+        }
+    }
+
+    /**
+     * Removes a customer from a specific stake position
+     */
+    private void removeCustomerFromStake(int stake, int customerId) {
+        StakeBucket bucket = index.get(stake);
+        if (bucket != null && bucket.remove(customerId)) {
+            index.remove(stake, bucket);
+        }
+    }
+
+    /**
+     * Adds a customer to a specific stake position
+     */
+    private void addCustomerToStake(int stake, int customerId) {
+        while (true) {
+            StakeBucket bucket = index.computeIfAbsent(stake, k -> new StakeBucket());
+            if (bucket.add(customerId)) {
+                return;
+            }
+            // Bucket was retired concurrently: help unlink it and retry with a fresh one
+            index.remove(stake, bucket);
+        }
+    }
+
+    /**
+     * Copies one page of a walk over the index, skipping customers whose max stake moved on
+     */
+    private final class PageCollector implements IntConsumer {
+
+        private final int[] customerIds;
+        private final int[] stakes;
+        private int skip;
+        private int size;
+        private int stake;
+
+        PageCollector(int offset, int limit) {
+            this.customerIds = new int[limit];
+            this.stakes = new int[limit];
+            this.skip = offset;
+        }
+
+        boolean isFull() {
+            return size == customerIds.length;
+        }
+
+        @Override
+        public void accept(int customerId) {
+            if (isFull() || maxStakes.get(customerId) != stake) {
+                return;
+            }
+            if (skip > 0) {
+                skip--;
+                return;
+            }
+            customerIds[size] = customerId;
+            stakes[size++] = stake;
+        }
+    }
+
+    /**
+     * Collects (customerId, stake) pairs as longs, customer or stake in the high half; both
+     * are non-negative, so sorting the longs orders the pairs by their high half
+     */
+    private static final class PackedEntries implements IntMaxMap.EntryConsumer {
+
+        private final boolean stakeFirst;
+        private long[] packed;
+        private int size;
+
+        PackedEntries(int expectedSize, boolean stakeFirst) {
+            this.stakeFirst = stakeFirst;
+            this.packed = new long[Math.max(16, expectedSize)];
+        }
+
+        @Override
+        public void accept(int customerId, int stake) {
+            if (size == packed.length) {
+                packed = Arrays.copyOf(packed, size << 1);
+            }
+            packed[size++] = stakeFirst ? (long) stake << 32 | customerId : (long) customerId << 32 | stake;
+        }
+    }
+}
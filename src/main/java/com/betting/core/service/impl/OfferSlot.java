@@ -0,0 +1,336 @@
+package com.betting.core.service.impl;
+
+import com.betting.api.exception.BettingException;
+import com.betting.core.model.Leaderboard;
+import com.betting.core.model.OfferSnapshot;
+import com.betting.core.model.OfferStatus;
+import com.betting.core.model.StakeDistribution;
+import com.betting.core.service.OfferArchive;
+import com.betting.core.service.StakeJournal;
+import com.betting.util.IntMaxMap;
+import com.betting.util.Logger;
+
+import java.io.IOException;
+
+/**
+ * Lifecycle status and stake storage of one bet offer
+ * <p>
+ * The stakes live in one of three forms:
+ * - live: a concurrent {@link OfferBook}, taking submits without locks
+ * - compacted: an immutable {@link OfferSnapshot}, two sorted primitive arrays
+ * - archived: only in the {@link OfferArchive}, paged back in when the stakes are needed
+ * <p>
+ * The leaderboard of a compacted or archived offer stays on the heap, so serving it never
+ * pages anything in. A submit to a compacted or archived offer turns it back into a live
+ * book, carrying on its leaderboard. Moving between forms takes the slot's lock; submits and
+ * reads of a live book do not.
+ * <p>
+ * Stake counts for ranks beyond the leaderboard are only kept once such a rank is asked for:
+ * the first query swaps the live book for a copy that counts, the way compaction swaps it for
+ * a snapshot, and later books of the offer count from the start.
+ * <p>
+ * The histogram of the customers' max stakes lives in the live book and is rebuilt with it;
+ * a compacted or archived offer keeps only the distribution read from its snapshot.
+ */
+final class OfferSlot {
+
+    private final int betOfferId;
+    private final int leaderboardSize;
+    private final boolean ordered;
+
+    /**
+     * Whether books count customers per stake; set by the first rank beyond the leaderboard
+     */
+    private volatile boolean ranked;
+
+    private volatile OfferStatus status = OfferStatus.OPEN;
+    private volatile long statusChangedNanos = System.nanoTime();
+
+    /**
+     * Live form, or null once compacted
+     */
+    private volatile OfferBook book;
+
+    /**
+     * Compacted form, or null while live or archived
+     */
+    private volatile OfferSnapshot compacted;
+
+    /**
+     * Leaderboard of the compacted or archived form
+     */
+    private volatile Leaderboard frozen = Leaderboard.EMPTY;
+
+    /**
+     * Stake distribution of the compacted or archived form
+     */
+    private volatile StakeDistribution frozenDistribution = StakeDistribution.EMPTY;
+
+    /**
+     * Whether the archive holds the current stakes; guarded by {@code this}
+     */
+    private boolean stored;
+
+    /**
+     * Set by submits, cleared by each sweep
+     */
+    private volatile boolean active;
+
+    /**
+     * Start of the current quiet period; sweeper only
+     */
+    private long idleSinceNanos = System.nanoTime();
+
+    OfferSlot(int betOfferId, int leaderboardSize, boolean ordered) {
+        this.betOfferId = betOfferId;
+        this.leaderboardSize = leaderboardSize;
+        this.ordered = ordered;
+        this.book = new OfferBook(leaderboardSize, ordered);
+    }
+
+    OfferStatus status() {
+        return status;
+    }
+
+    /**
+     * @param journal receives the change under the slot's lock, so the log holds an offer's
+     *                status changes in the order they were made
+     * @return the previous status
+     * @throws BettingException {@code OFFER_CLOSED} if the offer is closed and {@code next} is not
+     */
+    synchronized OfferStatus setStatus(OfferStatus next, StakeJournal journal) {
+        OfferStatus previous = status;
+        if (previous == OfferStatus.CLOSED && next != OfferStatus.CLOSED) {
+            throw new BettingException(BettingException.ErrorCode.OFFER_CLOSED,
+                    "Bet offer " + betOfferId + " is closed for good");
+        }
+        if (previous != next) {
+            statusChangedNanos = System.nanoTime();
+            status = next;
+            journal.offerStatus(betOfferId, next);
+        }
+        return previous;
+    }
+
+    /**
+     * Raises a customer's max stake, making the offer live again if it was compacted
+     *
+     * @return the previous max stake, as {@link OfferBook#submit}
+     */
+    int submit(int customerId, int stake, OfferArchive archive) {
+        if (!active) {
+            active = true;
+        }
+        OfferBook current = live(archive);
+        int oldStake = current.submit(customerId, stake);
+        if (oldStake < stake) {
+            while (current.isSealed()) {
+                // Compacted under us, possibly without this raise: repeat it on the new book
+                current = live(archive);
+                current.submit(customerId, stake);
+            }
+        }
+        return oldStake;
+    }
+
+    Leaderboard leaderboard() {
+        OfferBook current = book;
+        return current != null ? current.leaderboard() : frozen;
+    }
+
+    StakeDistribution distribution() {
+        OfferBook current = book;
+        return current != null ? current.distribution() : frozenDistribution;
+    }
+
+    /**
+     * Ranks {@code offset + 1} to {@code offset + limit} from the ordered index, paging the
+     * offer back in if it was compacted
+     */
+    Leaderboard page(int offset, int limit, OfferArchive archive) {
+        return live(archive).page(offset, limit);
+    }
+
+    /**
+     * Entry threshold of the top {@code n} from the ordered index, paging the offer back in
+     * if it was compacted
+     */
+    int threshold(int n, OfferArchive archive) {
+        return ranked(archive).threshold(n);
+    }
+
+    /**
+     * Rank of a customer from the stake counts, paging the offer back in if it was compacted
+     *
+     * @return the rank, or 0 if the customer has no stake
+     */
+    int rank(int customerId, OfferArchive archive) {
+        return ranked(archive).rank(customerId);
+    }
+
+    /**
+     * Copies the offer's stakes, reading them from the archive without paging them in
+     */
+    OfferSnapshot snapshot(OfferArchive archive) {
+        OfferBook current = book;
+        if (current != null) {
+            return current.snapshot(betOfferId, status);
+        }
+        OfferSnapshot copy = compacted;
+        if (copy != null) {
+            return copy.withStatus(status);
+        }
+        synchronized (this) {
+            return book != null || compacted != null ? snapshot(archive) : load(archive).withStatus(status);
+        }
+    }
+
+    /**
+     * Merges a snapshot into the offer and takes over its status
+     *
+     * @param totals receives every raise the merge makes
+     */
+    synchronized void restore(OfferSnapshot snapshot, OfferArchive archive, CustomerTotals totals) {
+        status = snapshot.status();
+        statusChangedNanos = System.nanoTime();
+        OfferBook current = book;
+        if (current != null && current.size() == 0 && !current.isSealed()) {
+            // Nothing to merge with: build the book in bulk
+            current.seal();
+            book = new OfferBook(leaderboardSize, ordered, ranked, snapshot);
+            for (int i = 0; i < snapshot.size(); i++) {
+                totals.raise(snapshot.customerIds()[i], IntMaxMap.NO_VALUE, snapshot.stakes()[i]);
+            }
+        } else {
+            live(archive).restore(snapshot, totals::raise);
+        }
+    }
+
+    /**
+     * Sweeper only: compacts the offer once it has been quiet for {@code idleNanos}, or closed
+     * for {@code closedNanos}, and moves compacted stakes to the archive if there is one
+     *
+     * @return true if the offer changed form
+     */
+    boolean sweep(long now, long idleNanos, long closedNanos, OfferArchive archive) {
+        if (active) {
+            active = false;
+            idleSinceNanos = now;
+            return false;
+        }
+        boolean due = now - idleSinceNanos >= idleNanos
+                || status == OfferStatus.CLOSED && now - statusChangedNanos >= closedNanos;
+        if (!due) {
+            return false;
+        }
+        boolean changed = compact();
+        if (archive != null) {
+            changed |= archive(archive);
+        }
+        return changed;
+    }
+
+    /**
+     * @return true while the stakes are in a live book
+     */
+    boolean isLive() {
+        return book != null;
+    }
+
+    /**
+     * @return true while the stakes are only in the archive
+     */
+    boolean isArchived() {
+        return book == null && compacted == null;
+    }
+
+    private synchronized boolean compact() {
+        OfferBook current = book;
+        if (current == null) {
+            return false;
+        }
+        current.seal();
+        OfferSnapshot copy = current.snapshot(betOfferId, status);
+        compacted = copy;
+        frozen = copy.leaderboard();
+        frozenDistribution = StakeServiceImpl.distribution(copy);
+        book = null;
+        return true;
+    }
+
+    private synchronized boolean archive(OfferArchive archive) {
+        OfferSnapshot copy = compacted;
+        if (copy == null) {
+            return false;
+        }
+        if (!stored) {
+            try {
+                archive.store(copy);
+            } catch (IOException e) {
+                Logger.error("Cannot archive bet offer " + betOfferId + ", keeping it in memory", e);
+                return false;
+            }
+            stored = true;
+        }
+        compacted = null;
+        return true;
+    }
+
+    /**
+     * @return the live book, building it from the compacted or archived stakes if needed
+     */
+    private OfferBook live(OfferArchive archive) {
+        OfferBook current = book;
+        if (current != null && !current.isSealed()) {
+            return current;
+        }
+        // Sealed: a compaction holds the lock until it has replaced the book
+        synchronized (this) {
+            if (book == null) {
+                OfferSnapshot contents = compacted != null ? compacted : load(archive);
+                book = new OfferBook(leaderboardSize, ordered, ranked, contents);
+                compacted = null;
+                if (stored) {
+                    stored = false;
+                    try {
+                        archive.delete(betOfferId);
+                    } catch (IOException e) {
+                        Logger.warn("Cannot delete archived bet offer %d: %s", betOfferId, e.getMessage());
+                    }
+                }
+            }
+            return book;
+        }
+    }
+
+    /**
+     * @return the live book, replaced by one counting customers per stake if it does not yet
+     */
+    private OfferBook ranked(OfferArchive archive) {
+        OfferBook current = live(archive);
+        if (current.isRanked()) {
+            return current;
+        }
+        synchronized (this) {
+            ranked = true;
+            current = live(archive);
+            if (!current.isRanked()) {
+                // Submits that raise on the sealed book wait for the lock and repeat on this one
+                current.seal();
+                book = new OfferBook(leaderboardSize, ordered, true, current.snapshot(betOfferId, status));
+            }
+            return book;
+        }
+    }
+
+    /**
+     * Caller holds the lock and has checked that the offer is archived
+     */
+    private OfferSnapshot load(OfferArchive archive) {
+        try {
+            return archive.load(betOfferId);
+        } catch (IOException e) {
+            throw new BettingException(BettingException.ErrorCode.INTERNAL_ERROR, e);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.betting.core.service.impl;
+
+/**
+ * Receives the raises a book makes to customers' max stakes
+ */
+@FunctionalInterface
+interface RaiseListener {
+
+    /**
+     * Called for every accepted submit; a raise only if {@code oldStake} is lower than {@code stake}
+     *
+     * @param oldStake previous max stake, or {@link com.betting.util.IntMaxMap#NO_VALUE}
+     */
+    void raise(int customerId, int oldStake, int stake);
+}
@@ -0,0 +1,284 @@
+package com.betting.core.service.impl;
+
+import com.betting.api.exception.BettingException;
+import com.betting.core.model.Leaderboard;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Windowed leaderboards: the top stakes each offer got within the last minutes
+ * <p>
+ * Every offer has a ring of buckets, one per interval of wall-clock time, each keeping only
+ * the top K customers by their highest stake in that interval. A customer in the window's
+ * top K is in the top K of the bucket holding their highest stake, so merging the K-sized
+ * buckets of a window gives its exact top K without keeping raw stakes: memory is bounded by
+ * buckets times K per offer, whatever the number of submits.
+ * <p>
+ * Rotation needs no timer: buckets are stamped with their interval, a write to a bucket left
+ * from an earlier lap of the ring clears it first, and reads skip stale buckets. Rings with
+ * no stake for a whole lap are dropped by the first write of each lap.
+ * <p>
+ * Submits only lock the bucket of their offer and interval, and most skip even that: once a
+ * bucket is full, a stake at or below its lowest entry cannot enter it.
+ */
+final class RecentStakes {
+
+    static final long BUCKET_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    /**
+     * Buckets per ring: 10 minutes of 10-second buckets
+     */
+    static final int BUCKETS = 60;
+
+    private final long bucketMillis;
+    private final int buckets;
+    private final int capacity;
+    private final LongSupplier clock;
+
+    /**
+     * Rings of offers with a stake in the last lap: betOfferId -> ring
+     */
+    private final ConcurrentHashMap<Integer, Ring> rings = new ConcurrentHashMap<>();
+
+    /**
+     * Interval of the last sweep for idle rings
+     */
+    private final AtomicLong sweptInterval = new AtomicLong();
+
+    RecentStakes() {
+        this(BUCKET_MILLIS, BUCKETS, StakeServiceImpl.TOP_STAKES_LIMIT, System::currentTimeMillis);
+    }
+
+    /**
+     * @param bucketMillis length of one bucket's interval
+     * @param buckets      buckets per ring; the longest window is {@code buckets * bucketMillis}
+     * @param capacity     customers kept per bucket and shown on a windowed leaderboard
+     * @param clock        wall-clock time in milliseconds
+     */
+    RecentStakes(long bucketMillis, int buckets, int capacity, LongSupplier clock) {
+        this.bucketMillis = bucketMillis;
+        this.buckets = buckets;
+        this.capacity = capacity;
+        this.clock = clock;
+    }
+
+    /**
+     * Counts an accepted stake towards the current interval of its offer
+     */
+    void record(int betOfferId, int customerId, int stake) {
+        long interval = clock.getAsLong() / bucketMillis;
+        while (true) {
+            Ring ring = rings.get(betOfferId);
+            if (ring == null) {
+                ring = rings.computeIfAbsent(betOfferId, id -> new Ring());
+            }
+            ring.record(interval, customerId, stake);
+            if (!ring.retired) {
+                break;
+            }
+            // Dropped by a sweep that missed this stake; a repeat into the next ring is harmless
+        }
+
+        long swept = sweptInterval.get();
+        if (interval - swept >= buckets && sweptInterval.compareAndSet(swept, interval)) {
+            long oldest = interval - buckets;
+            rings.forEach((id, ring) -> rings.computeIfPresent(id, (key, r) -> r.retire(oldest) ? null : r));
+        }
+    }
+
+    /**
+     * @param windowMillis how far back to look; rounded up to whole buckets, counting the
+     *                     current, partly elapsed one
+     * @return the offer's top customers by their highest stake in the window, highest first,
+     * equal stakes by customer ID; its version is the current interval
+     * @throws BettingException {@code INVALID_PARAMETER_FORMAT} if the window is not positive
+     *                          or longer than a ring
+     */
+    Leaderboard leaderboard(int betOfferId, long windowMillis) {
+        if (windowMillis <= 0 || windowMillis > maxWindowMillis()) {
+            throw new BettingException(BettingException.ErrorCode.INVALID_PARAMETER_FORMAT,
+                    "Window must be between 1 and " + maxWindowMillis() + " ms: " + windowMillis);
+        }
+        long interval = clock.getAsLong() / bucketMillis;
+        Ring ring = rings.get(betOfferId);
+        if (ring == null) {
+            return Leaderboard.EMPTY;
+        }
+
+        int count = (int) ((windowMillis + bucketMillis - 1) / bucketMillis);
+        Map<Integer, Integer> best = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            ring.slot(interval - i).copyTo(interval - i, best);
+        }
+        return top(interval, best);
+    }
+
+    long maxWindowMillis() {
+        return bucketMillis * buckets;
+    }
+
+    /**
+     * @return number of offers with a ring
+     */
+    int offerCount() {
+        return rings.size();
+    }
+
+    private Leaderboard top(long version, Map<Integer, Integer> best) {
+        // (stake, inverted customer ID) in one long, so an ascending sort ranks from the end
+        long[] entries = new long[best.size()];
+        int n = 0;
+        for (Map.Entry<Integer, Integer> entry : best.entrySet()) {
+            entries[n++] = (long) entry.getValue() << 32 | (~entry.getKey() & 0xFFFFFFFFL);
+        }
+        Arrays.sort(entries);
+
+        int size = Math.min(n, capacity);
+        int[] customerIds = new int[size];
+        int[] stakes = new int[size];
+        for (int i = 0; i < size; i++) {
+            long entry = entries[n - 1 - i];
+            customerIds[i] = ~(int) entry;
+            stakes[i] = (int) (entry >>> 32);
+        }
+        return new Leaderboard(version, customerIds, stakes);
+    }
+
+    /**
+     * One offer's buckets, indexed by interval modulo the ring length
+     */
+    private final class Ring {
+
+        private final Bucket[] slots = new Bucket[buckets];
+
+        /**
+         * Latest interval written; written before {@link #retired} is read, and read by a
+         * sweep after setting it, so a sweep and a write racing on a ring see each other
+         */
+        private volatile long newest;
+        private volatile boolean retired;
+
+        Ring() {
+            for (int i = 0; i < slots.length; i++) {
+                slots[i] = new Bucket();
+            }
+        }
+
+        Bucket slot(long interval) {
+            return slots[(int) Math.floorMod(interval, (long) buckets)];
+        }
+
+        void record(long interval, int customerId, int stake) {
+            slot(interval).offer(interval, customerId, stake);
+            if (interval > newest) {
+                newest = interval;
+            }
+        }
+
+        /**
+         * @return whether the ring had no write since {@code oldest} and is retired
+         */
+        boolean retire(long oldest) {
+            retired = true;
+            if (newest >= oldest) {
+                retired = false;
+            }
+            return retired;
+        }
+    }
+
+    /**
+     * Top customers of one interval by their highest stake in it, unordered
+     */
+    private final class Bucket {
+
+        /**
+         * Interval the entries belong to; -1 until first written
+         */
+        private volatile long interval = -1;
+
+        /**
+         * Lowest stake held once the bucket is full, 0 before; only rises within an interval
+         */
+        private volatile int floor;
+
+        private int[] customerIds;
+        private int[] stakes;
+        private int size;
+
+        void offer(long stampedInterval, int customerId, int stake) {
+            if (interval == stampedInterval && stake <= floor) {
+                return;
+            }
+            synchronized (this) {
+                if (interval != stampedInterval) {
+                    if (interval > stampedInterval) {
+                        // A late write from an interval already rotated out
+                        return;
+                    }
+                    if (customerIds == null) {
+                        customerIds = new int[capacity];
+                        stakes = new int[capacity];
+                    }
+                    size = 0;
+                    floor = 0;
+                    interval = stampedInterval;
+                }
+
+                int index = indexOf(customerId);
+                if (index >= 0) {
+                    if (stake <= stakes[index]) {
+                        return;
+                    }
+                    stakes[index] = stake;
+                } else if (size < capacity) {
+                    customerIds[size] = customerId;
+                    stakes[size++] = stake;
+                } else if (stake > floor) {
+                    int lowest = lowest();
+                    customerIds[lowest] = customerId;
+                    stakes[lowest] = stake;
+                } else {
+                    return;
+                }
+                if (size == capacity) {
+                    floor = stakes[lowest()];
+                }
+            }
+        }
+
+        synchronized void copyTo(long stampedInterval, Map<Integer, Integer> best) {
+            if (interval != stampedInterval) {
+                return;
+            }
+            for (int i = 0; i < size; i++) {
+                best.merge(customerIds[i], stakes[i], Math::max);
+            }
+        }
+
+        private int indexOf(int customerId) {
+            for (int i = 0; i < size; i++) {
+                if (customerIds[i] == customerId) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private int lowest() {
+            int lowest = 0;
+            for (int i = 1; i < size; i++) {
+                if (stakes[i] < stakes[lowest]) {
+                    lowest = i;
+                }
+            }
+            return lowest;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.betting.core.service.impl;
+
+import com.betting.core.model.Session;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * Sessions filed by the second they expire in, so expiring them never scans live ones
+ * <p>
+ * A ring of one-second slots, longer than a session lasts: a session is queued in the slot of
+ * its expiry second, and once that second has passed the slot is drained. Expiry work is
+ * proportional to the sessions filed in the elapsed seconds, whatever the number of sessions.
+ * <p>
+ * Renewals cost nothing here: a renewed session stays in its old slot, and draining that slot
+ * finds its expiry moved and files it again under the new second. A session is in exactly one
+ * slot at a time, so one renewed many times is moved at most once per slot it passes.
+ * <p>
+ * Any number of threads may add sessions; one thread at a time expires them.
+ */
+final class SessionExpiryWheel {
+
+    /**
+     * Seconds in the ring; longer than a session lasts, so a slot holds one second's sessions
+     */
+    static final int SLOTS = 1024;
+
+    private final ConcurrentLinkedQueue<Session>[] slots;
+
+    /**
+     * Last second whose slot has been drained; only the expiring thread touches it
+     */
+    private long expiredThrough;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    SessionExpiryWheel(long nowMillis) {
+        slots = new ConcurrentLinkedQueue[SLOTS];
+        for (int i = 0; i < SLOTS; i++) {
+            slots[i] = new ConcurrentLinkedQueue<>();
+        }
+        expiredThrough = nowMillis / 1000 - 1;
+    }
+
+    /**
+     * Files a new session under its expiry second
+     */
+    void add(Session session) {
+        slotOf(session).add(session);
+    }
+
+    /**
+     * Drains the slots of every second fully elapsed since the last call
+     *
+     * @param onExpired called with each session whose expiry has passed
+     * @return number of sessions expired
+     */
+    int expire(long nowMillis, Consumer<Session> onExpired) {
+        long last = nowMillis / 1000 - 1;
+        // After a pause longer than the ring, every slot is drained once
+        long first = Math.max(expiredThrough + 1, last - SLOTS + 1);
+        int expired = 0;
+        for (long second = first; second <= last; second++) {
+            expired += drain(slots[(int) (second & (SLOTS - 1))], nowMillis, onExpired);
+        }
+        expiredThrough = Math.max(expiredThrough, last);
+        return expired;
+    }
+
+    private int drain(ConcurrentLinkedQueue<Session> slot, long nowMillis, Consumer<Session> onExpired) {
+        int expired = 0;
+        List<Session> laterLaps = null;
+        Session session;
+        while ((session = slot.poll()) != null) {
+            if (session.getExpiryTime() <= nowMillis) {
+                onExpired.accept(session);
+                expired++;
+            } else if (slotOf(session) != slot) {
+                // Renewed: file it under its new expiry second
+                slotOf(session).add(session);
+            } else {
+                // Due in this slot on a later lap; put back once the slot is drained
+                if (laterLaps == null) {
+                    laterLaps = new ArrayList<>();
+                }
+                laterLaps.add(session);
+            }
+        }
+        if (laterLaps != null) {
+            slot.addAll(laterLaps);
+        }
+        return expired;
+    }
+
+    private ConcurrentLinkedQueue<Session> slotOf(Session session) {
+        return slots[(int) ((session.getExpiryTime() / 1000) & (SLOTS - 1))];
+    }
+}
@@ -2,132 +2,128 @@ package com.betting.core.service.impl;
 
 import com.betting.core.model.Session;
 import com.betting.core.service.SessionService;
+import com.betting.util.SessionKeyGenerator;
 
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * - O(1) session lookup using ConcurrentHashMap
- * - Single authoritative map: sessionKey -> Session
- * - Secondary index cache: customerId -> sessionKey (lazy repair if stale)
- * - Optimized session key generation algorithm
- * - Intelligent cleanup strategy (30-second intervals)
- * - Thread-safe operations with atomic counters
+ * - Two maps kept in step: sessionKey -> Session for lookups, customerId -> Session for logins
+ * - A customer's session is created, renewed and removed only inside a compute on its index
+ *   entry, so each customer has at most one live session and concurrent logins share one
+ * - Collision-free, unguessable session keys from {@link SessionKeyGenerator}
+ * - Expiry by second from a {@link SessionExpiryWheel}, checked every second, without scanning live sessions
  */
 public class SessionServiceImpl implements SessionService {
 
-    /** 主存：sessionKey -> Session */
+    /** 主存：sessionKey -> Session，只保存各客户的当前会话 */
     private final ConcurrentHashMap<String, Session> sessions = new ConcurrentHashMap<>();
 
-    /** 索引缓存：customerId -> sessionKey（懒惰修复，不保证强一致） */
-    private final ConcurrentHashMap<Integer, String> customerIndex = new ConcurrentHashMap<>();
+    /** 权威索引：customerId -> 当前会话；只在该客户条目的 compute 中修改 */
+    private final ConcurrentHashMap<Integer, Session> customerIndex = new ConcurrentHashMap<>();
+
+    private final SessionExpiryWheel expiryWheel = new SessionExpiryWheel(System.currentTimeMillis());
 
     private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
-    private final AtomicLong sessionCounter = new AtomicLong(0);
+    private final SessionKeyGenerator keyGenerator = new SessionKeyGenerator();
 
     private static final long SESSION_DURATION = 10 * 60 * 1000L;
-    private static final String CHARS = "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
 
     public SessionServiceImpl() {
-        scheduler.scheduleAtFixedRate(this::cleanupExpired, 30, 30, TimeUnit.SECONDS);
+        scheduler.scheduleAtFixedRate(this::cleanupExpired, 1, 1, TimeUnit.SECONDS);
     }
 
+    /**
+     * Renews the customer's live session, or replaces an expired or missing one with a new
+     * session; concurrent calls for one customer run one at a time and share the result
+     */
     @Override
     public Session createOrGetSession(int customerId) {
-        // 优先走索引缓存
-        String existingSessionKey = customerIndex.get(customerId);
-        Session existingSession = existingSessionKey != null ? sessions.get(existingSessionKey) : null;
-
-        if (existingSession != null && existingSession.getExpiryTime() > System.currentTimeMillis()) {
-            existingSession.renew(System.currentTimeMillis() + SESSION_DURATION);
-            return existingSession;
-        }
-
-        // fallback：从 sessions 扫描一次（修复缓存）
-        existingSession = sessions.values().stream()
-                .filter(s -> s.getCustomerId() == customerId && s.getExpiryTime() > System.currentTimeMillis())
-                .findFirst()
-                .orElse(null);
-
-        if (existingSession != null) {
-            existingSession.renew(System.currentTimeMillis() + SESSION_DURATION);
-            customerIndex.put(customerId, existingSession.getSessionKey());
-            return existingSession;
-        }
+        long now = System.currentTimeMillis();
+        return customerIndex.compute(customerId, (id, current) -> {
+            if (current != null && current.getExpiryTime() > now) {
+                current.renew(now + SESSION_DURATION);
+                return current;
+            }
+            if (current != null) {
+                sessions.remove(current.getSessionKey(), current);
+            }
 
-        // create new session key
-        String newSessionKey = generateSessionKey();
-        Session newSession = new Session(customerId, newSessionKey, System.currentTimeMillis() + SESSION_DURATION);
+            Session newSession = new Session(id, keyGenerator.next(), now + SESSION_DURATION);
+            sessions.put(newSession.getSessionKey(), newSession);
+            expiryWheel.add(newSession);
+            return newSession;
+        });
+    }
 
-        sessions.put(newSessionKey, newSession);
-        customerIndex.put(customerId, newSessionKey);
+    @Override
+    public boolean validateSession(String sessionKey) {
+        return authenticate(sessionKey) != INVALID_SESSION;
+    }
 
-        return newSession;
+    @Override
+    public int getCustomerId(String sessionKey) {
+        return Math.max(authenticate(sessionKey), 0);
     }
 
+    /**
+     * One map lookup for both the validity check and the customer
+     */
     @Override
-    public boolean validateSession(String sessionKey) {
-        if (sessionKey == null) return false;
+    public int authenticate(String sessionKey) {
+        if (sessionKey == null) return INVALID_SESSION;
 
         Session session = sessions.get(sessionKey);
-        if (session == null) return false;
+        if (session == null) return INVALID_SESSION;
 
         long now = System.currentTimeMillis();
         if (session.getExpiryTime() <= now) {
-            sessions.remove(sessionKey);
-            customerIndex.remove(session.getCustomerId(), sessionKey); // 只移除匹配的索引，避免误删
-            return false;
+            remove(session, now);
+            return INVALID_SESSION;
         }
-        return true;
+        return session.getCustomerId();
     }
 
     @Override
-    public int getCustomerId(String sessionKey) {
-        if (sessionKey == null) return 0;
+    public boolean invalidateSession(String sessionKey) {
+        if (sessionKey == null) return false;
 
         Session session = sessions.get(sessionKey);
-        if (session == null) return 0;
-
-        long now = System.currentTimeMillis();
-        if (session.getExpiryTime() <= now) {
-            sessions.remove(sessionKey);
-            customerIndex.remove(session.getCustomerId(), sessionKey);
-            return 0;
-        }
+        if (session == null) return false;
 
-        return session.getCustomerId();
+        boolean live = session.getExpiryTime() > System.currentTimeMillis();
+        return remove(session, Long.MAX_VALUE) && live;
     }
 
     /**
-     * cleanupExpired
+     * Removes the sessions that expired in the seconds since the last run
      */
     private void cleanupExpired() {
         long now = System.currentTimeMillis();
-        sessions.entrySet().removeIf(entry -> {
-            Session session = entry.getValue();
-            if (session.getExpiryTime() <= now) {
-                customerIndex.remove(session.getCustomerId(), entry.getKey());
-                return true;
-            }
-            return false;
-        });
+        expiryWheel.expire(now, session -> remove(session, now));
     }
 
-    /** 生成 sessionKey */
-    private String generateSessionKey() {
-        long timestamp = System.currentTimeMillis() % 1000000;
-        long counter = sessionCounter.incrementAndGet() % 1000;
-        long combined = timestamp * 1000 + counter;
-
-        StringBuilder sb = new StringBuilder(7);
-        for (int i = 0; i < 7; i++) {
-            sb.append(CHARS.charAt((int) (combined % CHARS.length())));
-            combined /= CHARS.length();
-        }
-        return sb.toString();
+    /**
+     * Removes a session from both maps if it is still its customer's current one and expires
+     * by {@code expiredBy}; under the index entry's lock, so a concurrent renewal either
+     * happens first and keeps the session, or finds it gone and creates a new one
+     *
+     * @return whether the session was removed
+     */
+    private boolean remove(Session session, long expiredBy) {
+        boolean[] removed = new boolean[1];
+        customerIndex.computeIfPresent(session.getCustomerId(), (id, current) -> {
+            if (current != session || session.getExpiryTime() > expiredBy) {
+                return current;
+            }
+            sessions.remove(session.getSessionKey(), session);
+            removed[0] = true;
+            return null;
+        });
+        return removed[0];
     }
 
     public int getActiveSessionCount() {
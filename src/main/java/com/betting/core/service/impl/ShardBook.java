@@ -0,0 +1,197 @@
+package com.betting.core.service.impl;
+
+import com.betting.core.model.Leaderboard;
+import com.betting.core.model.OfferSnapshot;
+import com.betting.core.model.StakeDistribution;
+import com.betting.util.IntMaxMap;
+import com.betting.util.LogHistogram;
+
+import java.util.Arrays;
+
+/**
+ * Stake state of one bet offer, owned by a single shard thread
+ * <p>
+ * Only the owner reads or writes the max stake table and the working top entries, so both
+ * are plain arrays. Readers only see {@link #leaderboard()}, an immutable snapshot the owner
+ * republishes once per drained batch, however many submits in the batch changed it, and
+ * the histogram of max stakes, which the owner updates in place.
+ */
+final class ShardBook {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    // customerId -> max stake, open addressing with linear probing; key 0 marks a free slot
+    private int[] keys = new int[INITIAL_CAPACITY];
+    private int[] values = new int[INITIAL_CAPACITY];
+    private int size;
+
+    // Working top entries, highest stake first, ties in arrival order
+    private final int[] topCustomerIds;
+    private final int[] topStakes;
+    private int topSize;
+    private boolean dirty;
+
+    private volatile Leaderboard published = Leaderboard.EMPTY;
+
+    private final LogHistogram histogram = new LogHistogram(StakeServiceImpl.MAX_STAKE_LIMIT);
+
+    ShardBook(int leaderboardSize) {
+        this.topCustomerIds = new int[leaderboardSize];
+        this.topStakes = new int[leaderboardSize];
+    }
+
+    /**
+     * Owner only: raises a customer's max stake
+     *
+     * @return the previous max stake, or {@link IntMaxMap#NO_VALUE}; the max stake went up if
+     * and only if the returned value is lower than {@code stake}
+     */
+    int apply(int customerId, int stake) {
+        int slot = find(customerId);
+        int oldStake = IntMaxMap.NO_VALUE;
+        if (keys[slot] == customerId) {
+            oldStake = values[slot];
+            if (oldStake >= stake) {
+                return oldStake;
+            }
+            values[slot] = stake;
+        } else {
+            keys[slot] = customerId;
+            values[slot] = stake;
+            if (++size > keys.length / 4 * 3) {
+                grow();
+            }
+        }
+        histogram.replace(oldStake, stake);
+
+        if (topSize == topStakes.length && stake <= topStakes[topSize - 1]) {
+            return oldStake;
+        }
+        promote(customerId, stake);
+        return oldStake;
+    }
+
+    /**
+     * Owner only: publishes the working top entries if they changed since the last call
+     */
+    void publish() {
+        if (dirty) {
+            published = new Leaderboard(published.getVersion() + 1,
+                    Arrays.copyOf(topCustomerIds, topSize), Arrays.copyOf(topStakes, topSize));
+            dirty = false;
+        }
+    }
+
+    /**
+     * Owner only
+     *
+     * @return true if the working top entries changed since the last {@link #publish()}
+     */
+    boolean isDirty() {
+        return dirty;
+    }
+
+    Leaderboard leaderboard() {
+        return published;
+    }
+
+    StakeDistribution distribution() {
+        return StakeServiceImpl.distribution(histogram, published);
+    }
+
+    /**
+     * Owner only: copies the max stake table and the published top entries
+     */
+    OfferSnapshot snapshot(int betOfferId) {
+        // (customerId, stake) in one long: customer IDs are positive, so sorting orders by customer
+        long[] packed = new long[size];
+        int count = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) {
+                packed[count++] = (long) keys[i] << 32 | values[i];
+            }
+        }
+        Arrays.sort(packed);
+
+        int[] customerIds = new int[count];
+        int[] stakes = new int[count];
+        for (int i = 0; i < count; i++) {
+            customerIds[i] = (int) (packed[i] >>> 32);
+            stakes[i] = (int) packed[i];
+        }
+        return new OfferSnapshot(betOfferId, customerIds, stakes, published);
+    }
+
+    /**
+     * Owner only: merges a snapshot into the book, leaderboard entries first so equal stakes
+     * keep their order, and publishes the result
+     *
+     * @param totals receives every raise the merge makes
+     */
+    void restore(OfferSnapshot snapshot, CustomerTotals totals) {
+        Leaderboard top = snapshot.leaderboard();
+        for (int i = 0; i < top.size(); i++) {
+            int customerId = top.getCustomerId(i);
+            totals.raise(customerId, apply(customerId, top.getStake(i)), top.getStake(i));
+        }
+        for (int i = 0; i < snapshot.size(); i++) {
+            int customerId = snapshot.customerIds()[i];
+            int stake = snapshot.stakes()[i];
+            totals.raise(customerId, apply(customerId, stake), stake);
+        }
+        publish();
+    }
+
+    private void promote(int customerId, int stake) {
+        int existing = topSize;
+        for (int i = 0; i < topSize; i++) {
+            if (topCustomerIds[i] == customerId) {
+                existing = i;
+                break;
+            }
+        }
+        if (existing == topSize && topSize < topStakes.length) {
+            topSize++;
+        }
+
+        // Shift lower entries down over the customer's old place (or off the end), then insert
+        // after every remaining entry with an equal or higher stake
+        int target = Math.min(existing, topSize - 1);
+        while (target > 0 && topStakes[target - 1] < stake) {
+            topCustomerIds[target] = topCustomerIds[target - 1];
+            topStakes[target] = topStakes[target - 1];
+            target--;
+        }
+        topCustomerIds[target] = customerId;
+        topStakes[target] = stake;
+        dirty = true;
+    }
+
+    private int find(int customerId) {
+        int mask = keys.length - 1;
+        int slot = hash(customerId) & mask;
+        while (keys[slot] != 0 && keys[slot] != customerId) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new int[oldKeys.length << 1];
+        values = new int[oldKeys.length << 1];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int slot = find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
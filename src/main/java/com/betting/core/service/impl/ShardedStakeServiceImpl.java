@@ -0,0 +1,480 @@
+package com.betting.core.service.impl;
+
+import com.betting.api.exception.BettingException;
+import com.betting.core.model.Leaderboard;
+import com.betting.core.model.OfferSnapshot;
+import com.betting.core.model.OfferStatus;
+import com.betting.core.model.StakeDistribution;
+import com.betting.core.service.StakeJournal;
+import com.betting.core.service.StakeService;
+import com.betting.util.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Partitioned Single-Writer Stake Service Implementation
+ * <p>
+ * Bet offers are partitioned across N shard-owner threads by betOfferId hash. Request threads
+ * validate a submit and hand it to the owning shard through a bounded lock-free queue; only
+ * the owner ever touches an offer's stake state, so it lives in plain arrays with no CAS
+ * and no contention between request threads.
+ * <p>
+ * Features:
+ * - One owner thread per shard, draining its queue in batches
+ * - Leaderboards republished at most once per offer per batch, as immutable snapshots
+ * - Lock-free reads: a single map lookup and a volatile load of the published snapshot
+ * - Back-pressure: a submit waits while its shard's queue is full, and is rejected if the
+ *   shard's owner has died
+ * - A record the owner fails to apply is logged and skipped; the shard keeps running
+ * - Snapshot export and import run on the owners between batches, one offer at a time
+ * - Offer lifecycle checked on the request thread, then again by the owner, which also makes
+ *   the status changes: a submit queued before a close but applied after it is dropped, so
+ *   the log never holds a raise after the close it follows
+ * - Books are already flat primitive arrays, so idle offers are not compacted further
+ * <p>
+ * Submits are applied asynchronously: a read issued right after {@code submitStake} returns
+ * may not see it yet. {@link #flush()} waits until everything submitted so far is visible.
+ */
+public class ShardedStakeServiceImpl implements StakeService {
+
+    private static final int DEFAULT_QUEUE_CAPACITY = 16_384;
+    private static final int DRAIN_BATCH = 1024;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(10);
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 5_000;
+
+    /**
+     * Published books, for readers: betOfferId -> book; only the owning shard inserts
+     */
+    private final ConcurrentHashMap<Integer, ShardBook> books = new ConcurrentHashMap<>();
+    private final Shard[] shards;
+
+    /**
+     * Offers that were ever suspended or closed: betOfferId -> status; absent means open
+     */
+    private final ConcurrentHashMap<Integer, OfferStatus> statuses = new ConcurrentHashMap<>();
+
+    /**
+     * Every customer's sum of max stakes over the offers, raised by the owners as they apply submits
+     */
+    private final CustomerTotals customerTotals = new CustomerTotals();
+
+    /**
+     * Each offer's top stakes per recent interval, recorded by the owners as they apply submits
+     */
+    private final RecentStakes recentStakes = new RecentStakes();
+    private volatile boolean running = true;
+
+    /**
+     * Receives accepted raises on the owner threads; attached once before requests are served
+     */
+    private volatile StakeJournal journal = StakeJournal.NONE;
+
+    public ShardedStakeServiceImpl() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param shardCount number of shard-owner threads
+     */
+    public ShardedStakeServiceImpl(int shardCount) {
+        this(shardCount, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * @param shardCount    number of shard-owner threads
+     * @param queueCapacity maximum number of pending submits per shard
+     */
+    public ShardedStakeServiceImpl(int shardCount, int queueCapacity) {
+        if (shardCount <= 0 || queueCapacity <= 0) {
+            throw new IllegalArgumentException("Shard count and queue capacity must be positive");
+        }
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(i, queueCapacity);
+        }
+        for (Shard shard : shards) {
+            shard.owner.start();
+        }
+    }
+
+    @Override
+    public void submitStake(int customerId, int betOfferId, int stake) {
+        StakeServiceImpl.validateInput(customerId, betOfferId, stake);
+
+        Logger.debug("Submitting stake: customerId=%s, betOfferId=%s, stake=%s",
+                customerId, betOfferId, stake);
+
+        StakeServiceImpl.checkOpen(betOfferId, statuses.getOrDefault(betOfferId, OfferStatus.OPEN));
+        shardFor(betOfferId).enqueue(customerId, betOfferId, stake);
+    }
+
+    /**
+     * Queued with the customer ID negated, which tells the owner to skip the status check
+     */
+    @Override
+    public void restoreStake(int customerId, int betOfferId, int stake) {
+        StakeServiceImpl.validateInput(customerId, betOfferId, stake);
+
+        shardFor(betOfferId).enqueue(-customerId, betOfferId, stake);
+    }
+
+    /**
+     * Runs on the offer's owner, after the submits accepted before the call, so each submit is
+     * applied and logged either wholly before the change or not at all
+     */
+    @Override
+    public void setOfferStatus(int betOfferId, OfferStatus status) {
+        StakeServiceImpl.validateBetOfferId(betOfferId);
+
+        Shard shard = shardFor(betOfferId);
+        long accepted = shard.queue.claimed();
+        OfferStatus previous = shard.call(() -> {
+            shard.drainTo(accepted);
+            OfferStatus current = statuses.getOrDefault(betOfferId, OfferStatus.OPEN);
+            if (current == OfferStatus.CLOSED && status != OfferStatus.CLOSED) {
+                throw new BettingException(BettingException.ErrorCode.OFFER_CLOSED,
+                        "Bet offer " + betOfferId + " is closed for good");
+            }
+            if (current != status) {
+                statuses.put(betOfferId, status);
+                journal.offerStatus(betOfferId, status);
+            }
+            return current;
+        });
+        if (previous != status) {
+            Logger.info("Bet offer %d is now %s", betOfferId, status);
+        }
+    }
+
+    @Override
+    public OfferStatus getOfferStatus(int betOfferId) {
+        StakeServiceImpl.validateBetOfferId(betOfferId);
+
+        return statuses.getOrDefault(betOfferId, OfferStatus.OPEN);
+    }
+
+    @Override
+    public List<String> getTop20Stakes(int betOfferId) {
+        return getLeaderboard(betOfferId).entries();
+    }
+
+    @Override
+    public Leaderboard getLeaderboard(int betOfferId) {
+        StakeServiceImpl.validateBetOfferId(betOfferId);
+
+        ShardBook book = books.get(betOfferId);
+        if (book == null) {
+            Logger.debug("No stakes found for betOfferId=%s", betOfferId);
+            return Leaderboard.EMPTY;
+        }
+        return book.leaderboard();
+    }
+
+    @Override
+    public Leaderboard getCustomerLeaderboard() {
+        return customerTotals.leaderboard();
+    }
+
+    @Override
+    public Leaderboard getRecentLeaderboard(int betOfferId, long windowMillis) {
+        StakeServiceImpl.validateBetOfferId(betOfferId);
+
+        return recentStakes.leaderboard(betOfferId, windowMillis);
+    }
+
+    @Override
+    public StakeDistribution getStakeDistribution(int betOfferId) {
+        StakeServiceImpl.validateBetOfferId(betOfferId);
+
+        ShardBook book = books.get(betOfferId);
+        return book == null ? StakeDistribution.EMPTY : book.distribution();
+    }
+
+    /**
+     * Only the top entries are kept, so pages are cut from the published leaderboard
+     */
+    @Override
+    public Leaderboard getStakes(int betOfferId, int offset, int limit) {
+        StakeServiceImpl.validatePage(offset, limit);
+
+        return getLeaderboard(betOfferId).slice(offset, limit);
+    }
+
+    @Override
+    public int getEntryThreshold(int betOfferId, int n) {
+        StakeServiceImpl.validateRank(n);
+
+        return StakeServiceImpl.boundedThreshold(getLeaderboard(betOfferId), n);
+    }
+
+    @Override
+    public int getRank(int betOfferId, int customerId) {
+        StakeServiceImpl.validateCustomerId(customerId);
+
+        int rank = StakeServiceImpl.boundedRank(getLeaderboard(betOfferId), customerId);
+        if (rank == 0) {
+            throw new BettingException(BettingException.ErrorCode.CUSTOMER_NOT_FOUND,
+                    "Customer " + customerId + " has no top " + StakeServiceImpl.TOP_STAKES_LIMIT
+                            + " stake on bet offer " + betOfferId);
+        }
+        return rank;
+    }
+
+    @Override
+    public void attachJournal(StakeJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Copies one offer at a time on its owner, between drained batches, so submits keep
+     * flowing and at most one copy is held at once
+     */
+    @Override
+    public void exportOffers(Consumer<OfferSnapshot> consumer) {
+        books.forEach((betOfferId, book) -> consumer.accept(shardFor(betOfferId).call(() -> book.snapshot(betOfferId))
+                .withStatus(getOfferStatus(betOfferId))));
+        statuses.forEach((betOfferId, status) -> {
+            if (!books.containsKey(betOfferId)) {
+                consumer.accept(new OfferSnapshot(betOfferId, new int[0], new int[0], Leaderboard.EMPTY, status));
+            }
+        });
+    }
+
+    @Override
+    public void importOffer(OfferSnapshot snapshot) {
+        StakeServiceImpl.validateBetOfferId(snapshot.betOfferId());
+
+        if (snapshot.status() == OfferStatus.OPEN) {
+            statuses.remove(snapshot.betOfferId());
+        } else {
+            statuses.put(snapshot.betOfferId(), snapshot.status());
+        }
+        shardFor(snapshot.betOfferId()).call(() -> {
+            books.computeIfAbsent(snapshot.betOfferId(), k -> new ShardBook(StakeServiceImpl.TOP_STAKES_LIMIT))
+                    .restore(snapshot, customerTotals);
+            return null;
+        });
+    }
+
+    /**
+     * Waits until every submit accepted before this call is applied and visible to readers
+     */
+    public void flush() {
+        for (Shard shard : shards) {
+            long target = shard.queue.claimed();
+            while (shard.applied < target && shard.owner.isAlive()) {
+                LockSupport.parkNanos(FULL_PARK_NANOS);
+            }
+        }
+    }
+
+    /**
+     * Stops the shard owners once their queues are drained; later submits are rejected
+     */
+    public void shutdown() {
+        running = false;
+        for (Shard shard : shards) {
+            LockSupport.unpark(shard.owner);
+        }
+        try {
+            for (Shard shard : shards) {
+                shard.owner.join(SHUTDOWN_TIMEOUT_MILLIS);
+                if (shard.owner.isAlive()) {
+                    Logger.warn("Stake shard %d did not stop in time", shard.id);
+                } else {
+                    // Owner has exited, so this thread may act as the consumer for any stragglers
+                    shard.drain();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Shard shardFor(int betOfferId) {
+        int h = betOfferId * 0x9E3779B9;
+        return shards[Integer.remainderUnsigned(h ^ (h >>> 16), shards.length)];
+    }
+
+    private final class Shard implements Runnable {
+
+        private final int id;
+        private final StakeQueue queue;
+        private final Thread owner;
+        private final List<ShardBook> touched = new ArrayList<>();
+        private final ConcurrentLinkedQueue<FutureTask<?>> tasks = new ConcurrentLinkedQueue<>();
+
+        /**
+         * Submits applied and published so far; written by the owner only
+         */
+        private volatile long applied;
+        private volatile boolean idle;
+
+        Shard(int id, int queueCapacity) {
+            this.id = id;
+            this.queue = new StakeQueue(queueCapacity);
+            this.owner = new Thread(this, "stake-shard-" + id);
+            this.owner.setDaemon(true);
+        }
+
+        void enqueue(int customerId, int betOfferId, int stake) {
+            while (true) {
+                if (!running) {
+                    throw new BettingException(BettingException.ErrorCode.SERVICE_UNAVAILABLE,
+                            "Stake service is shutting down");
+                }
+                if (!owner.isAlive()) {
+                    // Nothing would ever drain the queue
+                    throw new BettingException(BettingException.ErrorCode.SERVICE_UNAVAILABLE,
+                            "Stake shard " + id + " has stopped");
+                }
+                if (queue.offer(customerId, betOfferId, stake)) {
+                    break;
+                }
+                // Queue full: make sure the owner is draining and give it the CPU
+                LockSupport.unpark(owner);
+                Thread.yield();
+            }
+            // The queue publishes with a volatile store, so either the owner sees the entry
+            // before parking or we see it idle here
+            if (idle) {
+                LockSupport.unpark(owner);
+            }
+        }
+
+        /**
+         * Runs {@code work} on the owner between two batches and waits for its result
+         */
+        <T> T call(Callable<T> work) {
+            FutureTask<T> task = new FutureTask<>(work);
+            tasks.add(task);
+            LockSupport.unpark(owner);
+            while (!task.isDone()) {
+                if (owner.isAlive()) {
+                    LockSupport.parkNanos(FULL_PARK_NANOS);
+                } else {
+                    // Owner has exited, so this thread may run what is left behind
+                    runTask();
+                }
+            }
+            try {
+                return task.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw new IllegalStateException(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    boolean ranTask = runTask();
+                    if (drain() > 0 || ranTask) {
+                        continue;
+                    }
+                    if (!running) {
+                        return;
+                    }
+                    idle = true;
+                    if (queue.isEmpty() && tasks.isEmpty() && running) {
+                        LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                    }
+                    idle = false;
+                }
+            } catch (Throwable e) {
+                // Submits to this shard are rejected from now on, see enqueue
+                Logger.error("Stake shard %d stopped", e, id);
+            }
+        }
+
+        int drain() {
+            int consumed = queue.drain(this::apply, DRAIN_BATCH);
+            if (consumed > 0) {
+                for (ShardBook book : touched) {
+                    book.publish();
+                }
+                touched.clear();
+                applied += consumed;
+            }
+            return consumed;
+        }
+
+        /**
+         * Owner only: applies the submits up to {@code target}, stopping early at one not yet published
+         */
+        void drainTo(long target) {
+            while (applied < target) {
+                if (drain() == 0) {
+                    return;
+                }
+            }
+        }
+
+        private boolean runTask() {
+            FutureTask<?> task = tasks.poll();
+            if (task == null) {
+                return false;
+            }
+            task.run();
+            return true;
+        }
+
+        /**
+         * Applies one record; a failure is logged and skips the rest of that record only
+         *
+         * @param customerId negated for a replayed raise, which is applied whatever the status
+         */
+        private void apply(int customerId, int betOfferId, int stake) {
+            try {
+                if (customerId < 0) {
+                    customerId = -customerId;
+                } else if (statuses.getOrDefault(betOfferId, OfferStatus.OPEN) != OfferStatus.OPEN) {
+                    // Accepted just before the offer was suspended or closed, and not applied in time
+                    Logger.debug("Dropped stake on bet offer %s, no longer open: customerId=%s, stake=%s",
+                            betOfferId, customerId, stake);
+                    return;
+                } else {
+                    recentStakes.record(betOfferId, customerId, stake);
+                }
+
+                ShardBook book = books.get(betOfferId);
+                if (book == null) {
+                    book = new ShardBook(StakeServiceImpl.TOP_STAKES_LIMIT);
+                    books.put(betOfferId, book);
+                }
+
+                boolean wasDirty = book.isDirty();
+                int oldStake = book.apply(customerId, stake);
+                if (oldStake < stake) {
+                    // Publish the book whatever happens to the rest of the record
+                    if (!wasDirty && book.isDirty()) {
+                        touched.add(book);
+                    }
+                    customerTotals.raise(customerId, oldStake, stake);
+                    journal.append(customerId, betOfferId, stake);
+                    Logger.debug("Updated stake: customerId=%s, betOfferId=%s, newStake=%s",
+                            customerId, betOfferId, stake);
+                }
+            } catch (RuntimeException e) {
+                Logger.error("Cannot apply stake: customerId=%s, betOfferId=%s, stake=%s", e,
+                        customerId, betOfferId, stake);
+            }
+        }
+    }
+}
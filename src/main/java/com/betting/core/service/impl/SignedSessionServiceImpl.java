@@ -0,0 +1,190 @@
+package com.betting.core.service.impl;
+
+import com.betting.core.model.Session;
+import com.betting.core.service.SessionService;
+import com.betting.util.Base32;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Stateless sessions: the key itself carries the customer and the expiry, signed by the server
+ * <p>
+ * A key is 16 bytes in base32 (26 letters and digits): the customer ID, the expiry in epoch
+ * seconds, and the first 8 bytes of their HMAC-SHA256 under a server secret. Checking a key
+ * is decoding it, one MAC over 8 bytes with a per-thread {@link Mac}, and a clock read, so
+ * authentication touches no shared state: it scales with cores, and every node sharing the
+ * secret accepts every node's keys.
+ * <p>
+ * Features:
+ * - No session map, index or cleanup thread; {@link #createOrGetSession} signs a fresh key
+ *   with a renewed expiry each time, and earlier keys stay valid until their own expiry
+ * - Logouts go to a revocation map keyed by the MAC, checked only while it is non-empty and
+ *   pruned of expired entries as it grows; it is per node
+ * - Keys have one canonical encoding, so a revoked key cannot be replayed spelled differently
+ * <p>
+ * Forging a key takes guessing a 64-bit MAC, and every guess costs a request.
+ */
+public class SignedSessionServiceImpl implements SessionService {
+
+    private static final long SESSION_DURATION = 10 * 60 * 1000L;
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int PAYLOAD_BYTES = 8;
+    private static final int MAC_BYTES = 8;
+    private static final int KEY_BYTES = PAYLOAD_BYTES + MAC_BYTES;
+    private static final int MIN_REVOKED_PRUNE = 1024;
+
+    private final SecretKeySpec secret;
+    private final long sessionMillis;
+    private final LongSupplier clock;
+    private final ThreadLocal<Mac> macs;
+
+    /**
+     * Revoked keys: MAC -> expiry in epoch seconds, kept until the key would have expired
+     */
+    private final ConcurrentHashMap<Long, Long> revoked = new ConcurrentHashMap<>();
+    private volatile int pruneAt = MIN_REVOKED_PRUNE;
+
+    /**
+     * Signs with a random secret: keys do not survive a restart and no other node accepts them
+     */
+    public SignedSessionServiceImpl() {
+        this(randomSecret());
+    }
+
+    /**
+     * @param secret signing key shared by every node; at least 16 bytes
+     */
+    public SignedSessionServiceImpl(byte[] secret) {
+        this(secret, SESSION_DURATION, System::currentTimeMillis);
+    }
+
+    /**
+     * @param sessionMillis how long a key is valid after it is issued, rounded to seconds
+     * @param clock         wall-clock time in milliseconds
+     */
+    public SignedSessionServiceImpl(byte[] secret, long sessionMillis, LongSupplier clock) {
+        if (secret.length < 16) {
+            throw new IllegalArgumentException("Session secret must be at least 16 bytes, got: " + secret.length);
+        }
+        this.secret = new SecretKeySpec(secret.clone(), ALGORITHM);
+        this.sessionMillis = sessionMillis;
+        this.clock = clock;
+        this.macs = ThreadLocal.withInitial(this::newMac);
+        // Fail now rather than on the first request if the algorithm is missing
+        newMac();
+    }
+
+    @Override
+    public Session createOrGetSession(int customerId) {
+        long expirySeconds = TimeUnit.MILLISECONDS.toSeconds(clock.getAsLong() + sessionMillis);
+        byte[] key = new byte[KEY_BYTES];
+        writeInt(key, 0, customerId);
+        writeInt(key, 4, (int) expirySeconds);
+        System.arraycopy(sign(key), 0, key, PAYLOAD_BYTES, MAC_BYTES);
+        return new Session(customerId, Base32.encode(key, 0, KEY_BYTES), TimeUnit.SECONDS.toMillis(expirySeconds));
+    }
+
+    @Override
+    public boolean validateSession(String sessionKey) {
+        return authenticate(sessionKey) != INVALID_SESSION;
+    }
+
+    @Override
+    public int getCustomerId(String sessionKey) {
+        return Math.max(authenticate(sessionKey), 0);
+    }
+
+    @Override
+    public int authenticate(String sessionKey) {
+        byte[] key = Base32.decode(sessionKey, KEY_BYTES);
+        if (key == null || !verify(key) || expirySeconds(key) * 1000 <= clock.getAsLong()) {
+            return INVALID_SESSION;
+        }
+        if (!revoked.isEmpty() && revoked.containsKey(readLong(key, PAYLOAD_BYTES))) {
+            return INVALID_SESSION;
+        }
+        return readInt(key, 0);
+    }
+
+    @Override
+    public boolean invalidateSession(String sessionKey) {
+        if (authenticate(sessionKey) == INVALID_SESSION) {
+            return false;
+        }
+        byte[] key = Base32.decode(sessionKey, KEY_BYTES);
+        revoked.put(readLong(key, PAYLOAD_BYTES), expirySeconds(key));
+        if (revoked.size() >= pruneAt) {
+            long nowSeconds = TimeUnit.MILLISECONDS.toSeconds(clock.getAsLong());
+            revoked.values().removeIf(expiry -> expiry <= nowSeconds);
+            pruneAt = Math.max(MIN_REVOKED_PRUNE, revoked.size() * 2);
+        }
+        return true;
+    }
+
+    /**
+     * @return number of revoked keys not yet pruned
+     */
+    public int getRevokedCount() {
+        return revoked.size();
+    }
+
+    private byte[] sign(byte[] key) {
+        Mac mac = macs.get();
+        mac.update(key, 0, PAYLOAD_BYTES);
+        return mac.doFinal();
+    }
+
+    /**
+     * Compares the whole MAC whatever the first difference, so timing reveals nothing
+     */
+    private boolean verify(byte[] key) {
+        byte[] expected = sign(key);
+        int difference = 0;
+        for (int i = 0; i < MAC_BYTES; i++) {
+            difference |= expected[i] ^ key[PAYLOAD_BYTES + i];
+        }
+        return difference == 0;
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(secret);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot sign sessions with " + ALGORITHM, e);
+        }
+    }
+
+    private static long expirySeconds(byte[] key) {
+        return readInt(key, 4) & 0xFFFFFFFFL;
+    }
+
+    private static byte[] randomSecret() {
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        return secret;
+    }
+
+    private static void writeInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) << 24 | (bytes[offset + 1] & 0xFF) << 16
+                | (bytes[offset + 2] & 0xFF) << 8 | bytes[offset + 3] & 0xFF;
+    }
+
+    private static long readLong(byte[] bytes, int offset) {
+        return (readInt(bytes, offset) & 0xFFFFFFFFL) << 32 | readInt(bytes, offset + 4) & 0xFFFFFFFFL;
+    }
+}
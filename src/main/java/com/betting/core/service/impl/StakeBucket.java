@@ -0,0 +1,133 @@
+package com.betting.core.service.impl;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.function.IntConsumer;
+
+/**
+ * Customers sharing one stake value in the ordered stake index, in arrival order
+ * <p>
+ * Customers are appended to packed {@code int} chunks (2, 4, 8 ... up to 1024 slots), so a
+ * bucket with a single customer costs a few dozen bytes instead of a hash table, and the
+ * first customer to reach a stake always ranks first. Leaving a bucket clears the customer's
+ * slot; a customer never returns to a stake they left, so cleared slots are never reused.
+ * <p>
+ * All operations are lock-free. A bucket that becomes empty is retired with a single CAS on
+ * its member count, so a concurrent add can never land in a bucket that is being unlinked
+ * from the index: the adder either reserves its place before the count hits zero, or sees the
+ * bucket retired and moves on to a fresh one.
+ */
+class StakeBucket {
+
+    private static final int RETIRED = -1;
+    private static final int FIRST_CHUNK_SIZE = 2;
+    private static final int MAX_CHUNK_SIZE = 1024;
+
+    /**
+     * Cleared or not yet written slot; customer IDs are always positive
+     */
+    private static final int EMPTY_SLOT = 0;
+
+    private static final VarHandle MEMBERS;
+    private static final VarHandle TAIL;
+    private static final VarHandle FILL;
+    private static final VarHandle NEXT;
+    private static final VarHandle SLOT = MethodHandles.arrayElementVarHandle(int[].class);
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            MEMBERS = lookup.findVarHandle(StakeBucket.class, "members", int.class);
+            TAIL = lookup.findVarHandle(StakeBucket.class, "tail", Chunk.class);
+            FILL = lookup.findVarHandle(Chunk.class, "fill", int.class);
+            NEXT = lookup.findVarHandle(Chunk.class, "next", Chunk.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final Chunk head = new Chunk(FIRST_CHUNK_SIZE);
+
+    /**
+     * Live customers, or {@link #RETIRED}
+     */
+    private volatile int members;
+    private volatile Chunk tail = head;
+
+    /**
+     * @return false if the bucket is retired and the caller must use a new one
+     */
+    boolean add(int customerId) {
+        int count;
+        do {
+            count = members;
+            if (count == RETIRED) {
+                return false;
+            }
+        } while (!MEMBERS.compareAndSet(this, count, count + 1));
+
+        while (true) {
+            Chunk chunk = tail;
+            int slot = (int) FILL.getAndAdd(chunk, 1);
+            if (slot < chunk.slots.length) {
+                SLOT.setRelease(chunk.slots, slot, customerId);
+                return true;
+            }
+            // Chunk is full: link a bigger one (or help whoever linked it) and advance the tail
+            Chunk next = chunk.next;
+            if (next == null) {
+                Chunk created = new Chunk(Math.min(chunk.slots.length << 1, MAX_CHUNK_SIZE));
+                next = NEXT.compareAndSet(chunk, null, created) ? created : chunk.next;
+            }
+            TAIL.compareAndSet(this, chunk, next);
+        }
+    }
+
+    /**
+     * @return true if this removal emptied and retired the bucket
+     */
+    boolean remove(int customerId) {
+        for (Chunk chunk = head; chunk != null; chunk = chunk.next) {
+            int filled = Math.min(chunk.fill, chunk.slots.length);
+            for (int i = 0; i < filled; i++) {
+                if ((int) SLOT.getAcquire(chunk.slots, i) == customerId
+                        && SLOT.compareAndSet(chunk.slots, i, customerId, EMPTY_SLOT)) {
+                    return (int) MEMBERS.getAndAdd(this, -1) == 1 && MEMBERS.compareAndSet(this, 0, RETIRED);
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return number of customers currently holding this stake
+     */
+    int size() {
+        return Math.max(members, 0);
+    }
+
+    /**
+     * Visits current customers in arrival order
+     */
+    void forEach(IntConsumer action) {
+        for (Chunk chunk = head; chunk != null; chunk = chunk.next) {
+            int filled = Math.min(chunk.fill, chunk.slots.length);
+            for (int i = 0; i < filled; i++) {
+                int customerId = (int) SLOT.getAcquire(chunk.slots, i);
+                if (customerId != EMPTY_SLOT) {
+                    action.accept(customerId);
+                }
+            }
+        }
+    }
+
+    private static final class Chunk {
+        final int[] slots;
+        volatile int fill;
+        volatile Chunk next;
+
+        Chunk(int size) {
+            this.slots = new int[size];
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.betting.core.service.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free multi-producer, single-consumer queue of stake submits
+ * <p>
+ * A ring of primitive slots, each guarded by a sequence number: producers claim a position
+ * with one CAS on the tail, write the fields, then publish the slot by advancing its
+ * sequence; the single consumer reads published slots in order and hands them back to
+ * producers one lap later. No entry objects are allocated.
+ */
+class StakeQueue {
+
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final int[] customerIds;
+    private final int[] betOfferIds;
+    private final int[] stakes;
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * Next position to consume; only touched by the consumer thread
+     */
+    private long head;
+
+    /**
+     * @param capacity maximum number of pending submits, rounded up to a power of two
+     */
+    StakeQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.mask = size - 1;
+        this.sequences = new AtomicLongArray(size);
+        this.customerIds = new int[size];
+        this.betOfferIds = new int[size];
+        this.stakes = new int[size];
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * @return false if the queue is full
+     */
+    boolean offer(int customerId, int betOfferId, int stake) {
+        while (true) {
+            long position = tail.get();
+            int slot = (int) position & mask;
+            long sequence = sequences.get(slot);
+            if (sequence == position) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    customerIds[slot] = customerId;
+                    betOfferIds[slot] = betOfferId;
+                    stakes[slot] = stake;
+                    // Volatile store: publishes the fields above and orders before the consumer wake-up check
+                    sequences.set(slot, position + 1);
+                    return true;
+                }
+            } else if (sequence < position) {
+                // Slot still holds the entry from one lap ago
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Consumer only: applies up to {@code limit} published submits in order
+     *
+     * @return number of submits consumed
+     */
+    int drain(StakeConsumer consumer, int limit) {
+        int consumed = 0;
+        while (consumed < limit) {
+            int slot = (int) head & mask;
+            if (sequences.get(slot) != head + 1) {
+                break;
+            }
+            consumer.accept(customerIds[slot], betOfferIds[slot], stakes[slot]);
+            sequences.set(slot, head + mask + 1);
+            head++;
+            consumed++;
+        }
+        return consumed;
+    }
+
+    /**
+     * @return number of positions claimed by producers so far
+     */
+    long claimed() {
+        return tail.get();
+    }
+
+    /**
+     * Consumer only
+     */
+    boolean isEmpty() {
+        return sequences.get((int) head & mask) != head + 1;
+    }
+
+    @FunctionalInterface
+    interface StakeConsumer {
+        void accept(int customerId, int betOfferId, int stake);
+    }
+}
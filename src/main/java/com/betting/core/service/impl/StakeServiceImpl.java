@@ -1,21 +1,38 @@
 package com.betting.core.service.impl;
 
 import com.betting.api.exception.BettingException;
+import com.betting.core.model.Leaderboard;
+import com.betting.core.model.OfferSnapshot;
+import com.betting.core.model.OfferStatus;
+import com.betting.core.model.StakeDistribution;
+import com.betting.core.model.StakeResult;
+import com.betting.core.service.OfferArchive;
+import com.betting.core.service.StakeJournal;
 import com.betting.core.service.StakeService;
+import com.betting.util.IntMaxMap;
+import com.betting.util.LogHistogram;
 import com.betting.util.Logger;
 
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
  * Optimized Stake Service Implementation using Skip List
  * <p>
  * Features:
- * - O(log n) insertion and O(1) top retrieval
- * - Thread-safe operations
+ * - O(log n) insertion and O(1) top retrieval from a pre-rendered, version-stamped leaderboard
+ * - Snapshot-consistent reads: leaderboards are immutable and published read-copy-update style
+ * - Lock-free operations: the max stake is raised with a single CAS and the ordered
+ *   index is repaired without locks
+ * - One {@link OfferSlot} per bet offer, so a submit does a single top-level lookup
+ * - Offer lifecycle (open, suspended, closed); idle and closed offers are compacted into
+ *   sorted primitive arrays, and optionally archived off the heap
+ * - Cross-offer leaderboard of customers by their sum of max stakes, raised by each submit's delta
  * - Memory efficient design
  * - Proper handling of duplicate stake values
  */
@@ -23,128 +40,477 @@ public class StakeServiceImpl implements StakeService {
 
 
     // Configuration constants
-    private static final int MAX_STAKE_LIMIT = 1_000_000;
-    private static final int TOP_STAKES_LIMIT = 20;
+    static final int MAX_STAKE_LIMIT = 1_000_000;
+    static final int TOP_STAKES_LIMIT = 20;
 
     /**
-     * Customer stakes mapping: betOfferId -> (customerId -> maxStake)
+     * Most entries one leaderboard page may hold
      */
-    private final ConcurrentHashMap<Integer, ConcurrentHashMap<Integer, Integer>> customerStakes = new ConcurrentHashMap<>();
+    static final int MAX_PAGE_SIZE = 1_000;
 
     /**
-     * Skip list for sorted stakes: betOfferId -> (stake -> Set<customerId>, descending order)
-     * Using Set to handle multiple customers with same stake value
+     * Offers: betOfferId -> (status, stakes as a live book or compacted, leaderboard)
      */
-    private final ConcurrentHashMap<Integer, ConcurrentSkipListMap<Integer, Set<Integer>>> skipListStakes = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, OfferSlot> offers = new ConcurrentHashMap<>();
+
+    /**
+     * Every customer's sum of max stakes over the offers, and its leaderboard
+     */
+    private final CustomerTotals customerTotals = new CustomerTotals();
+
+    /**
+     * Each offer's top stakes per recent interval, for windowed leaderboards
+     */
+    private final RecentStakes recentStakes = new RecentStakes();
+
+    /**
+     * Whether books keep an ordered index over every customer, or only the top entries
+     */
+    private final boolean orderedIndex;
+
+    /**
+     * Receives accepted raises; attached once before requests are served
+     */
+    private volatile StakeJournal journal = StakeJournal.NONE;
+
+    /**
+     * Where compacted offers go off the heap, or null to keep them in memory
+     */
+    private volatile OfferArchive archive;
+    private ScheduledExecutorService compactor;
+
+    public StakeServiceImpl() {
+        this(true);
+    }
+
+    protected StakeServiceImpl(boolean orderedIndex) {
+        this.orderedIndex = orderedIndex;
+    }
 
     @Override
     public void submitStake(int customerId, int betOfferId, int stake) {
         validateInput(customerId, betOfferId, stake);
 
-        Logger.info("Submitting stake: customerId=%s, betOfferId=%s, stake=%s",
+        Logger.debug("Submitting stake: customerId=%s, betOfferId=%s, stake=%s",
                 customerId, betOfferId, stake);
 
-        // Get or create customer stakes map for this betting offer
-        ConcurrentHashMap<Integer, Integer> customerMap = customerStakes.computeIfAbsent(betOfferId,
-                k -> new ConcurrentHashMap<>());
+        OfferSlot offer = offer(betOfferId);
+        checkOpen(betOfferId, offer.status());
+        apply(customerId, betOfferId, stake, offer);
+        recentStakes.record(betOfferId, customerId, stake);
+    }
+
+    @Override
+    public void restoreStake(int customerId, int betOfferId, int stake) {
+        validateInput(customerId, betOfferId, stake);
 
-        // Get the current maximum stake for this customer
-        Integer oldStake = customerMap.get(customerId);
+        apply(customerId, betOfferId, stake, offer(betOfferId));
+    }
 
-        // Only update if this is a new stake or higher than existing
-        if (oldStake == null || stake > oldStake) {
-            // Update the customer's maximum stake
-            customerMap.put(customerId, stake);
+    private void apply(int customerId, int betOfferId, int stake, OfferSlot offer) {
+        int oldStake = offer.submit(customerId, stake, archive);
 
-            // Get or create skip list for this betting offer
-            ConcurrentSkipListMap<Integer, Set<Integer>> skipList = skipListStakes.computeIfAbsent(betOfferId,
-                    k -> new ConcurrentSkipListMap<>(Collections.reverseOrder()));
+        if (oldStake < stake) {
+            customerTotals.raise(customerId, oldStake, stake);
+            journal.append(customerId, betOfferId, stake);
+            Logger.debug("Updated stake: customerId=%s, betOfferId=%s, oldStake=%s, newStake=%s",
+                    customerId, betOfferId, oldStake, stake);
+        }
+    }
+
+    /**
+     * Applies a batch grouped by offer: items are sorted by offer, and each offer's book is
+     * looked up once and raised once, with the customer's highest stake in the batch
+     */
+    @Override
+    public StakeResult[] submitStakes(int customerId, int[] betOfferIds, int[] stakes) {
+        validateCustomerId(customerId);
+        if (betOfferIds.length != stakes.length) {
+            throw new BettingException(BettingException.ErrorCode.INVALID_PARAMETER_FORMAT,
+                    "Got " + betOfferIds.length + " bet offers for " + stakes.length + " stakes");
+        }
 
-            // Remove customer from old stake position if exists
-            if (oldStake != null) {
-                removeCustomerFromStake(skipList, oldStake, customerId);
+        // Valid items as (betOfferId, stake) in one long, so sorting groups them by offer
+        StakeResult[] results = new StakeResult[betOfferIds.length];
+        long[] items = new long[betOfferIds.length];
+        int valid = 0;
+        for (int i = 0; i < betOfferIds.length; i++) {
+            results[i] = check(betOfferIds[i], stakes[i]);
+            if (results[i] == StakeResult.ACCEPTED) {
+                items[valid++] = (long) betOfferIds[i] << 32 | stakes[i];
             }
+        }
+        Arrays.sort(items, 0, valid);
+
+        int offerCount = 0;
+        int[] rejected = null;
+        int rejectedCount = 0;
+        for (int i = 0; i < valid; i++) {
+            int betOfferId = (int) (items[i] >>> 32);
+            // Within an offer, stakes are sorted ascending: only the last one can raise the max
+            if (i + 1 < valid && (int) (items[i + 1] >>> 32) == betOfferId) {
+                continue;
+            }
+            int stake = (int) items[i];
+            OfferSlot offer = offer(betOfferId);
+            if (offer.status() != OfferStatus.OPEN) {
+                if (rejected == null) {
+                    rejected = new int[valid];
+                }
+                rejected[rejectedCount++] = betOfferId;
+            } else {
+                apply(customerId, betOfferId, stake, offer);
+                recentStakes.record(betOfferId, customerId, stake);
+            }
+            offerCount++;
+        }
+        if (rejected != null) {
+            markNotOpen(betOfferIds, results, Arrays.copyOf(rejected, rejectedCount));
+        }
 
-            // Add customer to new stake position
-            addCustomerToStake(skipList, stake, customerId);
+        Logger.debug("Submitted stake batch: customerId=%s, items=%s, offers=%s",
+                customerId, betOfferIds.length, offerCount);
+        return results;
+    }
 
-            Logger.info("Updated stake: customerId=%s, betOfferId=%s, oldStake=%s, newStake=%s",
-                    customerId, betOfferId, oldStake, stake);
+    /**
+     * Rare path of a batch: reports the items of offers that were not open
+     *
+     * @param rejected the offers that were not open, ascending
+     */
+    private static void markNotOpen(int[] betOfferIds, StakeResult[] results, int[] rejected) {
+        for (int i = 0; i < betOfferIds.length; i++) {
+            if (results[i] == StakeResult.ACCEPTED && Arrays.binarySearch(rejected, betOfferIds[i]) >= 0) {
+                results[i] = StakeResult.OFFER_NOT_OPEN;
+            }
+        }
+    }
+
+    @Override
+    public void attachJournal(StakeJournal journal) {
+        this.journal = journal;
+    }
+
+    @Override
+    public void exportOffers(Consumer<OfferSnapshot> consumer) {
+        offers.forEach((betOfferId, offer) -> consumer.accept(offer.snapshot(archive)));
+    }
+
+    @Override
+    public void importOffer(OfferSnapshot snapshot) {
+        validateBetOfferId(snapshot.betOfferId());
+
+        offer(snapshot.betOfferId()).restore(snapshot, archive, customerTotals);
+    }
+
+    @Override
+    public void setOfferStatus(int betOfferId, OfferStatus status) {
+        validateBetOfferId(betOfferId);
+
+        if (offer(betOfferId).setStatus(status, journal) != status) {
+            Logger.info("Bet offer %d is now %s", betOfferId, status);
+        }
+    }
+
+    @Override
+    public OfferStatus getOfferStatus(int betOfferId) {
+        validateBetOfferId(betOfferId);
+
+        OfferSlot offer = offers.get(betOfferId);
+        return offer == null ? OfferStatus.OPEN : offer.status();
+    }
+
+    /**
+     * Starts compacting offers in the background: an offer without submits for
+     * {@code idleMillis}, or closed for {@code closedMillis}, is turned into sorted primitive
+     * arrays, and moved to {@code archive} if one is given. Call before serving requests.
+     *
+     * @param archive where compacted offers go off the heap, or null to keep them in memory
+     */
+    public synchronized void startCompaction(long idleMillis, long closedMillis, OfferArchive archive) {
+        this.archive = archive;
+        long idleNanos = TimeUnit.MILLISECONDS.toNanos(idleMillis);
+        long closedNanos = TimeUnit.MILLISECONDS.toNanos(closedMillis);
+        long periodMillis = Math.clamp(Math.min(idleMillis, closedMillis) / 4, 100, 60_000);
+
+        compactor = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "offer-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        compactor.scheduleWithFixedDelay(() -> {
+            try {
+                compactOffers(idleNanos, closedNanos);
+            } catch (RuntimeException e) {
+                Logger.error("Failed to compact bet offers", e);
+            }
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * One compaction pass over every offer
+     *
+     * @return number of offers compacted or archived
+     */
+    public int compactOffers(long idleNanos, long closedNanos) {
+        long now = System.nanoTime();
+        OfferArchive target = archive;
+        int changed = 0;
+        for (OfferSlot offer : offers.values()) {
+            if (offer.sweep(now, idleNanos, closedNanos, target)) {
+                changed++;
+            }
+        }
+        if (changed > 0) {
+            Logger.info("Compacted %d bet offers", changed);
+        }
+        return changed;
+    }
+
+    /**
+     * Stops background compaction
+     */
+    public synchronized void shutdown() {
+        if (compactor == null) {
+            return;
+        }
+        compactor.shutdown();
+        try {
+            if (!compactor.awaitTermination(5, TimeUnit.SECONDS)) {
+                compactor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            compactor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private OfferSlot offer(int betOfferId) {
+        return offers.computeIfAbsent(betOfferId, id -> new OfferSlot(id, TOP_STAKES_LIMIT, orderedIndex));
+    }
+
+    /**
+     * Rejects a submit to an offer that is not open
+     */
+    static void checkOpen(int betOfferId, OfferStatus status) {
+        if (status == OfferStatus.SUSPENDED) {
+            throw new BettingException(BettingException.ErrorCode.OFFER_SUSPENDED,
+                    "Bet offer " + betOfferId + " is suspended");
+        }
+        if (status == OfferStatus.CLOSED) {
+            throw new BettingException(BettingException.ErrorCode.OFFER_CLOSED,
+                    "Bet offer " + betOfferId + " is closed");
         }
     }
 
     /**
      * Validates input parameters
      */
-    private void validateInput(int customerId, int betOfferId, int stake) {
+    static void validateInput(int customerId, int betOfferId, int stake) {
+        validateCustomerId(customerId);
+
+        validateBetOfferId(betOfferId);
+
+        if (stake < 0) {
+            throw new BettingException(BettingException.ErrorCode.INVALID_STAKE_AMOUNT,
+                    "Stake amount cannot be negative, got: " + stake);
+        }
+
+        if (stake > MAX_STAKE_LIMIT) {
+            throw new BettingException(BettingException.ErrorCode.STAKE_TOO_HIGH,
+                    "Stake amount exceeds maximum limit of " + MAX_STAKE_LIMIT + ", got: " + stake);
+        }
+    }
+
+    static void validateCustomerId(int customerId) {
         if (customerId <= 0) {
             throw new BettingException(BettingException.ErrorCode.INVALID_CUSTOMER_ID,
                     "Customer ID must be positive, got: " + customerId);
         }
+    }
+
+    /**
+     * Validates one item of a batch without throwing
+     */
+    static StakeResult check(int betOfferId, int stake) {
+        if (betOfferId <= 0) {
+            return StakeResult.INVALID_BET_OFFER;
+        }
+        return stake < 0 || stake > MAX_STAKE_LIMIT ? StakeResult.INVALID_STAKE : StakeResult.ACCEPTED;
+    }
 
+    static void validateBetOfferId(int betOfferId) {
         if (betOfferId <= 0) {
             throw new BettingException(BettingException.ErrorCode.INVALID_BET_OFFER_ID,
                     "Bet offer ID must be positive, got: " + betOfferId);
         }
+    }
 
-        if (stake < 0) {
-            throw new BettingException(BettingException.ErrorCode.INVALID_STAKE_AMOUNT,
-                    "Stake amount cannot be negative, got: " + stake);
+    @Override
+    public List<String> getTop20Stakes(int betOfferId) {
+        return getLeaderboard(betOfferId).entries();
+    }
+
+    /**
+     * Pages within the top entries are cut from the published leaderboard; deeper ones walk
+     * the ordered index, skipping whole stake buckets by their size and copying only the
+     * entries returned. A compacted offer is paged back in first.
+     */
+    @Override
+    public Leaderboard getStakes(int betOfferId, int offset, int limit) {
+        validateBetOfferId(betOfferId);
+        validatePage(offset, limit);
+
+        OfferSlot offer = offers.get(betOfferId);
+        if (offer == null) {
+            return Leaderboard.EMPTY;
+        }
+        Leaderboard top = offer.leaderboard();
+        if (!orderedIndex || (long) offset + limit <= TOP_STAKES_LIMIT || top.size() < TOP_STAKES_LIMIT) {
+            return top.slice(offset, limit);
         }
+        return offer.page(offset, limit, archive);
+    }
 
-        if (stake > MAX_STAKE_LIMIT) {
-            throw new BettingException(BettingException.ErrorCode.STAKE_TOO_HIGH,
-                    "Stake amount exceeds maximum limit of " + MAX_STAKE_LIMIT + ", got: " + stake);
+    @Override
+    public int getEntryThreshold(int betOfferId, int n) {
+        validateBetOfferId(betOfferId);
+        validateRank(n);
+
+        OfferSlot offer = offers.get(betOfferId);
+        if (offer == null) {
+            return 0;
+        }
+        Leaderboard top = offer.leaderboard();
+        if (n <= TOP_STAKES_LIMIT || top.size() < TOP_STAKES_LIMIT || !orderedIndex) {
+            return boundedThreshold(top, n);
+        }
+        return offer.threshold(n, archive);
+    }
+
+    @Override
+    public int getRank(int betOfferId, int customerId) {
+        validateBetOfferId(betOfferId);
+        validateCustomerId(customerId);
+
+        OfferSlot offer = offers.get(betOfferId);
+        int rank = 0;
+        if (offer != null) {
+            // Customers on the leaderboard are ranked without touching the stake counts
+            rank = boundedRank(offer.leaderboard(), customerId);
+            if (rank == 0 && orderedIndex) {
+                rank = offer.rank(customerId, archive);
+            }
+        }
+        if (rank == 0) {
+            throw new BettingException(BettingException.ErrorCode.CUSTOMER_NOT_FOUND,
+                    "Customer " + customerId + " has no " + (orderedIndex ? "" : "top " + TOP_STAKES_LIMIT + " ")
+                            + "stake on bet offer " + betOfferId);
         }
+        return rank;
     }
 
     /**
-     * Removes a customer from a specific stake position
+     * Rank of a customer on the top entries, exact since every higher stake is on them too
+     *
+     * @return the rank, or 0 if the customer is not on the leaderboard
      */
-    private void removeCustomerFromStake(ConcurrentSkipListMap<Integer, Set<Integer>> skipList,
-                                         int stake, int customerId) {
-        Set<Integer> customers = skipList.get(stake);
-        if (customers != null) {
-            customers.remove(customerId);
-            if (customers.isEmpty()) {
-                skipList.remove(stake);
+    static int boundedRank(Leaderboard top, int customerId) {
+        for (int i = 0; i < top.size(); i++) {
+            if (top.getCustomerId(i) == customerId) {
+                int stake = top.getStake(i);
+                int rank = i;
+                while (rank > 0 && top.getStake(rank - 1) == stake) {
+                    rank--;
+                }
+                return rank + 1;
             }
         }
+        return 0;
     }
 
     /**
-     * Adds a customer to a specific stake position
+     * Distribution of a compacted or closed offer, from its stakes; the histogram it takes is
+     * dropped again, so a frozen offer keeps only the result
      */
-    private void addCustomerToStake(ConcurrentSkipListMap<Integer, Set<Integer>> skipList,
-                                    int stake, int customerId) {
-        skipList.computeIfAbsent(stake, k -> ConcurrentHashMap.newKeySet()).add(customerId);
+    static StakeDistribution distribution(OfferSnapshot snapshot) {
+        LogHistogram histogram = new LogHistogram(MAX_STAKE_LIMIT);
+        for (int stake : snapshot.stakes()) {
+            histogram.replace(IntMaxMap.NO_VALUE, stake);
+        }
+        return distribution(histogram, snapshot.leaderboard());
     }
 
-    @Override
-    public List<String> getTop20Stakes(int betOfferId) {
-        if (betOfferId <= 0) {
-            throw new BettingException(BettingException.ErrorCode.INVALID_BET_OFFER_ID,
-                    "Bet offer ID must be positive, got: " + betOfferId);
+    /**
+     * @param top the offer's leaderboard, whose first stake is the exact max; percentiles
+     *            rounded up past it are cut to it
+     */
+    static StakeDistribution distribution(LogHistogram histogram, Leaderboard top) {
+        int max = top.size() == 0 ? 0 : top.getStake(0);
+        int[] percentiles = histogram.percentiles(50, 90, 99);
+        return new StakeDistribution(histogram.count(), histogram.sum(), Math.min(percentiles[0], max),
+                Math.min(percentiles[1], max), Math.min(percentiles[2], max), max);
+    }
+
+    /**
+     * Entry threshold of an engine that keeps only the top {@value #TOP_STAKES_LIMIT} entries
+     */
+    static int boundedThreshold(Leaderboard top, int n) {
+        if (top.size() < Math.min(n, TOP_STAKES_LIMIT)) {
+            // Fewer customers than n: any stake enters
+            return 0;
+        }
+        if (n > TOP_STAKES_LIMIT) {
+            throw new BettingException(BettingException.ErrorCode.INVALID_PARAMETER_FORMAT,
+                    "This engine only ranks the top " + TOP_STAKES_LIMIT + " stakes, got n=" + n);
         }
+        return top.getStake(n - 1) + 1;
+    }
 
-        Logger.info("Getting top %s stakes for betOfferId=%s", TOP_STAKES_LIMIT, betOfferId);
+    static void validatePage(int offset, int limit) {
+        if (offset < 0 || limit <= 0 || limit > MAX_PAGE_SIZE) {
+            throw new BettingException(BettingException.ErrorCode.INVALID_PARAMETER_FORMAT,
+                    "Offset must be non-negative and limit between 1 and " + MAX_PAGE_SIZE
+                            + ", got offset=" + offset + ", limit=" + limit);
+        }
+    }
 
-        // Get the skip list for this betting offer
-        ConcurrentSkipListMap<Integer, Set<Integer>> skipList = skipListStakes.get(betOfferId);
-        if (skipList == null || skipList.isEmpty()) {
-            Logger.info("No stakes found for betOfferId=%s", betOfferId);
-            return Collections.emptyList();
+    static void validateRank(int n) {
+        if (n <= 0) {
+            throw new BettingException(BettingException.ErrorCode.INVALID_PARAMETER_FORMAT,
+                    "Rank must be positive, got: " + n);
         }
+    }
+
+    @Override
+    public Leaderboard getCustomerLeaderboard() {
+        return customerTotals.leaderboard();
+    }
 
-        // Skip list is already sorted in descending order (highest stakes first)
-        // Collect top stakes with proper format
-        List<String> result = skipList.entrySet().stream()
-                .flatMap(entry -> entry.getValue().stream()
-                        .map(customerId -> customerId + "=" + entry.getKey()))
-                .limit(TOP_STAKES_LIMIT)
-                .toList();
+    @Override
+    public Leaderboard getRecentLeaderboard(int betOfferId, long windowMillis) {
+        validateBetOfferId(betOfferId);
+
+        return recentStakes.leaderboard(betOfferId, windowMillis);
+    }
+
+    @Override
+    public StakeDistribution getStakeDistribution(int betOfferId) {
+        validateBetOfferId(betOfferId);
 
-        Logger.info("Retrieved %s stakes for betOfferId=%s", result.size(), betOfferId);
-        return result;
+        OfferSlot offer = offers.get(betOfferId);
+        return offer == null ? StakeDistribution.EMPTY : offer.distribution();
+    }
+
+    @Override
+    public Leaderboard getLeaderboard(int betOfferId) {
+        validateBetOfferId(betOfferId);
+
+        OfferSlot offer = offers.get(betOfferId);
+        if (offer == null) {
+            Logger.debug("No stakes found for betOfferId=%s", betOfferId);
+            return Leaderboard.EMPTY;
+        }
+        return offer.leaderboard();
     }
 }
@@ -0,0 +1,22 @@
+package com.betting.core.service.impl;
+
+/**
+ * Bounded Top-K Stake Service Implementation
+ * <p>
+ * Alternative to {@link StakeServiceImpl} that only keeps the leaderboard entries which can
+ * actually be read. Because a customer's maximum stake only goes up, the K-th stake of an
+ * offer only goes up as well, and a customer that drops out of the top K can only return by
+ * submitting a higher stake.
+ * <p>
+ * Features:
+ * - Offer books without an ordered index: only the max stake table and a top-K leaderboard
+ * - Submits at or below the current K-th stake skip all ordered-structure work
+ * - Lock-free O(K) copy-on-write board update, only for admitted stakes
+ * - Lock-free top retrieval of a pre-rendered leaderboard
+ */
+public class TopKStakeServiceImpl extends StakeServiceImpl {
+
+    public TopKStakeServiceImpl() {
+        super(false);
+    }
+}
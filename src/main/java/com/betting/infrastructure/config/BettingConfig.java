@@ -13,26 +13,89 @@ public class BettingConfig {
     // Essential server configuration
     private final int port;
     private final int threadPoolSize;
+
+    // Stake engine selection: "skiplist" (default), "topk", "sharded" or "offheap"
+    private final String stakeEngine;
+
+    // Number of shard-owner threads for the "sharded" engine
+    private final int stakeShards;
+
+    // Stake write-ahead log: directory (empty disables it), segment size, group commit interval
+    private final String walDirectory;
+    private final int walSegmentMegabytes;
+    private final int walFlushMillis;
+
+    // Seconds between snapshots of every offer book into the log directory (0 disables them)
+    private final int snapshotIntervalSeconds;
+
+    // Offer compaction: seconds without submits (0 disables it) or since closing, and the
+    // directory compacted offers are moved to (empty keeps them on the heap)
+    private final int offerIdleSeconds;
+    private final int offerClosedSeconds;
+    private final String offerArchiveDirectory;
+
+    // Leaderboard event streams: milliseconds between change checks, seconds between
+    // heartbeats of a quiet stream, most open streams, and threads writing events
+    private final int streamIntervalMillis;
+    private final int streamHeartbeatSeconds;
+    private final int streamMaxSubscribers;
+    private final int streamWriterThreads;
+
+    // Sessions: "map" (default) keeps them in memory, "signed" issues HMAC-signed keys
+    // checked without any lookup; the signing secret (empty for a random per-process one)
+    private final String sessionMode;
+    private final String sessionSecret;
+
+    // Token operators send in X-Admin-Token to change offer statuses (empty rejects every change)
+    private final String adminToken;
     
     public BettingConfig() {
         // Default values with system property override
         this.port = getIntProperty("betting.port", 8001);
         this.threadPoolSize = getIntProperty("betting.thread.pool.size", 
             Runtime.getRuntime().availableProcessors() * 2);
+        this.stakeEngine = getStringProperty("betting.stake.engine", "skiplist");
+        this.stakeShards = getIntProperty("betting.stake.shards",
+            Runtime.getRuntime().availableProcessors());
+        this.walDirectory = getStringProperty("betting.wal.dir", "");
+        this.walSegmentMegabytes = getIntProperty("betting.wal.segment.mb", 64);
+        this.walFlushMillis = getIntProperty("betting.wal.flush.millis", 10);
+        this.snapshotIntervalSeconds = getIntProperty("betting.snapshot.interval.seconds", 300);
+        this.offerIdleSeconds = getIntProperty("betting.offer.idle.seconds", 3600);
+        this.offerClosedSeconds = getIntProperty("betting.offer.closed.seconds", 60);
+        this.offerArchiveDirectory = getStringProperty("betting.offer.archive.dir", "");
+        this.streamIntervalMillis = getIntProperty("betting.stream.interval.millis", 250);
+        this.streamHeartbeatSeconds = getIntProperty("betting.stream.heartbeat.seconds", 15);
+        this.streamMaxSubscribers = getIntProperty("betting.stream.max.subscribers", 10_000);
+        this.streamWriterThreads = getIntProperty("betting.stream.writer.threads", 2);
+        this.sessionMode = getStringProperty("betting.session.mode", "map");
+        this.sessionSecret = getStringProperty("betting.session.secret", "");
+        this.adminToken = getStringProperty("betting.admin.token", "");
     }
     
     // Getters
     public int getPort() { return port; }
     public int getThreadPoolSize() { return threadPoolSize; }
+    public String getStakeEngine() { return stakeEngine; }
+    public int getStakeShards() { return stakeShards; }
+    public String getWalDirectory() { return walDirectory; }
+    public int getWalSegmentMegabytes() { return walSegmentMegabytes; }
+    public int getWalFlushMillis() { return walFlushMillis; }
+    public int getSnapshotIntervalSeconds() { return snapshotIntervalSeconds; }
+    public int getOfferIdleSeconds() { return offerIdleSeconds; }
+    public int getOfferClosedSeconds() { return offerClosedSeconds; }
+    public String getOfferArchiveDirectory() { return offerArchiveDirectory; }
+    public int getStreamIntervalMillis() { return streamIntervalMillis; }
+    public int getStreamHeartbeatSeconds() { return streamHeartbeatSeconds; }
+    public int getStreamMaxSubscribers() { return streamMaxSubscribers; }
+    public int getStreamWriterThreads() { return streamWriterThreads; }
+    public String getSessionMode() { return sessionMode; }
+    public String getSessionSecret() { return sessionSecret; }
+    public String getAdminToken() { return adminToken; }
     
     // Helper method for property reading
     private int getIntProperty(String key, int defaultValue) {
-        String value = System.getProperty(key);
-        if (value == null) {
-            // Try environment variable as fallback
-            value = System.getenv(key.toUpperCase().replace('.', '_'));
-        }
-        
+        String value = getRawProperty(key);
         if (value == null) return defaultValue;
         
         try {
@@ -42,4 +105,18 @@ public class BettingConfig {
             return defaultValue;
         }
     }
+
+    private String getStringProperty(String key, String defaultValue) {
+        String value = getRawProperty(key);
+        return value == null || value.isBlank() ? defaultValue : value.trim();
+    }
+
+    private String getRawProperty(String key) {
+        String value = System.getProperty(key);
+        if (value == null) {
+            // Try environment variable as fallback
+            value = System.getenv(key.toUpperCase().replace('.', '_'));
+        }
+        return value;
+    }
 }
\ No newline at end of file
@@ -5,6 +5,7 @@ import com.betting.util.Logger;
 import com.sun.net.httpserver.HttpExchange;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 
 public class LoggingInterceptor implements RequestInterceptor {
 
@@ -18,7 +19,7 @@ public class LoggingInterceptor implements RequestInterceptor {
         Logger.info("[Response] %s %s -> %s",
                 exchange.getRequestMethod(),
                 exchange.getRequestURI(),
-                result == null ? "" : result.toString());
+                describe(result));
     }
 
     @Override
@@ -32,5 +33,15 @@ public class LoggingInterceptor implements RequestInterceptor {
             Logger.error("Failed to write error response", ioEx);
         }
     }
+
+    private String describe(Object result) {
+        if (result == null) {
+            return "";
+        }
+        if (result instanceof byte[] bytes) {
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        return result.toString();
+    }
 }
 
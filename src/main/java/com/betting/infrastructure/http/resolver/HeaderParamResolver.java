@@ -0,0 +1,26 @@
+package com.betting.infrastructure.http.resolver;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.betting.infrastructure.http.router.HeaderParam;
+import com.betting.infrastructure.http.router.TypeConverter;
+
+import java.lang.reflect.Parameter;
+import java.util.Map;
+
+public class HeaderParamResolver implements ParamResolver {
+    @Override
+    public boolean supports(Parameter parameter) {
+        return parameter.isAnnotationPresent(HeaderParam.class);
+    }
+
+    @Override
+    public Object resolve(Parameter parameter,
+                          HttpExchange exchange,
+                          Map<String, String> pathParams,
+                          Map<String, String> queryParams,
+                          String body) {
+        HeaderParam ann = parameter.getAnnotation(HeaderParam.class);
+        String raw = exchange.getRequestHeaders().getFirst(ann.value());
+        return TypeConverter.convert(raw, parameter.getType());
+    }
+}
@@ -0,0 +1,48 @@
+package com.betting.infrastructure.http.router;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Entity tags for versioned resources
+ * <p>
+ * Tags are {@code "<epoch>-<version>"}: the epoch is drawn once per process, because versions
+ * start over after a restart and a client's tag from before must not match a new resource
+ * that happens to reach the same version.
+ */
+public final class ETags {
+
+    private static final String EPOCH = Long.toHexString(ThreadLocalRandom.current().nextLong() >>> 1);
+
+    private ETags() {
+        throw new AssertionError("Utility class should not be instantiated");
+    }
+
+    /**
+     * @return strong entity tag of one version, quoted
+     */
+    public static String of(long version) {
+        return "\"" + EPOCH + "-" + version + "\"";
+    }
+
+    /**
+     * Weak comparison, as {@code If-None-Match} requires
+     *
+     * @param ifNoneMatch header value: {@code *} or comma-separated tags; may be null
+     * @return whether the header names {@code etag}
+     */
+    public static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || ifNoneMatch.isEmpty()) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
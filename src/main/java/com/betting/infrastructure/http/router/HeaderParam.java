@@ -0,0 +1,16 @@
+package com.betting.infrastructure.http.router;
+
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Binds a request header, e.g. {@code If-None-Match}; null when absent
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface HeaderParam {
+    String value();
+}
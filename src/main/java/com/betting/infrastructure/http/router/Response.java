@@ -0,0 +1,76 @@
+package com.betting.infrastructure.http.router;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Controller result carrying a status and response headers along with the body
+ * <p>
+ * Controllers that only need a 200 keep returning the body itself; this is for the ones that
+ * answer conditionally ({@code ETag}, {@code 304 Not Modified}) or respond later.
+ */
+public final class Response {
+
+    /**
+     * Returned by a controller that handed the exchange to something answering it later; the
+     * router writes nothing
+     */
+    public static final Response DEFERRED = new Response(0, Map.of(), null);
+
+    private static final int OK = 200;
+    private static final int NOT_MODIFIED = 304;
+
+    private final int status;
+    private final Map<String, String> headers;
+    private final byte[] body;
+
+    private Response(int status, Map<String, String> headers, byte[] body) {
+        this.status = status;
+        this.headers = headers;
+        this.body = body;
+    }
+
+    /**
+     * @param body already-encoded UTF-8 body
+     */
+    public static Response ok(byte[] body) {
+        return new Response(OK, Map.of(), body);
+    }
+
+    /**
+     * 304 with no body
+     */
+    public static Response notModified() {
+        return new Response(NOT_MODIFIED, Map.of(), null);
+    }
+
+    /**
+     * @return a copy with one more header
+     */
+    public Response header(String name, String value) {
+        Map<String, String> copy = new LinkedHashMap<>(headers);
+        copy.put(name, value);
+        return new Response(status, copy, body);
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    /**
+     * @return the body, or null if the response has none
+     */
+    public byte[] getBody() {
+        return body;
+    }
+
+    @Override
+    public String toString() {
+        return body == null ? String.valueOf(status) : new String(body, StandardCharsets.UTF_8);
+    }
+}
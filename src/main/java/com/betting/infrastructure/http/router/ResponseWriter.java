@@ -38,7 +38,13 @@ public class ResponseWriter {
         if (body == null) {
             body = "";
         }
-        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        write(exchange, status, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Writes an already-encoded UTF-8 body as-is
+     */
+    public static void write(HttpExchange exchange, int status, byte[] bytes) throws IOException {
         exchange.getResponseHeaders().add("Content-Type", DEFAULT_CONTENT_TYPE);
         exchange.sendResponseHeaders(status, bytes.length);
         try (OutputStream os = exchange.getResponseBody()) {
@@ -46,7 +52,32 @@ public class ResponseWriter {
         }
     }
 
+    /**
+     * Writes a response with its status and headers; a response without a body, such as a
+     * 304, is sent with none. Writes nothing for {@link Response#DEFERRED}.
+     */
+    public static void write(HttpExchange exchange, Response response) throws IOException {
+        if (response == Response.DEFERRED) {
+            return;
+        }
+        response.getHeaders().forEach(exchange.getResponseHeaders()::set);
+        if (response.getBody() == null) {
+            exchange.sendResponseHeaders(response.getStatus(), -1);
+            exchange.close();
+            return;
+        }
+        write(exchange, response.getStatus(), response.getBody());
+    }
+
     public static void write(HttpExchange exchange, Object result) throws IOException {
+        if (result instanceof Response response) {
+            write(exchange, response);
+            return;
+        }
+        if (result instanceof byte[] bytes) {
+            write(exchange, DEFAULT_SUCCESS_STATUS, bytes);
+            return;
+        }
         int status = DEFAULT_SUCCESS_STATUS;
         String body = result == null ? "" : result.toString();
         if (INVALID_SESSION_MESSAGE.equals(body)) {
@@ -163,7 +163,10 @@ public class Router {
             Object result = invokeControllerMethod(route, methodArgs);
 
             executePostHandlers(exchange, result);
-            ResponseWriter.write(exchange, result);
+            // A controller that sent its own response headers, such as an event stream, keeps the exchange
+            if (exchange.getResponseCode() <= 0) {
+                ResponseWriter.write(exchange, result);
+            }
 
         } catch (Exception e) {
             handleRequestException(exchange, e);
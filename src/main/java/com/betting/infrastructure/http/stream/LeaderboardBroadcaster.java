@@ -0,0 +1,378 @@
+package com.betting.infrastructure.http.stream;
+
+import com.betting.api.exception.BettingException;
+import com.betting.core.model.Leaderboard;
+import com.betting.core.service.StakeService;
+import com.betting.infrastructure.http.router.ETags;
+import com.betting.infrastructure.http.router.Response;
+import com.betting.infrastructure.http.router.ResponseWriter;
+import com.betting.util.Logger;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Pushes offer leaderboards to Server-Sent Events subscribers when they change
+ * <p>
+ * Leaderboards are immutable and version-stamped, so spotting a change needs no hook in the
+ * stake engines: one ticker thread loads the published leaderboard of every offer with
+ * subscribers, a wait-free pointer read, and compares its version with the last one each
+ * subscriber got. A changed leaderboard is rendered once into an event shared by all of the
+ * offer's subscribers, and every burst of submits between two ticks collapses into one event.
+ * <p>
+ * Subscribers hold no thread: the HTTP handler returns once the stream is open, and events
+ * are written by a small writer pool. Each subscriber keeps only its latest undelivered event,
+ * so a slow one skips intermediate leaderboards rather than queueing them, and occupies at
+ * most one writer at a time. A failed write unsubscribes it; idle streams get a comment line
+ * every heartbeat so dead connections are noticed.
+ * <p>
+ * The same ticker answers long polls: a poll is parked with the version its client has and
+ * answered with the new leaderboard on the first tick that sees another version, or with
+ * {@code 304 Not Modified} once its deadline passes. Parked polls hold no thread either, and
+ * count towards the same connection limit as streams.
+ */
+public final class LeaderboardBroadcaster {
+
+    private static final byte[] HEARTBEAT = ":\n\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final StakeService stakeService;
+    private final int maxSubscribers;
+    private final long heartbeatNanos;
+
+    /**
+     * Subscribed offers: betOfferId -> subscribers; an offer is removed with its last subscriber
+     */
+    private final ConcurrentHashMap<Integer, CopyOnWriteArrayList<Subscriber>> topics = new ConcurrentHashMap<>();
+    private final AtomicInteger subscribers = new AtomicInteger();
+
+    /**
+     * Parked long polls: betOfferId -> polls; an offer is removed once it has none
+     */
+    private final ConcurrentHashMap<Integer, ConcurrentLinkedQueue<Poll>> polls = new ConcurrentHashMap<>();
+    private final AtomicInteger pollCount = new AtomicInteger();
+    private final ScheduledExecutorService ticker;
+    private final ExecutorService writers;
+
+    /**
+     * @param intervalMillis  how often leaderboards are checked for changes, the most one
+     *                        stream is pushed to
+     * @param heartbeatMillis quiet time after which a stream gets a heartbeat
+     * @param maxSubscribers  open streams and parked polls beyond which new ones are refused
+     * @param writerThreads   threads writing events to subscribers
+     */
+    public LeaderboardBroadcaster(StakeService stakeService, long intervalMillis, long heartbeatMillis,
+                                  int maxSubscribers, int writerThreads) {
+        this.stakeService = stakeService;
+        this.maxSubscribers = maxSubscribers;
+        this.heartbeatNanos = TimeUnit.MILLISECONDS.toNanos(heartbeatMillis);
+
+        AtomicInteger writerCount = new AtomicInteger();
+        this.writers = Executors.newFixedThreadPool(writerThreads, task -> {
+            Thread thread = new Thread(task, "leaderboard-writer-" + writerCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.ticker = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "leaderboard-ticker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleWithFixedDelay(() -> {
+            try {
+                tick(System.nanoTime());
+            } catch (RuntimeException e) {
+                Logger.error("Leaderboard broadcast failed", e);
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Opens an event stream of one offer's leaderboard on {@code exchange}: the current
+     * leaderboard first, unless the client already has it ({@code Last-Event-ID}), then each
+     * change. Returns at once; the stream stays open until the client leaves.
+     *
+     * @throws BettingException {@code SERVICE_UNAVAILABLE} if too many streams are open
+     */
+    public void subscribe(int betOfferId, HttpExchange exchange) throws IOException {
+        if (subscribers.incrementAndGet() + pollCount.get() > maxSubscribers) {
+            subscribers.decrementAndGet();
+            throw new BettingException(BettingException.ErrorCode.SERVICE_UNAVAILABLE,
+                    "Too many leaderboard streams open");
+        }
+
+        Subscriber subscriber;
+        try {
+            exchange.getResponseHeaders().add("Content-Type", "text/event-stream;charset=UTF-8");
+            exchange.getResponseHeaders().add("Cache-Control", "no-cache");
+            exchange.sendResponseHeaders(200, 0);
+            subscriber = new Subscriber(betOfferId, exchange, lastEventId(exchange));
+        } catch (IOException | RuntimeException e) {
+            subscribers.decrementAndGet();
+            throw e;
+        }
+        Leaderboard current = stakeService.getLeaderboard(betOfferId);
+        if (current.getVersion() != subscriber.version) {
+            subscriber.send(current.getVersion(), event(current));
+        }
+        topics.compute(betOfferId, (id, list) -> {
+            CopyOnWriteArrayList<Subscriber> members = list != null ? list : new CopyOnWriteArrayList<>();
+            members.add(subscriber);
+            return members;
+        });
+        if (subscriber.closed.get()) {
+            // The first write failed before the subscriber was listed
+            unsubscribe(subscriber);
+        }
+        Logger.debug("Leaderboard stream opened: betOfferId=%s, subscribers=%s", betOfferId, subscribers.get());
+    }
+
+    /**
+     * Parks a long poll for a change of one offer's leaderboard: {@code exchange} is answered
+     * with the leaderboard and its {@code ETag} once its version is no longer {@code version},
+     * or with {@code 304 Not Modified} after {@code timeoutMillis}, to within one tick. Returns
+     * at once.
+     *
+     * @param version version of the leaderboard the client has
+     * @throws BettingException {@code SERVICE_UNAVAILABLE} if too many connections are held
+     */
+    public void await(int betOfferId, long version, long timeoutMillis, HttpExchange exchange) {
+        if (pollCount.incrementAndGet() + subscribers.get() > maxSubscribers) {
+            pollCount.decrementAndGet();
+            throw new BettingException(BettingException.ErrorCode.SERVICE_UNAVAILABLE,
+                    "Too many leaderboard polls open");
+        }
+        Poll poll = new Poll(exchange, version, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+        polls.compute(betOfferId, (id, queue) -> {
+            ConcurrentLinkedQueue<Poll> parked = queue != null ? queue : new ConcurrentLinkedQueue<>();
+            parked.add(poll);
+            return parked;
+        });
+    }
+
+    /**
+     * @return number of parked long polls
+     */
+    public int pollCount() {
+        return pollCount.get();
+    }
+
+    /**
+     * @return number of open streams
+     */
+    public int subscriberCount() {
+        return subscribers.get();
+    }
+
+    /**
+     * Stops pushing and closes every open stream
+     */
+    public void shutdown() {
+        ticker.shutdownNow();
+        writers.shutdownNow();
+        topics.values().forEach(members -> members.forEach(Subscriber::close));
+        polls.values().forEach(queue -> queue.forEach(poll -> poll.exchange().close()));
+    }
+
+    /**
+     * Ticker only: pushes each subscribed offer's leaderboard to the subscribers that lack it,
+     * and answers the long polls whose leaderboard changed or whose deadline passed
+     */
+    void tick(long now) {
+        topics.forEach((betOfferId, members) -> {
+            Leaderboard current = stakeService.getLeaderboard(betOfferId);
+            byte[] rendered = null;
+            for (Subscriber subscriber : members) {
+                if (subscriber.version != current.getVersion()) {
+                    if (rendered == null) {
+                        rendered = event(current);
+                    }
+                    subscriber.send(current.getVersion(), rendered);
+                } else if (now - subscriber.lastSentNanos >= heartbeatNanos) {
+                    subscriber.heartbeat(now);
+                }
+            }
+        });
+
+        polls.forEach((betOfferId, queue) -> {
+            Leaderboard current = stakeService.getLeaderboard(betOfferId);
+            Response changed = null;
+            for (Iterator<Poll> it = queue.iterator(); it.hasNext(); ) {
+                Poll poll = it.next();
+                if (poll.version() != current.getVersion()) {
+                    if (changed == null) {
+                        changed = Response.ok(current.body()).header("ETag", ETags.of(current.getVersion()));
+                    }
+                    it.remove();
+                    answer(poll, changed);
+                } else if (now - poll.deadlineNanos() >= 0) {
+                    it.remove();
+                    answer(poll, Response.notModified().header("ETag", ETags.of(poll.version())));
+                }
+            }
+            polls.computeIfPresent(betOfferId, (id, parked) -> parked.isEmpty() ? null : parked);
+        });
+    }
+
+    /**
+     * @return one {@code leaderboard} event, its ID the leaderboard's version
+     */
+    static byte[] event(Leaderboard leaderboard) {
+        byte[] head = ("id: " + leaderboard.getVersion() + "\nevent: leaderboard\ndata: ")
+                .getBytes(StandardCharsets.US_ASCII);
+        byte[] body = leaderboard.body();
+        byte[] event = new byte[head.length + body.length + 2];
+        System.arraycopy(head, 0, event, 0, head.length);
+        System.arraycopy(body, 0, event, head.length, body.length);
+        event[event.length - 2] = '\n';
+        event[event.length - 1] = '\n';
+        return event;
+    }
+
+    /**
+     * @return the version the client last got, or -1 if unknown
+     */
+    private static long lastEventId(HttpExchange exchange) {
+        String lastEventId = exchange.getRequestHeaders().getFirst("Last-Event-ID");
+        if (lastEventId == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(lastEventId.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void answer(Poll poll, Response response) {
+        pollCount.decrementAndGet();
+        try {
+            writers.execute(() -> {
+                try {
+                    ResponseWriter.write(poll.exchange(), response);
+                } catch (IOException e) {
+                    Logger.debug("Leaderboard poll closed: %s", e.getMessage());
+                    poll.exchange().close();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+            poll.exchange().close();
+        }
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        topics.computeIfPresent(subscriber.betOfferId, (id, members) -> {
+            members.remove(subscriber);
+            return members.isEmpty() ? null : members;
+        });
+    }
+
+    /**
+     * One parked long poll
+     *
+     * @param version       version of the leaderboard the client has
+     * @param deadlineNanos {@link System#nanoTime()} after which it is answered unchanged
+     */
+    private record Poll(HttpExchange exchange, long version, long deadlineNanos) {
+    }
+
+    /**
+     * One open stream; at most one writer drains it at a time
+     */
+    private final class Subscriber implements Runnable {
+
+        private final int betOfferId;
+        private final HttpExchange exchange;
+        private final OutputStream out;
+        private final AtomicReference<byte[]> pending = new AtomicReference<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        /**
+         * Version of the last leaderboard queued; set before the subscriber is shared, then
+         * by the ticker only
+         */
+        private long version;
+        private long lastSentNanos = System.nanoTime();
+
+        Subscriber(int betOfferId, HttpExchange exchange, long version) {
+            this.betOfferId = betOfferId;
+            this.exchange = exchange;
+            this.out = exchange.getResponseBody();
+            this.version = version;
+        }
+
+        /**
+         * Queues an event, replacing one not yet written
+         */
+        void send(long eventVersion, byte[] event) {
+            version = eventVersion;
+            lastSentNanos = System.nanoTime();
+            pending.set(event);
+            schedule();
+        }
+
+        void heartbeat(long now) {
+            lastSentNanos = now;
+            if (pending.compareAndSet(null, HEARTBEAT)) {
+                schedule();
+            }
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    writers.execute(this);
+                } catch (RejectedExecutionException e) {
+                    // Shutting down
+                    scheduled.set(false);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                byte[] event = pending.getAndSet(null);
+                if (event == null) {
+                    scheduled.set(false);
+                    // An event queued after the getAndSet but before the flag cleared has no writer yet
+                    if (pending.get() == null || !scheduled.compareAndSet(false, true)) {
+                        return;
+                    }
+                    continue;
+                }
+                try {
+                    out.write(event);
+                    out.flush();
+                } catch (IOException e) {
+                    Logger.debug("Leaderboard stream closed: betOfferId=%s, %s", betOfferId, e.getMessage());
+                    close();
+                    return;
+                }
+            }
+        }
+
+        void close() {
+            if (closed.compareAndSet(false, true)) {
+                unsubscribe(this);
+                subscribers.decrementAndGet();
+                exchange.close();
+            }
+        }
+    }
+}
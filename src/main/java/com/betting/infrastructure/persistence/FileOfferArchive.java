@@ -0,0 +1,74 @@
+package com.betting.infrastructure.persistence;
+
+import com.betting.core.model.OfferSnapshot;
+import com.betting.core.service.OfferArchive;
+import com.betting.util.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.stream.Stream;
+
+/**
+ * Archive of compacted offers in a local directory, one {@link SnapshotFile} per offer
+ * <p>
+ * The archive is scratch space, not a durable copy: the stake log and snapshots are the
+ * source of truth, and an archived offer is exported into every snapshot. Files left over
+ * from a previous run are deleted when the archive is opened.
+ */
+public class FileOfferArchive implements OfferArchive {
+
+    private static final String OFFER_PREFIX = "offer-";
+    private static final String OFFER_SUFFIX = ".bin";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final Path directory;
+
+    public FileOfferArchive(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        int stale = 0;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                String name = file.getFileName().toString();
+                if (name.startsWith(OFFER_PREFIX) && Files.deleteIfExists(file)) {
+                    stale++;
+                }
+            }
+        }
+        if (stale > 0) {
+            Logger.info("Deleted %d stale archived offers from %s", stale, directory);
+        }
+    }
+
+    @Override
+    public void store(OfferSnapshot snapshot) throws IOException {
+        Path file = offerPath(snapshot.betOfferId());
+        Path temp = file.resolveSibling(file.getFileName() + TEMP_SUFFIX);
+        Files.deleteIfExists(temp);
+        try (SnapshotFile out = new SnapshotFile(temp)) {
+            out.write(snapshot);
+            out.finish();
+        }
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @Override
+    public OfferSnapshot load(int betOfferId) throws IOException {
+        OfferSnapshot[] loaded = new OfferSnapshot[1];
+        SnapshotFile.read(offerPath(betOfferId), snapshot -> loaded[0] = snapshot);
+        if (loaded[0] == null || loaded[0].betOfferId() != betOfferId) {
+            throw new IOException("Archived file of bet offer " + betOfferId + " holds another offer");
+        }
+        return loaded[0];
+    }
+
+    @Override
+    public void delete(int betOfferId) throws IOException {
+        Files.deleteIfExists(offerPath(betOfferId));
+    }
+
+    private Path offerPath(int betOfferId) {
+        return directory.resolve(OFFER_PREFIX + betOfferId + OFFER_SUFFIX);
+    }
+}
@@ -0,0 +1,168 @@
+package com.betting.infrastructure.persistence;
+
+import com.betting.core.model.Leaderboard;
+import com.betting.core.model.OfferSnapshot;
+import com.betting.core.model.OfferStatus;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Binary file of offer snapshots, shared by {@link StakeSnapshots} and {@link FileOfferArchive}
+ * <p>
+ * Format: a 4-byte magic number, then all numbers as unsigned varints: the format version,
+ * then per offer its betOfferId, status code, customer count, (customerId delta, stake) for
+ * every customer in ascending order, then entry count and (customerId, stake) for the
+ * leaderboard; a 0 betOfferId ends the offers, and a 4-byte CRC32 of everything before it
+ * ends the file.
+ */
+final class SnapshotFile implements Closeable {
+
+    private static final int MAGIC = 0x42534E50;
+    private static final int FORMAT_VERSION = 2;
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * Creates the file; fails if it exists
+     */
+    SnapshotFile(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        buffer.putInt(MAGIC);
+        writeVarint(FORMAT_VERSION);
+    }
+
+    void write(OfferSnapshot snapshot) throws IOException {
+        writeVarint(snapshot.betOfferId());
+        writeVarint(snapshot.status().getCode());
+        writeVarint(snapshot.size());
+        int previous = 0;
+        for (int i = 0; i < snapshot.size(); i++) {
+            writeVarint(snapshot.customerIds()[i] - previous);
+            writeVarint(snapshot.stakes()[i]);
+            previous = snapshot.customerIds()[i];
+        }
+        Leaderboard top = snapshot.leaderboard();
+        writeVarint(top.size());
+        for (int i = 0; i < top.size(); i++) {
+            writeVarint(top.getCustomerId(i));
+            writeVarint(top.getStake(i));
+        }
+    }
+
+    /**
+     * Ends the file and forces it to disk; the file is complete once this returns
+     */
+    void finish() throws IOException {
+        writeVarint(0);
+        drain();
+        buffer.putInt((int) crc.getValue());
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(true);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Checks a whole file, then passes its offers to {@code consumer}
+     *
+     * @return number of offers read
+     * @throws IOException if the file cannot be read, or is damaged or incomplete
+     */
+    static long read(Path file, Consumer<OfferSnapshot> consumer) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(file));
+        if (in.limit() < 8 || in.getInt(0) != MAGIC) {
+            throw new IOException("Not a snapshot file: " + file);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(in.array(), 0, in.limit() - 4);
+        if ((int) crc.getValue() != in.getInt(in.limit() - 4)) {
+            throw new IOException("Checksum mismatch in snapshot file " + file);
+        }
+        in.limit(in.limit() - 4).position(4);
+
+        long offers = 0;
+        try {
+            int version = readVarint(in);
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported snapshot file version " + version + ": " + file);
+            }
+            int betOfferId;
+            while ((betOfferId = readVarint(in)) != 0) {
+                int statusCode = readVarint(in);
+                OfferStatus status = OfferStatus.fromCode(statusCode)
+                        .orElseThrow(() -> new IllegalStateException("Unknown offer status " + statusCode));
+                int[] customerIds = new int[readVarint(in)];
+                int[] stakes = new int[customerIds.length];
+                int customerId = 0;
+                for (int i = 0; i < customerIds.length; i++) {
+                    customerId += readVarint(in);
+                    customerIds[i] = customerId;
+                    stakes[i] = readVarint(in);
+                }
+                int[] topCustomerIds = new int[readVarint(in)];
+                int[] topStakes = new int[topCustomerIds.length];
+                for (int i = 0; i < topCustomerIds.length; i++) {
+                    topCustomerIds[i] = readVarint(in);
+                    topStakes[i] = readVarint(in);
+                }
+                consumer.accept(new OfferSnapshot(betOfferId, customerIds, stakes,
+                        new Leaderboard(0, topCustomerIds, topStakes), status));
+                offers++;
+            }
+        } catch (IllegalStateException | IndexOutOfBoundsException | BufferUnderflowException
+                 | NegativeArraySizeException e) {
+            // Only reachable if the checksum missed a corruption
+            throw new IOException("Malformed snapshot file " + file, e);
+        }
+        return offers;
+    }
+
+    private void writeVarint(int value) throws IOException {
+        if (buffer.remaining() < 5) {
+            drain();
+        }
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        crc.update(buffer.array(), 0, buffer.limit());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static int readVarint(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+}
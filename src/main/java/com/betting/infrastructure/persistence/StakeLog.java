@@ -0,0 +1,334 @@
+package com.betting.infrastructure.persistence;
+
+import com.betting.core.model.OfferStatus;
+import com.betting.core.service.StakeJournal;
+import com.betting.util.Logger;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Memory-mapped, segment-rotated write-ahead log of accepted stake raises
+ * <p>
+ * Each raise is one fixed-width 16-byte record (customerId, betOfferId, stake, checksum)
+ * written into a pre-mapped segment file. An append claims its slot with one atomic
+ * increment and writes it with absolute puts: no locks, no allocation, no system call.
+ * Records reach the page cache immediately, so a process crash loses nothing; a background
+ * flusher forces the segments to disk every flush interval (group commit), which bounds
+ * what a power loss can take.
+ * <p>
+ * Each run writes to fresh segments after the existing ones. Concurrent appends may land
+ * slightly out of order and a crash may leave unwritten slots; replay checks every record's
+ * checksum and skips empty or torn ones. Stakes only go up, so replay order does not matter.
+ * <p>
+ * {@link #rotate()} cuts the log for a snapshot: records appended before the cut are in
+ * lower segments, which can be deleted once the snapshot is durable.
+ * <p>
+ * An offer status change is a record with customerId {@value #STATUS_RECORD} and the status
+ * code as its stake. Status changes are rare and made one at a time, so they replay in order.
+ */
+public final class StakeLog implements StakeJournal {
+
+    static final int RECORD_BYTES = 16;
+
+    /**
+     * Customer id marking a status record; real customer ids are positive
+     */
+    static final int STATUS_RECORD = -1;
+
+    private static final String SEGMENT_PREFIX = "stakes-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int CHECKSUM_SEED = 0x5EED57A4;
+
+    /**
+     * Recently used segments, by segment index modulo the ring size
+     */
+    private static final int RING_SIZE = 4;
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final int recordShift;
+    private final long recordMask;
+    private final long flushIntervalNanos;
+
+    /**
+     * Index of the first segment written by this log; older segments are only replayed
+     */
+    private final long firstSegment;
+
+    /**
+     * Next record position, counted from the start of {@link #firstSegment}
+     */
+    private final AtomicLong next = new AtomicLong();
+    private final AtomicReferenceArray<Segment> ring = new AtomicReferenceArray<>(RING_SIZE);
+    private final Object rotationLock = new Object();
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    /**
+     * Records before this position are forced to disk; guarded by {@code this}
+     */
+    private long forced;
+
+    /**
+     * @param segmentBytes        size of one segment file, rounded up to a power of two
+     * @param flushIntervalMillis maximum time an appended record waits to be forced to disk
+     */
+    public StakeLog(Path directory, int segmentBytes, long flushIntervalMillis) throws IOException {
+        if (segmentBytes < RECORD_BYTES || flushIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Segment size and flush interval must be positive");
+        }
+        this.directory = Files.createDirectories(directory);
+        this.segmentBytes = Integer.highestOneBit(segmentBytes - 1) << 1;
+        this.recordShift = Integer.numberOfTrailingZeros(this.segmentBytes / RECORD_BYTES);
+        this.recordMask = (1L << recordShift) - 1;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+
+        List<Long> existing = existingSegments();
+        this.firstSegment = existing.isEmpty() ? 0 : existing.get(existing.size() - 1) + 1;
+        segment(firstSegment);
+
+        this.flusher = new Thread(this::flushLoop, "stake-log-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    @Override
+    public void append(int customerId, int betOfferId, int stake) {
+        write(customerId, betOfferId, stake);
+    }
+
+    @Override
+    public void offerStatus(int betOfferId, OfferStatus status) {
+        write(STATUS_RECORD, betOfferId, status.getCode());
+    }
+
+    private void write(int customerId, int betOfferId, int stake) {
+        long position = next.getAndIncrement();
+        long index = firstSegment + (position >>> recordShift);
+        int offset = (int) (position & recordMask) * RECORD_BYTES;
+
+        Segment segment = ring.get((int) (index & (RING_SIZE - 1)));
+        if (segment == null || segment.index != index) {
+            segment = segment(index);
+        }
+
+        MappedByteBuffer buffer = segment.buffer;
+        buffer.putInt(offset + 4, betOfferId);
+        buffer.putInt(offset + 8, stake);
+        buffer.putInt(offset + 12, checksum(customerId, betOfferId, stake));
+        buffer.putInt(offset, customerId);
+
+        if (segment.detached) {
+            // Straggler into a segment already rotated out of the ring: nobody else will force it
+            buffer.force();
+        }
+    }
+
+    /**
+     * Feeds every valid record of the segments written before this log was opened to {@code consumer}
+     *
+     * @return number of records replayed
+     */
+    public long replay(StakeJournal consumer) throws IOException {
+        return replay(0, consumer);
+    }
+
+    /**
+     * Like {@link #replay(StakeJournal)}, starting at a cut returned by {@link #rotate()}
+     *
+     * @return number of records replayed
+     */
+    public long replay(long fromSegment, StakeJournal consumer) throws IOException {
+        long records = 0;
+        for (long index : existingSegments()) {
+            if (index < fromSegment) {
+                continue;
+            }
+            if (index >= firstSegment) {
+                break;
+            }
+            try (FileChannel channel = FileChannel.open(segmentPath(index), StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                int limit = buffer.capacity() - RECORD_BYTES;
+                for (int offset = 0; offset <= limit; offset += RECORD_BYTES) {
+                    int customerId = buffer.getInt(offset);
+                    int betOfferId = buffer.getInt(offset + 4);
+                    int stake = buffer.getInt(offset + 8);
+                    if (customerId == 0 || buffer.getInt(offset + 12) != checksum(customerId, betOfferId, stake)) {
+                        continue;
+                    }
+                    if (customerId != STATUS_RECORD) {
+                        consumer.append(customerId, betOfferId, stake);
+                        records++;
+                    } else {
+                        OfferStatus status = OfferStatus.fromCode(stake).orElse(null);
+                        if (status != null) {
+                            consumer.offerStatus(betOfferId, status);
+                            records++;
+                        }
+                    }
+                }
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Moves appends on to a fresh segment
+     *
+     * @return index of the new segment: every record appended before this call is in a lower one
+     */
+    public long rotate() {
+        while (true) {
+            long position = next.get();
+            long boundary = (position + recordMask) & ~recordMask;
+            if (boundary == position || next.compareAndSet(position, boundary)) {
+                long index = firstSegment + (boundary >>> recordShift);
+                segment(index);
+                return index;
+            }
+        }
+    }
+
+    /**
+     * Deletes the segments below a cut returned by {@link #rotate()}
+     *
+     * @return number of segments deleted
+     */
+    public int deleteSegmentsBefore(long index) throws IOException {
+        int deleted = 0;
+        for (long existing : existingSegments()) {
+            if (existing >= index) {
+                break;
+            }
+            // Still mapped segments stay writable until unmapped, so late appends are harmless
+            if (Files.deleteIfExists(segmentPath(existing))) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Forces everything appended so far to disk
+     */
+    public synchronized void flush() {
+        long target = next.get();
+        if (target == forced) {
+            return;
+        }
+        long from = firstSegment + (forced >>> recordShift);
+        long to = firstSegment + ((target - 1) >>> recordShift);
+        for (long index = from; index <= to; index++) {
+            Segment segment = ring.get((int) (index & (RING_SIZE - 1)));
+            if (segment != null && segment.index == index) {
+                segment.buffer.force();
+            }
+        }
+        forced = target;
+    }
+
+    /**
+     * Stops the flusher and forces the log to disk; call after the last append
+     */
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(flusher);
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    private void flushLoop() {
+        while (running) {
+            LockSupport.parkNanos(this, flushIntervalNanos);
+            try {
+                flush();
+                // Map the next segment ahead of time so appends never wait for it
+                segment(firstSegment + (next.get() >>> recordShift) + 1);
+            } catch (RuntimeException e) {
+                Logger.error("Failed to flush stake log", e);
+            }
+        }
+    }
+
+    /**
+     * Slow path: maps a segment into the ring, or privately for a straggler
+     */
+    private Segment segment(long index) {
+        synchronized (rotationLock) {
+            int slot = (int) (index & (RING_SIZE - 1));
+            Segment current = ring.get(slot);
+            if (current != null && current.index == index) {
+                return current;
+            }
+            boolean detached = current != null && current.index > index;
+            Segment segment = map(index, detached);
+            if (!detached) {
+                if (current != null) {
+                    // Make sure the segment leaving the ring is durable
+                    current.buffer.force();
+                }
+                ring.set(slot, segment);
+            }
+            return segment;
+        }
+    }
+
+    private Segment map(long index, boolean detached) {
+        try (FileChannel channel = FileChannel.open(segmentPath(index),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return new Segment(index, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes), detached);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot map stake log segment " + segmentPath(index), e);
+        }
+    }
+
+    private List<Long> existingSegments() throws IOException {
+        List<Long> indexes = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .forEach(name -> {
+                        try {
+                            indexes.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                                    name.length() - SEGMENT_SUFFIX.length())));
+                        } catch (NumberFormatException e) {
+                            Logger.warn("Ignoring unexpected file in stake log directory: %s", name);
+                        }
+                    });
+        }
+        indexes.sort(null);
+        return indexes;
+    }
+
+    private Path segmentPath(long index) {
+        return directory.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+    }
+
+    private static int checksum(int customerId, int betOfferId, int stake) {
+        int h = CHECKSUM_SEED;
+        h = (h ^ customerId) * 0x9E3779B9;
+        h = (h ^ betOfferId) * 0x9E3779B9;
+        h = (h ^ stake) * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private record Segment(long index, MappedByteBuffer buffer, boolean detached) {
+    }
+}
@@ -0,0 +1,287 @@
+package com.betting.infrastructure.persistence;
+
+import com.betting.core.service.StakeService;
+import com.betting.util.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Periodic binary snapshots of every offer book, restored in parallel at startup
+ * <p>
+ * Taking a snapshot first cuts the stake log ({@link StakeLog#rotate()}), then exports every
+ * offer without stopping writers. Every raise journaled before the cut is in the snapshot, so
+ * a restore loads the snapshot and replays only the log from the cut on; raises found in both
+ * are harmless, since stakes only go up. Once a snapshot is durable, the log segments and
+ * snapshots it makes redundant are deleted; the previous snapshot is kept as a fallback.
+ * <p>
+ * A snapshot is a directory {@code snapshot-<cut>} holding one file per partition (offers
+ * split by betOfferId hash) and a manifest. It is written under a temporary name and renamed
+ * once complete, so a crash mid-write leaves the previous snapshot in place. Partition files
+ * are {@link SnapshotFile}s, restored concurrently on a fork-join pool.
+ */
+public class StakeSnapshots {
+
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String MANIFEST = "manifest.properties";
+    private static final String PARTITION_FORMAT = "partition-%04d.bin";
+    private static final int FORMAT_VERSION = 2;
+
+    /**
+     * Newest snapshots kept on disk; the log is kept from the oldest one's cut on
+     */
+    private static final int KEEP_SNAPSHOTS = 2;
+
+    private final Path directory;
+    private final int partitions;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * @param partitions number of files a snapshot is split into, and restored in parallel from
+     */
+    public StakeSnapshots(Path directory, int partitions) throws IOException {
+        if (partitions <= 0) {
+            throw new IllegalArgumentException("Partition count must be positive");
+        }
+        this.directory = Files.createDirectories(directory);
+        this.partitions = partitions;
+    }
+
+    /**
+     * Takes a snapshot every {@code intervalSeconds} in the background
+     */
+    public synchronized void start(StakeService stakeService, StakeLog log, long intervalSeconds) {
+        scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "stake-snapshotter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                take(stakeService, log);
+            } catch (IOException | RuntimeException e) {
+                Logger.error("Failed to take stake snapshot", e);
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Cuts the log, snapshots the engine and deletes what the snapshot makes redundant
+     *
+     * @return the log cut the snapshot covers
+     */
+    public synchronized long take(StakeService stakeService, StakeLog log) throws IOException {
+        long startTime = System.currentTimeMillis();
+        long cut = log.rotate();
+        long offers = write(stakeService, cut);
+
+        List<Long> cuts = snapshotCuts();
+        for (int i = 0; i < cuts.size() - KEEP_SNAPSHOTS; i++) {
+            deleteRecursively(snapshotPath(cuts.get(i)));
+        }
+        int segments = cuts.size() < KEEP_SNAPSHOTS ? 0
+                : log.deleteSegmentsBefore(cuts.get(cuts.size() - KEEP_SNAPSHOTS));
+
+        Logger.info("Wrote stake snapshot %d with %d offers in %d ms, deleted %d log segments",
+                cut, offers, System.currentTimeMillis() - startTime, segments);
+        return cut;
+    }
+
+    /**
+     * Writes a snapshot of every offer of the engine, covering the log before {@code cut}
+     *
+     * @return number of offers written
+     */
+    public long write(StakeService stakeService, long cut) throws IOException {
+        Path temp = directory.resolve(SNAPSHOT_PREFIX + cut + TEMP_SUFFIX);
+        deleteRecursively(temp);
+        Files.createDirectories(temp);
+
+        SnapshotFile[] writers = new SnapshotFile[partitions];
+        long[] counts = new long[2];
+        try {
+            for (int i = 0; i < partitions; i++) {
+                writers[i] = new SnapshotFile(temp.resolve(String.format(PARTITION_FORMAT, i)));
+            }
+            stakeService.exportOffers(snapshot -> {
+                try {
+                    writers[partition(snapshot.betOfferId())].write(snapshot);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                counts[0]++;
+                counts[1] += snapshot.size();
+            });
+            for (SnapshotFile writer : writers) {
+                writer.finish();
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            for (SnapshotFile writer : writers) {
+                if (writer != null) {
+                    writer.close();
+                }
+            }
+        }
+
+        Properties manifest = new Properties();
+        manifest.setProperty("version", String.valueOf(FORMAT_VERSION));
+        manifest.setProperty("cut", String.valueOf(cut));
+        manifest.setProperty("partitions", String.valueOf(partitions));
+        manifest.setProperty("offers", String.valueOf(counts[0]));
+        manifest.setProperty("customers", String.valueOf(counts[1]));
+        try (FileChannel channel = FileChannel.open(temp.resolve(MANIFEST),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            manifest.store(Channels.newOutputStream(channel), "Stake snapshot");
+            channel.force(true);
+        }
+
+        Path target = snapshotPath(cut);
+        deleteRecursively(target);
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        forceDirectory(directory);
+        return counts[0];
+    }
+
+    /**
+     * Loads the newest readable snapshot into the engine, its partitions in parallel; falls
+     * back to older snapshots if one is damaged
+     *
+     * @return the log cut to replay from, 0 if there is no snapshot
+     */
+    public long restore(StakeService stakeService) throws IOException {
+        List<Long> cuts = snapshotCuts();
+        for (int i = cuts.size() - 1; i >= 0; i--) {
+            long cut = cuts.get(i);
+            try {
+                long startTime = System.currentTimeMillis();
+                long offers = load(stakeService, snapshotPath(cut));
+                Logger.info("Restored stake snapshot %d with %d offers in %d ms",
+                        cut, offers, System.currentTimeMillis() - startTime);
+                return cut;
+            } catch (IOException e) {
+                Logger.error("Cannot restore stake snapshot " + cut + ", trying an older one", e);
+            }
+        }
+        return 0;
+    }
+
+    public synchronized void shutdown() {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdown();
+        try {
+            if (!scheduler.awaitTermination(30, TimeUnit.SECONDS)) {
+                scheduler.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            scheduler.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private long load(StakeService stakeService, Path snapshot) throws IOException {
+        Properties manifest = new Properties();
+        try (InputStream in = Files.newInputStream(snapshot.resolve(MANIFEST))) {
+            manifest.load(in);
+        }
+        if (!String.valueOf(FORMAT_VERSION).equals(manifest.getProperty("version"))) {
+            throw new IOException("Unsupported snapshot version " + manifest.getProperty("version"));
+        }
+
+        // Offers never span partitions, so partitions can be imported concurrently
+        int count = Integer.parseInt(manifest.getProperty("partitions"));
+        List<Callable<Long>> loads = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Path file = snapshot.resolve(String.format(PARTITION_FORMAT, i));
+            loads.add(() -> SnapshotFile.read(file, stakeService::importOffer));
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(Math.min(count, Runtime.getRuntime().availableProcessors()));
+        try {
+            long offers = 0;
+            for (Future<Long> result : pool.invokeAll(loads)) {
+                offers += result.get();
+            }
+            return offers;
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException cause ? cause : new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while restoring " + snapshot, e);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private int partition(int betOfferId) {
+        int h = betOfferId * 0x9E3779B9;
+        return Integer.remainderUnsigned(h ^ (h >>> 16), partitions);
+    }
+
+    /**
+     * @return cuts of the complete snapshots on disk, oldest first
+     */
+    private List<Long> snapshotCuts() throws IOException {
+        List<Long> cuts = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(SNAPSHOT_PREFIX) && !name.endsWith(TEMP_SUFFIX))
+                    .forEach(name -> {
+                        try {
+                            cuts.add(Long.parseLong(name.substring(SNAPSHOT_PREFIX.length())));
+                        } catch (NumberFormatException e) {
+                            Logger.warn("Ignoring unexpected file in snapshot directory: %s", name);
+                        }
+                    });
+        }
+        cuts.sort(null);
+        return cuts;
+    }
+
+    private Path snapshotPath(long cut) {
+        return directory.resolve(SNAPSHOT_PREFIX + cut);
+    }
+
+    private static void deleteRecursively(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(path)) {
+            for (Path each : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(each);
+            }
+        }
+    }
+
+    private static void forceDirectory(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Not every platform can sync a directory; the rename is still atomic
+            Logger.debug("Cannot force directory %s: %s", path, e.getMessage());
+        }
+    }
+}
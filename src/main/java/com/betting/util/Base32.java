@@ -0,0 +1,75 @@
+package com.betting.util;
+
+/**
+ * Unpadded base32 (RFC 4648 alphabet, upper case), for session keys: letters and digits only
+ * <p>
+ * Decoding is strict: every encoding has one spelling, so a key cannot be replayed with other
+ * characters or spare bits set.
+ */
+public final class Base32 {
+
+    private static final char[] ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZ234567".toCharArray();
+
+    private Base32() {
+    }
+
+    /**
+     * @return number of characters encoding {@code bytes} bytes
+     */
+    public static int length(int bytes) {
+        return (bytes * 8 + 4) / 5;
+    }
+
+    public static String encode(byte[] bytes, int offset, int length) {
+        char[] chars = new char[length(length)];
+        int buffer = 0;
+        int bits = 0;
+        int next = 0;
+        for (int i = offset; i < offset + length; i++) {
+            buffer = buffer << 8 | (bytes[i] & 0xFF);
+            bits += 8;
+            while (bits >= 5) {
+                bits -= 5;
+                chars[next++] = ALPHABET[(buffer >>> bits) & 31];
+            }
+        }
+        if (bits > 0) {
+            chars[next] = ALPHABET[(buffer << (5 - bits)) & 31];
+        }
+        return new String(chars);
+    }
+
+    /**
+     * @param length number of bytes expected
+     * @return the decoded bytes, or null unless {@code text} is the canonical encoding of
+     * exactly {@code length} bytes
+     */
+    public static byte[] decode(String text, int length) {
+        if (text == null || text.length() != length(length)) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        int buffer = 0;
+        int bits = 0;
+        int next = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            int value;
+            if (c >= 'A' && c <= 'Z') {
+                value = c - 'A';
+            } else if (c >= '2' && c <= '7') {
+                value = c - '2' + 26;
+            } else {
+                return null;
+            }
+            buffer = buffer << 5 | value;
+            bits += 5;
+            if (bits >= 8) {
+                bits -= 8;
+                bytes[next++] = (byte) (buffer >>> bits);
+            }
+        }
+        // The last character's spare bits must be zero
+        return (buffer & ((1 << bits) - 1)) == 0 ? bytes : null;
+    }
+}
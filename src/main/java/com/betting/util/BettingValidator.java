@@ -14,6 +14,16 @@ public class BettingValidator {
      */
     private static final int MAX_STAKE_AMOUNT = 1_000_000; // 1 million
 
+    /**
+     * Maximum number of leaderboard entries returned by one request
+     */
+    private static final int MAX_PAGE_SIZE = 1_000;
+
+    /**
+     * Longest a leaderboard long poll may be held
+     */
+    private static final int MAX_WAIT_SECONDS = 30;
+
     private BettingValidator() {
         // Utility class - prevent instantiation
     }
@@ -48,6 +58,50 @@ public class BettingValidator {
         }
     }
     
+    /**
+     * Validates a range of leaderboard ranks
+     *
+     * @param offset number of ranks to skip
+     * @param limit  number of ranks to return
+     * @throws BettingException if the range is invalid or too large
+     */
+    public static void leaderboardPage(int offset, int limit) {
+        if (offset < 0) {
+            throw new BettingException(BettingException.ErrorCode.INVALID_PARAMETER_FORMAT,
+                "Invalid leaderboard offset: " + offset);
+        }
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            throw new BettingException(BettingException.ErrorCode.INVALID_PARAMETER_FORMAT,
+                "Leaderboard limit must be between 1 and " + MAX_PAGE_SIZE + ": " + limit);
+        }
+    }
+
+    /**
+     * Validates a leaderboard rank
+     *
+     * @param rank the rank, 1 being the highest stake
+     * @throws BettingException if the rank is not positive
+     */
+    public static void leaderboardRank(int rank) {
+        if (rank <= 0) {
+            throw new BettingException(BettingException.ErrorCode.INVALID_PARAMETER_FORMAT,
+                "Invalid leaderboard rank: " + rank);
+        }
+    }
+    
+    /**
+     * Validates how long a leaderboard long poll waits for a change
+     *
+     * @param seconds the wait, 0 for none
+     * @throws BettingException if the wait is negative or too long
+     */
+    public static void leaderboardWait(int seconds) {
+        if (seconds < 0 || seconds > MAX_WAIT_SECONDS) {
+            throw new BettingException(BettingException.ErrorCode.INVALID_PARAMETER_FORMAT,
+                "Leaderboard wait must be between 0 and " + MAX_WAIT_SECONDS + " seconds: " + seconds);
+        }
+    }
+
     /**
      * Validates a customer ID - must be a valid customer
      * 
@@ -80,12 +134,12 @@ public class BettingValidator {
                 "Session service is not available");
         }
         
-        if (!sessionService.validateSession(sessionKey)) {
+        int customerId = sessionService.authenticate(sessionKey);
+        if (customerId == SessionService.INVALID_SESSION) {
             throw new BettingException(BettingException.ErrorCode.INVALID_SESSION,
                 "Invalid or expired session: " + sessionKey);
         }
         
-        int customerId = sessionService.getCustomerId(sessionKey);
         if (customerId == 0) {
             throw new BettingException(BettingException.ErrorCode.SESSION_NOT_FOUND,
                 "Customer not found for session: " + sessionKey);
@@ -0,0 +1,225 @@
+package com.betting.util;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Concurrent multiset of ints in {@code [0, maxValue]} answering order statistics in O(log n)
+ * <p>
+ * A two-level Fenwick (binary indexed) tree over the value domain, highest values first: a
+ * coarse tree counts the values in each block of 1024, and a fine tree per block counts each
+ * value in it. Fine trees are created on the first value in their block and released once
+ * the block is empty again, so a tree costs 8 bytes per block plus 4 KB per block holding
+ * values, rather than 4 bytes per possible value.
+ * <p>
+ * Features:
+ * - Lock-free updates: adding or removing a value is a fixed number of atomic adds, about
+ *   20 for a domain of a million values; adds commute, so concurrent updates need no ordering
+ * - Counting the values above a value and finding the n-th highest value both walk the two
+ *   trees once
+ * <p>
+ * Reads are weakly consistent: a read racing an update may see it on one level and not yet
+ * on the other, and is exact again once the update completes.
+ */
+public class IntCountTree {
+
+    private static final int BLOCK_BITS = 10;
+    private static final int BLOCK_SIZE = 1 << BLOCK_BITS;
+
+    /**
+     * Slot 0 of a fine tree, unused by the 1-based Fenwick tree, counts the updates in flight
+     * on it, or holds this while the tree is being released
+     */
+    private static final int RELEASING = -1;
+
+    private final int maxValue;
+    private final int blocks;
+
+    /**
+     * Fenwick tree over block counts, 1-based
+     */
+    private final AtomicIntegerArray coarse;
+
+    /**
+     * Fenwick tree over the value counts of each block, 1-based; null while the block is empty
+     */
+    private final AtomicReferenceArray<AtomicIntegerArray> fine;
+
+    /**
+     * @param maxValue highest value the tree can hold
+     */
+    public IntCountTree(int maxValue) {
+        if (maxValue < 0 || maxValue == Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Max value must be in [0, Integer.MAX_VALUE), got: " + maxValue);
+        }
+        this.maxValue = maxValue;
+        this.blocks = (int) (((long) maxValue + BLOCK_SIZE) >>> BLOCK_BITS);
+        this.coarse = new AtomicIntegerArray(blocks + 1);
+        this.fine = new AtomicReferenceArray<>(blocks);
+    }
+
+    public void add(int value) {
+        update(value, 1);
+    }
+
+    /**
+     * Removes one occurrence of a value previously added
+     */
+    public void remove(int value) {
+        update(value, -1);
+    }
+
+    /**
+     * @return number of values held
+     */
+    public int size() {
+        return coarsePrefix(blocks);
+    }
+
+    /**
+     * @return number of values strictly greater than {@code value}
+     */
+    public int countAbove(int value) {
+        if (value >= maxValue) {
+            return 0;
+        }
+        return countFirst(maxValue - Math.max(value, -1));
+    }
+
+    /**
+     * @param n rank, 1 being the highest value
+     * @return the n-th highest value counting duplicates, or -1 if fewer than {@code n} are held
+     */
+    public int highest(int n) {
+        if (n <= 0 || size() < n) {
+            return -1;
+        }
+
+        // Fenwick descent on the coarse tree: the last block whose preceding blocks hold fewer than n
+        int block = 0;
+        int remaining = n;
+        for (int step = Integer.highestOneBit(blocks); step > 0; step >>= 1) {
+            int next = block + step;
+            if (next <= blocks && coarse.get(next) < remaining) {
+                block = next;
+                remaining -= coarse.get(next);
+            }
+        }
+        if (block == blocks) {
+            // Raced a removal
+            return -1;
+        }
+
+        AtomicIntegerArray tree = fine.get(block);
+        int offset = 0;
+        if (tree != null) {
+            for (int step = BLOCK_SIZE; step > 0; step >>= 1) {
+                int next = offset + step;
+                if (next <= BLOCK_SIZE && tree.get(next) < remaining) {
+                    offset = next;
+                    remaining -= tree.get(next);
+                }
+            }
+        }
+        int position = (block << BLOCK_BITS) + Math.min(offset, BLOCK_SIZE - 1);
+        return Math.max(maxValue - position, 0);
+    }
+
+    /**
+     * @return number of blocks holding a fine tree
+     */
+    int blocksInUse() {
+        int inUse = 0;
+        for (int i = 0; i < blocks; i++) {
+            if (fine.get(i) != null) {
+                inUse++;
+            }
+        }
+        return inUse;
+    }
+
+    private void update(int value, int delta) {
+        if (value < 0 || value > maxValue) {
+            throw new IllegalArgumentException("Value must be in [0, " + maxValue + "], got: " + value);
+        }
+        int position = maxValue - value;
+        int block = position >>> BLOCK_BITS;
+
+        AtomicIntegerArray tree = pin(block);
+        for (int i = (position & (BLOCK_SIZE - 1)) + 1; i <= BLOCK_SIZE; i += i & -i) {
+            tree.getAndAdd(i, delta);
+        }
+        // The root of a fine tree counts its whole block
+        if (tree.decrementAndGet(0) == 0 && tree.get(BLOCK_SIZE) == 0) {
+            release(block, tree);
+        }
+        for (int i = block + 1; i <= blocks; i += i & -i) {
+            coarse.getAndAdd(i, delta);
+        }
+    }
+
+    /**
+     * @return the block's fine tree, created if needed, with this update counted in flight on it
+     */
+    private AtomicIntegerArray pin(int block) {
+        while (true) {
+            AtomicIntegerArray tree = fine.get(block);
+            if (tree == null) {
+                fine.compareAndSet(block, null, new AtomicIntegerArray(BLOCK_SIZE + 1));
+                continue;
+            }
+            int inFlight = tree.get(0);
+            if (inFlight == RELEASING) {
+                // Released or restored within a few reads
+                Thread.onSpinWait();
+            } else if (tree.compareAndSet(0, inFlight, inFlight + 1)) {
+                return tree;
+            }
+        }
+    }
+
+    /**
+     * Drops a fine tree whose block looks empty, unless an update is in flight on it or it
+     * still holds counts; a removal can run ahead of the add it undoes, so the block total
+     * can be zero with a +1 and a -1 left in it, which must stay together
+     */
+    private void release(int block, AtomicIntegerArray tree) {
+        if (!tree.compareAndSet(0, 0, RELEASING)) {
+            // Updates in flight; the last of them checks again
+            return;
+        }
+        // No update can land now: every slot being zero means every value count is zero
+        for (int i = 1; i <= BLOCK_SIZE; i++) {
+            if (tree.get(i) != 0) {
+                tree.set(0, 0);
+                return;
+            }
+        }
+        fine.compareAndSet(block, tree, null);
+    }
+
+    /**
+     * @return number of values at the first {@code count} positions, i.e. the {@code count}
+     * highest possible values
+     */
+    private int countFirst(int count) {
+        int block = count >>> BLOCK_BITS;
+        int total = coarsePrefix(block);
+        int within = count & (BLOCK_SIZE - 1);
+        AtomicIntegerArray tree = within == 0 ? null : fine.get(block);
+        if (tree != null) {
+            for (int i = within; i > 0; i -= i & -i) {
+                total += tree.get(i);
+            }
+        }
+        return total;
+    }
+
+    private int coarsePrefix(int block) {
+        int total = 0;
+        for (int i = block; i > 0; i -= i & -i) {
+            total += coarse.get(i);
+        }
+        return total;
+    }
+}
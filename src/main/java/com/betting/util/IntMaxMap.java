@@ -0,0 +1,238 @@
+package com.betting.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrent int -> int open-addressing map specialised for "monotonic max" updates
+ * <p>
+ * Each entry is packed into a single {@code long} slot (key in the high word, value in the
+ * low word), so there are no boxed keys, boxed values or node objects: an entry costs 8 bytes
+ * times the inverse load factor instead of the 60-80 bytes of a
+ * {@code ConcurrentHashMap<Integer, Integer>} entry.
+ * <p>
+ * Features:
+ * - Lock-free reads and writes: inserting a key and raising its value are single CAS operations
+ * - Values only ever go up, which makes every write a commutative max-merge
+ * - Cooperative resizing: threads that hit a table being resized help copy it, and because
+ *   copies are max-merges they can be repeated safely by any number of helpers
+ * <p>
+ * Keys must be positive and values non-negative.
+ */
+public class IntMaxMap {
+
+    /**
+     * Returned when a key has no value yet
+     */
+    public static final int NO_VALUE = -1;
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /**
+     * Slot states: 0 is an empty slot, the sign bit marks a slot already copied to the next table
+     */
+    private static final long EMPTY = 0L;
+    private static final long MOVED = Long.MIN_VALUE;
+
+    private final AtomicReference<Table> table;
+    private final LongAdder size = new LongAdder();
+
+    public IntMaxMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param expectedSize number of keys the map should hold without resizing
+     */
+    public IntMaxMap(int expectedSize) {
+        int capacity = DEFAULT_CAPACITY;
+        while (capacity * 3L / 4 < expectedSize) {
+            capacity <<= 1;
+        }
+        this.table = new AtomicReference<>(new Table(capacity));
+    }
+
+    /**
+     * Returns the current value for a key
+     *
+     * @param key the key, must be positive
+     * @return the value, or {@link #NO_VALUE} if the key is absent
+     */
+    public int get(int key) {
+        checkKey(key);
+        return get(table.get(), key);
+    }
+
+    /**
+     * Raises the value for a key to {@code value} if it is absent or lower
+     *
+     * @param key   the key, must be positive
+     * @param value the candidate value, must be non-negative
+     * @return the previous value, or {@link #NO_VALUE} if the key was absent; the map was
+     * changed if and only if the returned value is lower than {@code value}
+     */
+    public int raise(int key, int value) {
+        checkKey(key);
+        if (value < 0) {
+            throw new IllegalArgumentException("Value must be non-negative, got: " + value);
+        }
+        return raise(table.get(), key, value, true);
+    }
+
+    /**
+     * @return number of keys in the map
+     */
+    public int size() {
+        return (int) size.sum();
+    }
+
+    /**
+     * Visits every entry without blocking writers
+     * <p>
+     * Weakly consistent: every entry present before the call is visited, with its value at
+     * that time or a later one; entries added or raised during the call may or may not be.
+     */
+    public void forEach(EntryConsumer action) {
+        Table t = table.get();
+        while (t.next.get() != null) {
+            // A resize in progress may hold newer keys in the next table only: finish it first
+            transfer(t);
+            t = table.get();
+        }
+        for (int i = 0; i < t.slots.length(); i++) {
+            long content = t.slots.get(i) & ~MOVED;
+            if (content != EMPTY) {
+                action.accept(keyOf(content), valueOf(content));
+            }
+        }
+    }
+
+    private static int get(Table t, int key) {
+        int mask = t.mask;
+        int i = hash(key) & mask;
+        for (int probes = 0; probes <= mask; probes++, i = (i + 1) & mask) {
+            long slot = t.slots.get(i);
+            long content = slot & ~MOVED;
+            if (content == EMPTY) {
+                return (slot & MOVED) != 0 ? get(t.next.get(), key) : NO_VALUE;
+            }
+            if (keyOf(content) == key) {
+                // A moved slot is frozen; anything newer lives in the next table
+                int value = valueOf(content);
+                return (slot & MOVED) != 0 ? Math.max(value, get(t.next.get(), key)) : value;
+            }
+        }
+        Table next = t.next.get();
+        return next != null ? get(next, key) : NO_VALUE;
+    }
+
+    private int raise(Table t, int key, int value, boolean countInsert) {
+        while (true) {
+            int mask = t.mask;
+            int i = hash(key) & mask;
+            boolean moved = false;
+
+            for (int probes = 0; probes <= mask && !moved; probes++, i = (i + 1) & mask) {
+                while (true) {
+                    long slot = t.slots.get(i);
+                    if (slot == EMPTY) {
+                        if (t.slots.compareAndSet(i, EMPTY, pack(key, value))) {
+                            if (countInsert) {
+                                size.increment();
+                                if (size.sum() > t.resizeThreshold) {
+                                    transfer(t);
+                                }
+                            }
+                            return NO_VALUE;
+                        }
+                        continue;
+                    }
+                    if ((slot & MOVED) != 0) {
+                        moved = true;
+                        break;
+                    }
+                    if (keyOf(slot) != key) {
+                        break;
+                    }
+                    int current = valueOf(slot);
+                    if (current >= value || t.slots.compareAndSet(i, slot, pack(key, value))) {
+                        return current;
+                    }
+                }
+            }
+
+            // Either the table is being resized or it is full: finish the copy and go on in the next table
+            transfer(t);
+            t = t.next.get();
+        }
+    }
+
+    /**
+     * Copies every slot of {@code t} into its next table and publishes the next table.
+     * Safe to run concurrently from any number of threads.
+     */
+    private void transfer(Table t) {
+        Table next = t.next.get();
+        if (next == null) {
+            t.next.compareAndSet(null, new Table(t.slots.length() << 1));
+            next = t.next.get();
+        } else if (table.get() != t) {
+            // Tables are only replaced once fully copied
+            return;
+        }
+
+        for (int i = 0; i < t.slots.length(); i++) {
+            long slot = t.slots.get(i);
+            while ((slot & MOVED) == 0 && !t.slots.compareAndSet(i, slot, slot | MOVED)) {
+                slot = t.slots.get(i);
+            }
+            long content = slot & ~MOVED;
+            if (content != EMPTY) {
+                raise(next, keyOf(content), valueOf(content), false);
+            }
+        }
+        table.compareAndSet(t, next);
+    }
+
+    private static void checkKey(int key) {
+        if (key <= 0) {
+            throw new IllegalArgumentException("Key must be positive, got: " + key);
+        }
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static long pack(int key, int value) {
+        return ((long) key << 32) | (value & 0xFFFFFFFFL);
+    }
+
+    private static int keyOf(long slot) {
+        return (int) (slot >>> 32) & Integer.MAX_VALUE;
+    }
+
+    private static int valueOf(long slot) {
+        return (int) slot;
+    }
+
+    @FunctionalInterface
+    public interface EntryConsumer {
+        void accept(int key, int value);
+    }
+
+    private static final class Table {
+        final AtomicLongArray slots;
+        final int mask;
+        final int resizeThreshold;
+        final AtomicReference<Table> next = new AtomicReference<>();
+
+        Table(int capacity) {
+            this.slots = new AtomicLongArray(capacity);
+            this.mask = capacity - 1;
+            this.resizeThreshold = capacity / 4 * 3;
+        }
+    }
+}
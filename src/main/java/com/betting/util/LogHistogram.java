@@ -0,0 +1,127 @@
+package com.betting.util;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrent fixed-size histogram of ints in {@code [0, maxValue]}, for values that are
+ * replaced rather than only added, like each customer's max stake on an offer
+ * <p>
+ * Log-linear buckets: values below 64 get a bucket each, and every power of two above is
+ * split into 32 equal buckets, so a value is known to within 1/32 (about 3%) of itself. A
+ * domain of a million values takes 512 buckets, 2 KB, whatever the number of values held.
+ * <p>
+ * Features:
+ * - Lock-free updates: replacing a value is two atomic adds on the buckets plus striped
+ *   adds to the count and sum, all without a loop
+ * - Percentiles walk one copy of the buckets, and are reported as the highest value of
+ *   their bucket, so they never understate
+ * <p>
+ * Reads are weakly consistent: count, sum and buckets are read one after another.
+ */
+public class LogHistogram {
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    private final int maxValue;
+    private final AtomicIntegerArray buckets;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+
+    /**
+     * @param maxValue highest value the histogram can hold
+     */
+    public LogHistogram(int maxValue) {
+        if (maxValue < 0) {
+            throw new IllegalArgumentException("Max value must not be negative, got: " + maxValue);
+        }
+        this.maxValue = maxValue;
+        this.buckets = new AtomicIntegerArray(bucketOf(maxValue) + 1);
+    }
+
+    /**
+     * Replaces one value with another; does nothing if they are equal
+     *
+     * @param oldValue value to remove, or negative to only add {@code newValue}
+     */
+    public void replace(int oldValue, int newValue) {
+        if (oldValue == newValue) {
+            return;
+        }
+        if (newValue < 0 || newValue > maxValue || oldValue > maxValue) {
+            throw new IllegalArgumentException("Value must be in [0, " + maxValue + "], got: "
+                    + oldValue + " -> " + newValue);
+        }
+        buckets.getAndIncrement(bucketOf(newValue));
+        if (oldValue < 0) {
+            count.increment();
+            sum.add(newValue);
+        } else {
+            buckets.getAndDecrement(bucketOf(oldValue));
+            sum.add((long) newValue - oldValue);
+        }
+    }
+
+    /**
+     * @return number of values held
+     */
+    public long count() {
+        return count.sum();
+    }
+
+    /**
+     * @return sum of the values held
+     */
+    public long sum() {
+        return sum.sum();
+    }
+
+    /**
+     * @param percents percentiles to find, each in {@code (0, 100]}
+     * @return for each percentile, the highest value of the bucket holding it: at least the
+     * value at that rank and within 1/32 of it; 0 if the histogram is empty
+     */
+    public int[] percentiles(double... percents) {
+        int[] counts = new int[buckets.length()];
+        long total = 0;
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+
+        int[] values = new int[percents.length];
+        for (int p = 0; p < percents.length; p++) {
+            if (percents[p] <= 0 || percents[p] > 100) {
+                throw new IllegalArgumentException("Percentile must be in (0, 100], got: " + percents[p]);
+            }
+            long rank = Math.max(1, (long) Math.ceil(percents[p] / 100 * total));
+            long seen = 0;
+            for (int i = 0; i < counts.length && total > 0; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    values[p] = Math.min(highestOf(i), maxValue);
+                    break;
+                }
+            }
+        }
+        return values;
+    }
+
+    private static int bucketOf(int value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return value;
+        }
+        int exponent = 31 - Integer.numberOfLeadingZeros(value);
+        return ((exponent - SUB_BITS + 1) << SUB_BITS) + ((value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1));
+    }
+
+    private static int highestOf(int bucket) {
+        if (bucket < 2 * SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket >>> SUB_BITS) - 1;
+        int lowest = (SUB_BUCKETS + (bucket & (SUB_BUCKETS - 1))) << shift;
+        return lowest + (1 << shift) - 1;
+    }
+}
@@ -17,6 +17,7 @@ public class Logger {
     /**
      * Log level constants
      */
+    private static final String DEBUG_LEVEL = "DEBUG";
     private static final String INFO_LEVEL = "INFO";
     private static final String WARN_LEVEL = "WARN";
     private static final String ERROR_LEVEL = "ERROR";
@@ -25,11 +26,31 @@ public class Logger {
      * Log format template
      */
     private static final String LOG_FORMAT = "[%s] %s - %s";
+
+    /**
+     * Debug output is off unless -Dbetting.log.debug=true; it is meant for hot paths
+     * where formatting and the stdout lock would otherwise serialize every request
+     */
+    private static final boolean DEBUG_ENABLED = Boolean.getBoolean("betting.log.debug");
     
     private Logger() {
         // Utility class - prevent instantiation
     }
     
+    /**
+     * Logs a debug message with timestamp, if debug logging is enabled
+     *
+     * @param msg the message template
+     * @param args the message arguments
+     */
+    public static void debug(String msg, Object... args) {
+        if (!DEBUG_ENABLED) {
+            return;
+        }
+        String formattedMessage = formatMessage(msg, args);
+        System.out.printf((LOG_FORMAT) + "%n", DEBUG_LEVEL, getTimestamp(), formattedMessage);
+    }
+
     /**
      * Logs an info message with timestamp
      * 
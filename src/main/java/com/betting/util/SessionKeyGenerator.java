@@ -0,0 +1,102 @@
+package com.betting.util;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Unique, unguessable session keys at high rates from many threads
+ * <p>
+ * Every key is a 64-bit sequence number encrypted with AES-128 under a random per-generator
+ * key, written as 26 base32 characters. AES is a permutation of 128-bit blocks, so distinct
+ * sequence numbers give distinct keys: the generator never repeats a key, at any rate, for
+ * 2^64 keys. Without the AES key, consecutive keys look unrelated and predicting one is as
+ * hard as breaking AES.
+ * <p>
+ * Features:
+ * - Threads take blocks of 64 sequence numbers, so the shared counter is touched once per
+ *   block and threads never contend on a key
+ * - Each block is encrypted in one call on a per-thread {@link Cipher}, which amortizes the
+ *   cipher's call overhead over the block
+ * <p>
+ * Keys are unique per generator; two generators can only collide by chance, with 128-bit odds.
+ */
+public final class SessionKeyGenerator {
+
+    /**
+     * Characters in a key
+     */
+    public static final int KEY_LENGTH = Base32.length(16);
+
+    private static final String ALGORITHM = "AES";
+    private static final String TRANSFORMATION = "AES/ECB/NoPadding";
+    private static final int KEY_BYTES = 16;
+    private static final int BLOCK_KEYS = 64;
+
+    private final SecretKeySpec secret;
+
+    /**
+     * Next block of sequence numbers to hand out
+     */
+    private final AtomicLong nextBlock = new AtomicLong();
+    private final ThreadLocal<Block> blocks = ThreadLocal.withInitial(Block::new);
+
+    public SessionKeyGenerator() {
+        byte[] key = new byte[16];
+        new SecureRandom().nextBytes(key);
+        this.secret = new SecretKeySpec(key, ALGORITHM);
+        // Fail now rather than on the first login if AES is missing
+        newCipher();
+    }
+
+    /**
+     * @return a key this generator has not returned before
+     */
+    public String next() {
+        Block block = blocks.get();
+        if (block.next == BLOCK_KEYS) {
+            block.refill(nextBlock.getAndIncrement());
+        }
+        return Base32.encode(block.keys, block.next++ * KEY_BYTES, KEY_BYTES);
+    }
+
+    private Cipher newCipher() {
+        try {
+            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            cipher.init(Cipher.ENCRYPT_MODE, secret);
+            return cipher;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot generate session keys with " + TRANSFORMATION, e);
+        }
+    }
+
+    /**
+     * One thread's current block: its encrypted keys and how many it has handed out
+     */
+    private final class Block {
+
+        private final Cipher cipher = newCipher();
+        private final byte[] sequence = new byte[BLOCK_KEYS * KEY_BYTES];
+        private final byte[] keys = new byte[BLOCK_KEYS * KEY_BYTES];
+        private int next = BLOCK_KEYS;
+
+        void refill(long block) {
+            long first = block * BLOCK_KEYS;
+            for (int i = 0; i < BLOCK_KEYS; i++) {
+                // Big-endian sequence number in the first half, zeros in the second
+                long value = first + i;
+                for (int b = 0; b < 8; b++) {
+                    sequence[i * KEY_BYTES + b] = (byte) (value >>> (56 - 8 * b));
+                }
+            }
+            try {
+                cipher.doFinal(sequence, 0, sequence.length, keys, 0);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Cannot encrypt session key block " + block, e);
+            }
+            next = 0;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.betting.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+
+/**
+ * Off-heap memory allocator handing out power-of-two blocks carved from direct slabs
+ * <p>
+ * Each size class owns its slabs: a slab is one direct {@link ByteBuffer} of
+ * {@code slabBytes}, cut into equal blocks when the class runs out of free ones. A freed
+ * block goes back to its class's free list and is zeroed when handed out again, so memory
+ * is reused without going through the garbage collector. Blocks larger than a slab get a
+ * dedicated buffer and are released to the collector when freed.
+ * <p>
+ * Blocks are 8-byte aligned and in native byte order, so their longs can be updated with
+ * {@link java.lang.invoke.MethodHandles#byteBufferViewVarHandle} atomics. Allocation and
+ * freeing take a lock, and are meant for rare events such as creating or growing a table.
+ */
+public class SlabAllocator {
+
+    public static final int MIN_BLOCK_BYTES = 64;
+    private static final int MIN_SHIFT = Integer.numberOfTrailingZeros(MIN_BLOCK_BYTES);
+    private static final int DEFAULT_SLAB_BYTES = 4 << 20;
+
+    private final int slabBytes;
+    private final ArrayDeque<ByteBuffer>[] free;
+
+    /**
+     * Bytes of slabs and dedicated buffers currently held; guarded by {@code this}
+     */
+    private long reservedBytes;
+
+    /**
+     * Bytes of blocks currently handed out; guarded by {@code this}
+     */
+    private long allocatedBytes;
+
+    public SlabAllocator() {
+        this(DEFAULT_SLAB_BYTES);
+    }
+
+    /**
+     * @param slabBytes size of each slab, a power of two of at least {@link #MIN_BLOCK_BYTES}
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public SlabAllocator(int slabBytes) {
+        if (slabBytes < MIN_BLOCK_BYTES || Integer.bitCount(slabBytes) != 1) {
+            throw new IllegalArgumentException("Slab size must be a power of two >= "
+                    + MIN_BLOCK_BYTES + ", got: " + slabBytes);
+        }
+        this.slabBytes = slabBytes;
+        this.free = new ArrayDeque[31 - MIN_SHIFT];
+        for (int i = 0; i < free.length; i++) {
+            free[i] = new ArrayDeque<>();
+        }
+    }
+
+    /**
+     * @param bytes minimum block size
+     * @return a zeroed block of {@code bytes} rounded up to a power of two
+     */
+    public synchronized ByteBuffer allocate(int bytes) {
+        int blockBytes = blockSize(bytes);
+        ArrayDeque<ByteBuffer> blocks = free[sizeClass(blockBytes)];
+        ByteBuffer block = blocks.poll();
+        if (block != null) {
+            clear(block);
+        } else if (blockBytes > slabBytes) {
+            block = newSlab(blockBytes);
+        } else {
+            ByteBuffer slab = newSlab(slabBytes);
+            for (int offset = blockBytes; offset < slabBytes; offset += blockBytes) {
+                blocks.push(slab.slice(offset, blockBytes).order(ByteOrder.nativeOrder()));
+            }
+            block = slab.slice(0, blockBytes).order(ByteOrder.nativeOrder());
+        }
+        allocatedBytes += blockBytes;
+        return block;
+    }
+
+    /**
+     * Returns a block obtained from {@link #allocate}; the caller must not touch it afterwards
+     */
+    public synchronized void free(ByteBuffer block) {
+        int blockBytes = block.capacity();
+        allocatedBytes -= blockBytes;
+        if (blockBytes > slabBytes) {
+            reservedBytes -= blockBytes;
+        } else {
+            free[sizeClass(blockBytes)].push(block);
+        }
+    }
+
+    /**
+     * @return bytes of off-heap memory held, in use or not
+     */
+    public synchronized long reservedBytes() {
+        return reservedBytes;
+    }
+
+    /**
+     * @return bytes of blocks in use
+     */
+    public synchronized long allocatedBytes() {
+        return allocatedBytes;
+    }
+
+    private ByteBuffer newSlab(int bytes) {
+        ByteBuffer slab = ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+        if (slab.alignmentOffset(0, Long.BYTES) != 0) {
+            throw new IllegalStateException("Direct buffer is not 8-byte aligned");
+        }
+        reservedBytes += bytes;
+        return slab;
+    }
+
+    private static int blockSize(int bytes) {
+        if (bytes <= MIN_BLOCK_BYTES) {
+            return MIN_BLOCK_BYTES;
+        }
+        if (bytes > 1 << 30) {
+            throw new IllegalArgumentException("Block too large: " + bytes);
+        }
+        return Integer.highestOneBit(bytes - 1) << 1;
+    }
+
+    private static int sizeClass(int blockBytes) {
+        return Integer.numberOfTrailingZeros(blockBytes) - MIN_SHIFT;
+    }
+
+    private static void clear(ByteBuffer block) {
+        for (int offset = 0; offset < block.capacity(); offset += Long.BYTES) {
+            block.putLong(offset, 0L);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.betting.benchmark;
+
+import com.betting.util.Base32;
+import com.betting.util.SessionKeyGenerator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Throughput of session key generation from many threads, then a collision check
+ * <p>
+ * The check keeps the first 64 of each key's 128 bits, sorts them and counts repeats; keys
+ * can only repeat if their first halves do. 100M keys need about 800 MB of heap.
+ * <p>
+ * Not a unit test; run it directly:
+ * <pre>
+ * mvn -q test-compile
+ * java -Xmx2g -cp target/classes:target/test-classes com.betting.benchmark.SessionKeyBenchmark [keys per thread] [keys to check]
+ * </pre>
+ */
+public class SessionKeyBenchmark {
+
+    private static final int[] THREAD_COUNTS = {1, 4, 16, 64};
+
+    public static void main(String[] args) throws Exception {
+        int keys = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int checked = args.length > 1 ? Integer.parseInt(args[1]) : 100_000_000;
+
+        System.out.printf("%8s %16s %12s%n", "threads", "keys/s", "ns/key");
+        for (int threads : THREAD_COUNTS) {
+            SessionKeyGenerator generator = new SessionKeyGenerator();
+            long begin = System.nanoTime();
+            List<Thread> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                Thread worker = new Thread(() -> {
+                    int sink = 0;
+                    for (int i = 0; i < keys; i++) {
+                        sink += generator.next().charAt(i % SessionKeyGenerator.KEY_LENGTH);
+                    }
+                    if (sink == 42) {
+                        System.out.println(sink);
+                    }
+                });
+                worker.start();
+                workers.add(worker);
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+            long elapsed = System.nanoTime() - begin;
+
+            long total = (long) keys * threads;
+            System.out.printf("%8d %,16.0f %12.1f%n", threads, total * 1e9 / elapsed, (double) elapsed / total);
+        }
+
+        // Collision check: 16 threads share one generator, so blocks interleave
+        SessionKeyGenerator generator = new SessionKeyGenerator();
+        long[] halves = new long[checked];
+        int threads = 16;
+        long begin = System.nanoTime();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int from = (int) ((long) checked * t / threads);
+            int to = (int) ((long) checked * (t + 1) / threads);
+            Thread worker = new Thread(() -> {
+                for (int i = from; i < to; i++) {
+                    byte[] key = Base32.decode(generator.next(), 16);
+                    long half = 0;
+                    for (int b = 0; b < 8; b++) {
+                        half = half << 8 | (key[b] & 0xFF);
+                    }
+                    halves[i] = half;
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        Arrays.parallelSort(halves);
+        int repeats = 0;
+        for (int i = 1; i < halves.length; i++) {
+            if (halves[i] == halves[i - 1]) {
+                repeats++;
+            }
+        }
+        System.out.printf("%,d keys checked in %.1f s: %d repeated first halves%n",
+                checked, (System.nanoTime() - begin) / 1e9, repeats);
+    }
+}
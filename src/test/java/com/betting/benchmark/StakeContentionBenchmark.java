@@ -0,0 +1,94 @@
+package com.betting.benchmark;
+
+import com.betting.core.service.StakeService;
+import com.betting.core.service.impl.ShardedStakeServiceImpl;
+import com.betting.core.service.impl.StakeServiceImpl;
+import com.betting.core.service.impl.TopKStakeServiceImpl;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Submit throughput with many threads hammering a single bet offer (or a few)
+ * <p>
+ * The sharded engine applies submits asynchronously, so its runs include draining the
+ * queues: throughput counts applied submits, not just enqueued ones.
+ * <p>
+ * Not a unit test; run it directly:
+ * <pre>
+ * mvn -q test-compile
+ * java -cp target/classes:target/test-classes com.betting.benchmark.StakeContentionBenchmark [seconds] [offers]
+ * </pre>
+ */
+public class StakeContentionBenchmark {
+
+    private static final int CUSTOMERS = 100_000;
+    private static final int MAX_STAKE = 1_000_000;
+    private static final int[] THREAD_COUNTS = {1, 2, 4, 8, 16, 32};
+
+    public static void main(String[] args) throws Exception {
+        long seconds = args.length > 0 ? Long.parseLong(args[0]) : 2;
+        int offers = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+
+        Map<String, Supplier<StakeService>> engines = new LinkedHashMap<>();
+        engines.put("skiplist", StakeServiceImpl::new);
+        engines.put("topk", TopKStakeServiceImpl::new);
+        engines.put("sharded", ShardedStakeServiceImpl::new);
+
+        System.out.printf("%-10s %8s %16s%n", "engine", "threads", "submits/s");
+        for (Map.Entry<String, Supplier<StakeService>> engine : engines.entrySet()) {
+            // Warm up once so the first row is not measuring the JIT
+            run(engine.getValue().get(), 4, offers, seconds);
+            for (int threads : THREAD_COUNTS) {
+                double throughput = run(engine.getValue().get(), threads, offers, seconds);
+                System.out.printf("%-10s %8d %,16.0f%n", engine.getKey(), threads, throughput);
+            }
+        }
+    }
+
+    private static double run(StakeService stakeService, int threads, int offers, long seconds)
+            throws InterruptedException {
+        LongAdder submits = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                long count = 0;
+                while ((count & 1023) != 0 || System.nanoTime() < deadline) {
+                    stakeService.submitStake(1 + random.nextInt(CUSTOMERS), 1 + random.nextInt(offers),
+                            random.nextInt(MAX_STAKE + 1));
+                    count++;
+                }
+                submits.add(count);
+            });
+            worker.start();
+            workers.add(worker);
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        if (stakeService instanceof ShardedStakeServiceImpl sharded) {
+            sharded.flush();
+            sharded.shutdown();
+        }
+        return submits.sum() * 1e9 / (System.nanoTime() - begin);
+    }
+}
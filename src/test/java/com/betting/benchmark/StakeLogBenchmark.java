@@ -0,0 +1,52 @@
+package com.betting.benchmark;
+
+import com.betting.infrastructure.persistence.StakeLog;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append throughput of the stake write-ahead log
+ * <p>
+ * Not a unit test; run it directly:
+ * <pre>
+ * mvn -q test-compile
+ * java -cp target/classes:target/test-classes com.betting.benchmark.StakeLogBenchmark [appends per thread] [directory]
+ * </pre>
+ */
+public class StakeLogBenchmark {
+
+    private static final int[] THREAD_COUNTS = {1, 4, 16};
+
+    public static void main(String[] args) throws Exception {
+        int appends = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+        Path root = args.length > 1 ? Path.of(args[1]) : Files.createTempDirectory("stake-log-benchmark");
+
+        System.out.printf("%8s %16s %12s%n", "threads", "appends/s", "ns/append");
+        for (int threads : THREAD_COUNTS) {
+            StakeLog log = new StakeLog(root.resolve("run-" + threads), 64 << 20, 10);
+            long begin = System.nanoTime();
+            List<Thread> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int base = t * appends;
+                Thread worker = new Thread(() -> {
+                    for (int i = 1; i <= appends; i++) {
+                        log.append(base + i, 1 + (i & 63), i & 0xFFFFF);
+                    }
+                });
+                worker.start();
+                workers.add(worker);
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+            long elapsed = System.nanoTime() - begin;
+            log.shutdown();
+
+            long total = (long) appends * threads;
+            System.out.printf("%8d %,16.0f %12.1f%n", threads, total * 1e9 / elapsed, (double) elapsed / total);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.betting.benchmark;
+
+import com.betting.util.IntMaxMap;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Heap footprint of the customer -> max-stake storage
+ * <p>
+ * Fills a {@code ConcurrentHashMap<Integer, Integer>} and an {@link IntMaxMap} with the same
+ * entries and reports retained heap per entry. Not a unit test; run it directly:
+ * <pre>
+ * mvn -q test-compile
+ * java -Xmx4g -cp target/classes:target/test-classes com.betting.benchmark.StakeMemoryBenchmark 10000000
+ * </pre>
+ */
+public class StakeMemoryBenchmark {
+
+    public static void main(String[] args) {
+        int entries = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+
+        long base = usedHeap();
+        ConcurrentHashMap<Integer, Integer> boxed = new ConcurrentHashMap<>();
+        for (int customerId = 1; customerId <= entries; customerId++) {
+            boxed.put(customerId, 1_000 + customerId % 999_000);
+        }
+        long boxedBytes = usedHeap() - base;
+        report("ConcurrentHashMap<Integer, Integer>", entries, boxedBytes, boxed.size());
+        boxed = null;
+
+        base = usedHeap();
+        IntMaxMap primitive = new IntMaxMap();
+        for (int customerId = 1; customerId <= entries; customerId++) {
+            primitive.raise(customerId, 1_000 + customerId % 999_000);
+        }
+        long primitiveBytes = usedHeap() - base;
+        report("IntMaxMap", entries, primitiveBytes, primitive.size());
+
+        System.out.printf("Reduction: %.1fx%n", (double) boxedBytes / primitiveBytes);
+    }
+
+    private static void report(String name, int entries, long bytes, int size) {
+        System.out.printf("%-38s entries=%,d heap=%,d MB bytes/entry=%.1f%n",
+                name, size, bytes >> 20, (double) bytes / entries);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
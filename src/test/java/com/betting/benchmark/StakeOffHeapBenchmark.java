@@ -0,0 +1,83 @@
+package com.betting.benchmark;
+
+import com.betting.core.service.StakeService;
+import com.betting.core.service.impl.OffHeapStakeServiceImpl;
+import com.betting.core.service.impl.StakeServiceImpl;
+import com.betting.core.service.impl.TopKStakeServiceImpl;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.SplittableRandom;
+
+/**
+ * Retained heap and GC pauses of the stake engines under the same synthetic load
+ * <p>
+ * Fills one engine with random stakes, then reports retained heap, off-heap memory, the
+ * collections run during the load and the pause of a full collection with the engine live.
+ * Run each engine in its own JVM so they do not share a heap. Not a unit test; run it directly:
+ * <pre>
+ * mvn -q test-compile
+ * java -Xmx4g -cp target/classes:target/test-classes com.betting.benchmark.StakeOffHeapBenchmark [skiplist|topk|offheap] [customers per offer] [offers]
+ * </pre>
+ */
+public class StakeOffHeapBenchmark {
+
+    public static void main(String[] args) {
+        String engine = args.length > 0 ? args[0] : "offheap";
+        int customers = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        int offers = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        long base = usedHeap();
+        long[] gcBefore = gcTotals();
+        StakeService service = switch (engine) {
+            case "skiplist" -> new StakeServiceImpl();
+            case "topk" -> new TopKStakeServiceImpl();
+            case "offheap" -> new OffHeapStakeServiceImpl();
+            default -> throw new IllegalArgumentException("Unknown engine: " + engine);
+        };
+
+        long begin = System.nanoTime();
+        SplittableRandom random = new SplittableRandom(42);
+        for (int offer = 1; offer <= offers; offer++) {
+            for (int customerId = 1; customerId <= customers; customerId++) {
+                service.submitStake(customerId, offer, random.nextInt(1_000_000));
+            }
+        }
+        long loadNanos = System.nanoTime() - begin;
+        long[] gcAfter = gcTotals();
+
+        begin = System.nanoTime();
+        System.gc();
+        long fullGcMillis = (System.nanoTime() - begin) / 1_000_000;
+
+        long heap = usedHeap() - base;
+        long offHeap = service instanceof OffHeapStakeServiceImpl offHeapService ? offHeapService.offHeapBytes() : 0;
+        long entries = (long) customers * offers;
+        System.out.printf("%-8s %,d entries: load %,d ms, heap %,d MB (%.1f B/entry), off-heap %,d MB%n",
+                engine, entries, loadNanos / 1_000_000, heap >> 20, (double) heap / entries, offHeap >> 20);
+        System.out.printf("%-8s GCs during load: %d, %,d ms total; full GC with engine live: %,d ms%n",
+                engine, gcAfter[0] - gcBefore[0], gcAfter[1] - gcBefore[1], fullGcMillis);
+        // Keep the engine reachable until everything is measured
+        System.out.println(service.getLeaderboard(1).size() > 0 ? "" : "empty");
+    }
+
+    /**
+     * @return collection count and accumulated collection time in ms, over every collector
+     */
+    private static long[] gcTotals() {
+        long[] totals = new long[2];
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            totals[0] += Math.max(gc.getCollectionCount(), 0);
+            totals[1] += Math.max(gc.getCollectionTime(), 0);
+        }
+        return totals;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
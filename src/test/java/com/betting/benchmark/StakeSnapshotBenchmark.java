@@ -0,0 +1,66 @@
+package com.betting.benchmark;
+
+import com.betting.core.service.StakeService;
+import com.betting.core.service.impl.StakeServiceImpl;
+import com.betting.infrastructure.persistence.StakeSnapshots;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.stream.Stream;
+
+/**
+ * Snapshot write and restore time of a full stake engine
+ * <p>
+ * Not a unit test; run it directly:
+ * <pre>
+ * mvn -q test-compile
+ * java -Xmx4g -cp target/classes:target/test-classes com.betting.benchmark.StakeSnapshotBenchmark [customers per offer] [offers] [directory]
+ * </pre>
+ */
+public class StakeSnapshotBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int customers = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int offers = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        Path directory = args.length > 2 ? Path.of(args[2]) : Files.createTempDirectory("stake-snapshot-benchmark");
+        int partitions = Runtime.getRuntime().availableProcessors();
+
+        long written = write(directory, partitions, customers, offers);
+        // Let the source engine go before restoring, so the two do not compete for the heap
+        System.gc();
+
+        long bytes;
+        try (Stream<Path> files = Files.walk(directory)) {
+            bytes = files.filter(Files::isRegularFile).mapToLong(path -> path.toFile().length()).sum();
+        }
+
+        StakeService target = new StakeServiceImpl();
+        long begin = System.nanoTime();
+        new StakeSnapshots(directory, partitions).restore(target);
+        long restored = System.nanoTime() - begin;
+
+        long entries = (long) customers * offers;
+        System.out.printf("%,d entries in %d offers, %d partitions: %,d bytes (%.2f bytes/entry)%n",
+                entries, offers, partitions, bytes, (double) bytes / entries);
+        System.out.printf("write   %,8d ms %,14.0f entries/s%n", written / 1_000_000, entries * 1e9 / written);
+        System.out.printf("restore %,8d ms %,14.0f entries/s%n", restored / 1_000_000, entries * 1e9 / restored);
+    }
+
+    /**
+     * @return nanoseconds taken to write the snapshot
+     */
+    private static long write(Path directory, int partitions, int customers, int offers) throws Exception {
+        StakeService source = new StakeServiceImpl();
+        SplittableRandom random = new SplittableRandom(42);
+        for (int offer = 1; offer <= offers; offer++) {
+            for (int customerId = 1; customerId <= customers; customerId++) {
+                source.submitStake(customerId, offer, random.nextInt(1_000_001));
+            }
+        }
+
+        long begin = System.nanoTime();
+        new StakeSnapshots(directory, partitions).write(source, 1);
+        return System.nanoTime() - begin;
+    }
+}
@@ -0,0 +1,189 @@
+package com.betting.core.service;
+
+import com.betting.api.exception.BettingException;
+import com.betting.core.model.OfferSnapshot;
+import com.betting.core.model.OfferStatus;
+import com.betting.core.model.StakeDistribution;
+import com.betting.core.service.impl.OffHeapStakeServiceImpl;
+import com.betting.util.SlabAllocator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the off-heap stake engine
+ */
+@DisplayName("OffHeapStakeService Tests")
+class OffHeapStakeServiceTest {
+
+    private SlabAllocator slabs;
+    private OffHeapStakeServiceImpl stakeService;
+
+    @BeforeEach
+    void setUp() {
+        slabs = new SlabAllocator(1 << 16);
+        stakeService = new OffHeapStakeServiceImpl(slabs);
+    }
+
+    @Test
+    @DisplayName("Should throw exception for invalid input")
+    void shouldThrowExceptionForInvalidInput() {
+        assertThrows(BettingException.class, () -> stakeService.submitStake(0, 1, 100));
+        assertThrows(BettingException.class, () -> stakeService.submitStake(1, 0, 100));
+        assertThrows(BettingException.class, () -> stakeService.submitStake(1, 1, -1));
+        assertThrows(BettingException.class, () -> stakeService.submitStake(1, 1, 1_000_001));
+        assertThrows(BettingException.class, () -> stakeService.getTop20Stakes(0));
+        assertTrue(stakeService.getTop20Stakes(999).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should keep maximum stakes, evict the lowest entry and rank ties by arrival")
+    void shouldKeepMaximumStakesInOrder() {
+        // Given
+        int betOfferId = 1;
+        for (int i = 1; i <= 20; i++) {
+            stakeService.submitStake(i, betOfferId, i * 10);
+        }
+
+        // When
+        stakeService.submitStake(5, betOfferId, 10);
+        stakeService.submitStake(21, betOfferId, 200);
+        stakeService.submitStake(1, betOfferId, 5);
+
+        // Then
+        List<String> top = stakeService.getTop20Stakes(betOfferId);
+        assertEquals(20, top.size());
+        assertEquals(List.of("20=200", "21=200", "19=190"), top.subList(0, 3));
+        assertEquals("2=20", top.get(19));
+    }
+
+    @Test
+    @DisplayName("Should grow tables under concurrent submits without losing a customer")
+    void shouldGrowTablesUnderConcurrentSubmits() throws Exception {
+        // Given
+        int threads = 4;
+        int customers = 20_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        // When - every thread raises every customer, so raises and inserts race
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int offset = t;
+            futures.add(executor.submit(() -> {
+                for (int customerId = 1; customerId <= customers; customerId++) {
+                    stakeService.submitStake(customerId, 1 + customerId % 3, customerId % 1000 * 4 + offset);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        // Then
+        int exported = 0;
+        List<OfferSnapshot> offers = new ArrayList<>();
+        stakeService.exportOffers(offers::add);
+        for (OfferSnapshot offer : offers) {
+            for (int i = 0; i < offer.size(); i++) {
+                assertEquals(offer.customerIds()[i] % 1000 * 4 + threads - 1, offer.stakes()[i]);
+            }
+            exported += offer.size();
+            Set<Integer> onBoard = new HashSet<>();
+            int lowest = Integer.MAX_VALUE;
+            for (int i = 0; i < offer.leaderboard().size(); i++) {
+                assertTrue(onBoard.add(offer.leaderboard().getCustomerId(i)));
+                assertTrue(offer.leaderboard().getStake(i) <= lowest);
+                lowest = offer.leaderboard().getStake(i);
+            }
+            assertEquals(20, onBoard.size());
+            for (int i = 0; i < offer.size(); i++) {
+                assertTrue(onBoard.contains(offer.customerIds()[i]) || offer.stakes()[i] <= lowest);
+            }
+        }
+        assertEquals(customers, exported);
+    }
+
+    @Test
+    @DisplayName("Should free off-heap blocks when an offer closes and keep serving it")
+    void shouldFreeBlocksWhenOfferCloses() {
+        // Given
+        for (int customerId = 1; customerId <= 1_000; customerId++) {
+            stakeService.submitStake(customerId, 1, customerId);
+        }
+        long allocated = slabs.allocatedBytes();
+        List<String> top = stakeService.getTop20Stakes(1);
+
+        // When
+        stakeService.setOfferStatus(1, OfferStatus.CLOSED);
+
+        // Then
+        assertTrue(slabs.allocatedBytes() < allocated);
+        assertEquals(top, stakeService.getTop20Stakes(1));
+        assertThrows(BettingException.class, () -> stakeService.submitStake(1, 1, 5_000));
+        List<OfferSnapshot> offers = new ArrayList<>();
+        stakeService.exportOffers(offers::add);
+        assertEquals(1_000, offers.get(0).size());
+        assertEquals(OfferStatus.CLOSED, offers.get(0).status());
+
+        // A raise accepted just before closing and replayed from the log still lands
+        stakeService.restoreStake(2_000, 1, 5_000);
+        assertEquals("2000=5000", stakeService.getTop20Stakes(1).get(0));
+        assertEquals(OfferStatus.CLOSED, stakeService.getOfferStatus(1));
+    }
+
+    @Test
+    @DisplayName("Should restore an exported offer with its tie order")
+    void shouldRestoreExportedOffer() {
+        // Given - ties arrive in descending customer order
+        for (int customerId = 100; customerId >= 1; customerId--) {
+            stakeService.submitStake(customerId, 1, customerId % 10 * 10);
+        }
+        List<OfferSnapshot> offers = new ArrayList<>();
+        stakeService.exportOffers(offers::add);
+
+        // When
+        OffHeapStakeServiceImpl restored = new OffHeapStakeServiceImpl();
+        restored.importOffer(offers.get(0));
+
+        // Then
+        assertEquals(stakeService.getTop20Stakes(1), restored.getTop20Stakes(1));
+        assertTrue(restored.getLeaderboard(1).getVersion() > stakeService.getLeaderboard(1).getVersion());
+    }
+
+    @Test
+    @DisplayName("Should rank customers across open, closed and restored offers")
+    void shouldRankCustomersAcrossOffers() {
+        // Given
+        stakeService.submitStake(1, 1, 500);
+        stakeService.submitStake(2, 1, 400);
+        stakeService.submitStake(2, 2, 300);
+        stakeService.setOfferStatus(1, OfferStatus.CLOSED);
+        stakeService.restoreStake(1, 1, 600);
+        stakeService.submitStake(1, 2, 100);
+
+        // Then
+        assertEquals(List.of("2=700", "1=700"), stakeService.getCustomerLeaderboard().entries());
+        assertEquals(new StakeDistribution(2, 1_000, 407, 600, 600, 600), stakeService.getStakeDistribution(1));
+
+        List<OfferSnapshot> snapshots = new ArrayList<>();
+        stakeService.exportOffers(snapshots::add);
+        OffHeapStakeServiceImpl restored = new OffHeapStakeServiceImpl(slabs);
+        snapshots.forEach(restored::importOffer);
+        assertEquals(700, restored.getCustomerLeaderboard().getStake(1));
+        assertEquals(2, restored.getCustomerLeaderboard().size());
+        for (int betOfferId = 1; betOfferId <= 3; betOfferId++) {
+            assertEquals(stakeService.getStakeDistribution(betOfferId), restored.getStakeDistribution(betOfferId));
+        }
+    }
+}
@@ -6,6 +6,16 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -144,5 +154,58 @@ class SessionServiceTest {
         assertEquals(customer1, sessionService.getCustomerId(session1.getSessionKey()));
         assertEquals(customer2, sessionService.getCustomerId(session2.getSessionKey()));
     }
-}
 
+    @Test
+    @DisplayName("Should reject a session after it is invalidated")
+    void shouldRejectInvalidatedSession() {
+        // Given
+        Session session = sessionService.createOrGetSession(321);
+        assertEquals(321, sessionService.authenticate(session.getSessionKey()));
+
+        // When
+        boolean invalidated = sessionService.invalidateSession(session.getSessionKey());
+
+        // Then - a new session is issued on the next login
+        assertTrue(invalidated);
+        assertFalse(sessionService.invalidateSession(session.getSessionKey()));
+        assertEquals(SessionService.INVALID_SESSION, sessionService.authenticate(session.getSessionKey()));
+        assertNotEquals(session.getSessionKey(), sessionService.createOrGetSession(321).getSessionKey());
+    }
+
+    @Test
+    @DisplayName("Should share one session between concurrent logins of a customer")
+    void shouldShareSessionBetweenConcurrentLogins() throws Exception {
+        // Given
+        SessionServiceImpl service = new SessionServiceImpl();
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Set<String>>> futures = new ArrayList<>();
+
+        // When - every thread logs in the same ten customers at once
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                Set<String> keys = new HashSet<>();
+                for (int i = 0; i < 1_000; i++) {
+                    keys.add(service.createOrGetSession(1 + i % 10).getSessionKey());
+                }
+                return keys;
+            }));
+        }
+        start.countDown();
+        Set<String> keys = new HashSet<>();
+        for (Future<Set<String>> future : futures) {
+            keys.addAll(future.get(30, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+        service.shutdown();
+
+        // Then - one session per customer
+        assertEquals(10, keys.size());
+        assertEquals(10, service.getActiveSessionCount());
+        for (String key : keys) {
+            assertTrue(service.validateSession(key));
+        }
+    }
+}
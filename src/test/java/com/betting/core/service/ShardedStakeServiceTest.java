@@ -0,0 +1,308 @@
+package com.betting.core.service;
+
+import com.betting.api.exception.BettingException;
+import com.betting.core.model.Leaderboard;
+import com.betting.core.model.OfferStatus;
+import com.betting.core.model.StakeDistribution;
+import com.betting.core.model.StakeResult;
+import com.betting.core.service.impl.ShardedStakeServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the partitioned single-writer stake engine
+ */
+@DisplayName("ShardedStakeService Tests")
+class ShardedStakeServiceTest {
+
+    private ShardedStakeServiceImpl stakeService;
+
+    @BeforeEach
+    void setUp() {
+        stakeService = new ShardedStakeServiceImpl(4, 64);
+    }
+
+    @AfterEach
+    void tearDown() {
+        stakeService.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should throw exception for invalid input")
+    void shouldThrowExceptionForInvalidInput() {
+        assertThrows(BettingException.class, () -> stakeService.submitStake(0, 1, 100));
+        assertThrows(BettingException.class, () -> stakeService.submitStake(1, 0, 100));
+        assertThrows(BettingException.class, () -> stakeService.submitStake(1, 1, -1));
+        assertThrows(BettingException.class, () -> stakeService.submitStake(1, 1, 1_000_001));
+        assertThrows(BettingException.class, () -> stakeService.getTop20Stakes(0));
+    }
+
+    @Test
+    @DisplayName("Should keep maximum stake per customer in descending order")
+    void shouldKeepMaximumStakePerCustomer() {
+        // Given
+        int betOfferId = 1;
+
+        // When
+        stakeService.submitStake(1, betOfferId, 100);
+        stakeService.submitStake(2, betOfferId, 300);
+        stakeService.submitStake(3, betOfferId, 200);
+        stakeService.submitStake(1, betOfferId, 50);
+        stakeService.submitStake(3, betOfferId, 250);
+        stakeService.flush();
+
+        // Then
+        assertEquals(List.of("2=300", "3=250", "1=100"), stakeService.getTop20Stakes(betOfferId));
+    }
+
+    @Test
+    @DisplayName("Should evict the lowest entry and rank ties by arrival order")
+    void shouldEvictLowestEntryAndRankTiesByArrival() {
+        // Given
+        int betOfferId = 1;
+        for (int i = 1; i <= 20; i++) {
+            stakeService.submitStake(i, betOfferId, 100);
+        }
+
+        // When
+        stakeService.submitStake(21, betOfferId, 100);
+        stakeService.submitStake(5, betOfferId, 200);
+        stakeService.submitStake(22, betOfferId, 150);
+        stakeService.flush();
+
+        // Then
+        List<String> topStakes = stakeService.getTop20Stakes(betOfferId);
+        assertEquals(20, topStakes.size());
+        assertEquals("5=200", topStakes.get(0));
+        assertEquals("22=150", topStakes.get(1));
+        assertEquals("1=100", topStakes.get(2));
+        assertEquals("19=100", topStakes.get(19));
+        assertFalse(topStakes.contains("20=100"));
+        assertFalse(topStakes.contains("21=100"));
+    }
+
+    @Test
+    @DisplayName("Should apply concurrent submits across offers through full queues")
+    void shouldApplyConcurrentSubmitsAcrossOffers() throws Exception {
+        // Given
+        int threads = 8;
+        int offers = 10;
+        int customers = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        // When - every thread raises every customer; customer c ends at c * 10 everywhere
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int step = t + 1;
+                futures.add(executor.submit(() -> {
+                    for (int c = 1; c <= customers; c++) {
+                        for (int offer = 1; offer <= offers; offer++) {
+                            stakeService.submitStake(c, offer, c * step * 10 / threads);
+                            stakeService.submitStake(c, offer, c * 10);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        stakeService.flush();
+
+        // Then
+        for (int offer = 1; offer <= offers; offer++) {
+            Leaderboard leaderboard = stakeService.getLeaderboard(offer);
+            Set<Integer> seen = new HashSet<>();
+            assertEquals(20, leaderboard.size());
+            for (int i = 0; i < leaderboard.size(); i++) {
+                assertTrue(seen.add(leaderboard.getCustomerId(i)));
+                assertEquals(customers - i, leaderboard.getCustomerId(i));
+                assertEquals((customers - i) * 10, leaderboard.getStake(i));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Should apply a stake batch and report each item")
+    void shouldApplyStakeBatch() {
+        // When
+        StakeResult[] results = stakeService.submitStakes(7,
+                new int[]{1, -1, 2, 1}, new int[]{100, 100, -5, 300});
+        stakeService.flush();
+
+        // Then
+        assertArrayEquals(new StakeResult[]{StakeResult.ACCEPTED, StakeResult.INVALID_BET_OFFER,
+                StakeResult.INVALID_STAKE, StakeResult.ACCEPTED}, results);
+        assertEquals(List.of("7=300"), stakeService.getTop20Stakes(1));
+        assertTrue(stakeService.getTop20Stakes(2).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should reject submits after shutdown and keep serving reads")
+    void shouldRejectSubmitsAfterShutdown() {
+        // Given
+        stakeService.submitStake(1, 1, 100);
+
+        // When
+        stakeService.shutdown();
+
+        // Then
+        assertEquals(List.of("1=100"), stakeService.getTop20Stakes(1));
+        BettingException exception = assertThrows(BettingException.class,
+                () -> stakeService.submitStake(2, 1, 200));
+        assertEquals(BettingException.ErrorCode.SERVICE_UNAVAILABLE, exception.getErrorCode());
+    }
+
+    @Test
+    @DisplayName("Should log and skip a record the journal fails on, and keep applying the rest")
+    void shouldSurviveFailingJournal() {
+        // Given - the journal fails on one stake
+        List<Integer> journaled = new ArrayList<>();
+        stakeService.attachJournal(new StakeJournal() {
+            @Override
+            public void append(int customerId, int betOfferId, int stake) {
+                if (stake == 200) {
+                    throw new IllegalStateException("Cannot map a new log segment");
+                }
+                journaled.add(stake);
+            }
+
+            @Override
+            public void offerStatus(int betOfferId, OfferStatus status) {
+            }
+        });
+
+        // When - more submits than the queue holds, so a dead owner would block them
+        stakeService.submitStake(1, 1, 100);
+        stakeService.submitStake(2, 1, 200);
+        for (int customerId = 3; customerId <= 200; customerId++) {
+            stakeService.submitStake(customerId, 1, 300 + customerId);
+        }
+        stakeService.flush();
+
+        // Then - the failed stake still reached the book, and later ones went on being applied
+        assertEquals(199, journaled.size());
+        assertEquals("200=500", stakeService.getTop20Stakes(1).get(0));
+        assertEquals(200, stakeService.getStakeDistribution(1).count());
+    }
+
+    @Test
+    @DisplayName("Should reject submits to a shard whose owner has died instead of waiting forever")
+    void shouldRejectSubmitsToDeadShard() {
+        // Given - an error the owner does not survive
+        ShardedStakeServiceImpl service = new ShardedStakeServiceImpl(1, 4);
+        service.attachJournal(new StakeJournal() {
+            @Override
+            public void append(int customerId, int betOfferId, int stake) {
+                throw new OutOfMemoryError("Simulated");
+            }
+
+            @Override
+            public void offerStatus(int betOfferId, OfferStatus status) {
+            }
+        });
+        service.submitStake(1, 1, 100);
+        service.flush();
+
+        // When / Then
+        BettingException e = assertThrows(BettingException.class, () -> service.submitStake(2, 1, 100));
+        assertEquals(BettingException.ErrorCode.SERVICE_UNAVAILABLE, e.getErrorCode());
+        service.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should reject stakes on offers that are not open")
+    void shouldRejectStakesOnOffersThatAreNotOpen() {
+        // Given
+        stakeService.submitStake(1, 1, 100);
+        stakeService.setOfferStatus(1, OfferStatus.CLOSED);
+
+        // When
+        StakeResult[] results = stakeService.submitStakes(2, new int[]{1, 2}, new int[]{200, 50});
+        stakeService.restoreStake(3, 1, 300);
+        stakeService.flush();
+
+        // Then
+        assertArrayEquals(new StakeResult[]{StakeResult.OFFER_NOT_OPEN, StakeResult.ACCEPTED}, results);
+        assertThrows(BettingException.class, () -> stakeService.submitStake(2, 1, 200));
+        assertThrows(BettingException.class, () -> stakeService.setOfferStatus(1, OfferStatus.SUSPENDED));
+        assertEquals(List.of("3=300", "1=100"), stakeService.getTop20Stakes(1));
+    }
+
+    @Test
+    @DisplayName("Should never apply or journal a submit after the close of its offer")
+    void shouldNotApplySubmitsAfterClose() throws Exception {
+        // Given - a journal recording stakes and status changes in order
+        List<String> records = new ArrayList<>();
+        stakeService.attachJournal(new StakeJournal() {
+            @Override
+            public synchronized void append(int customerId, int betOfferId, int stake) {
+                records.add("stake");
+            }
+
+            @Override
+            public synchronized void offerStatus(int betOfferId, OfferStatus status) {
+                records.add(status.name());
+            }
+        });
+        stakeService.submitStake(1, 1, 1);
+
+        // When - submits keep coming while the offer closes
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<Integer> submitter = executor.submit(() -> {
+            int stake = 2;
+            try {
+                while (true) {
+                    stakeService.submitStake(stake, 1, stake);
+                    stake++;
+                }
+            } catch (BettingException e) {
+                assertEquals(BettingException.ErrorCode.OFFER_CLOSED, e.getErrorCode());
+                return stake;
+            }
+        });
+        Thread.sleep(20);
+        stakeService.setOfferStatus(1, OfferStatus.CLOSED);
+        submitter.get();
+        executor.shutdown();
+        stakeService.flush();
+
+        // Then - the first submit was applied before the close, and nothing after it
+        assertEquals("stake", records.get(0));
+        assertEquals("CLOSED", records.get(records.size() - 1));
+        assertEquals(records.size() - 1, stakeService.getStakeDistribution(1).count());
+    }
+
+    @Test
+    @DisplayName("Should rank customers across offers once their submits are applied")
+    void shouldRankCustomersAcrossOffers() {
+        // Given
+        for (int betOfferId = 1; betOfferId <= 10; betOfferId++) {
+            stakeService.submitStake(1, betOfferId, 100);
+            stakeService.submitStake(2, betOfferId, betOfferId * 20);
+        }
+        stakeService.submitStake(1, 1, 150);
+
+        // When
+        stakeService.flush();
+
+        // Then
+        assertEquals(List.of("2=1100", "1=1050"), stakeService.getCustomerLeaderboard().entries());
+        assertEquals(new StakeDistribution(2, 170, 20, 150, 150, 150), stakeService.getStakeDistribution(1));
+    }
+}
@@ -0,0 +1,103 @@
+package com.betting.core.service;
+
+import com.betting.core.model.Session;
+import com.betting.core.service.impl.SignedSessionServiceImpl;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("SignedSessionService Tests")
+class SignedSessionServiceTest {
+
+    private static final byte[] SECRET = "0123456789abcdef0123456789abcdef".getBytes(StandardCharsets.UTF_8);
+
+    private final AtomicLong now = new AtomicLong(1_700_000_000_000L);
+    private final SignedSessionServiceImpl sessionService =
+            new SignedSessionServiceImpl(SECRET, 60_000, now::get);
+
+    @Test
+    @DisplayName("Should resolve the customer from the key alone")
+    void shouldResolveCustomerFromKey() {
+        // Given
+        Session session = sessionService.createOrGetSession(Integer.MAX_VALUE);
+
+        // Then - 26 base32 characters, accepted by any node sharing the secret
+        assertTrue(session.getSessionKey().matches("[A-Z2-7]{26}"));
+        assertEquals(now.get() + 60_000, session.getExpiryTime());
+        assertEquals(Integer.MAX_VALUE, sessionService.authenticate(session.getSessionKey()));
+        assertTrue(sessionService.validateSession(session.getSessionKey()));
+        assertEquals(Integer.MAX_VALUE, sessionService.getCustomerId(session.getSessionKey()));
+        assertEquals(Integer.MAX_VALUE,
+                new SignedSessionServiceImpl(SECRET, 60_000, now::get).authenticate(session.getSessionKey()));
+    }
+
+    @Test
+    @DisplayName("Should reject tampered, malformed and foreign keys")
+    void shouldRejectTamperedKeys() {
+        String key = sessionService.createOrGetSession(42).getSessionKey();
+
+        // Every single-character change breaks the MAC or the canonical encoding
+        for (int i = 0; i < key.length(); i++) {
+            char replacement = key.charAt(i) == 'A' ? 'B' : 'A';
+            String tampered = key.substring(0, i) + replacement + key.substring(i + 1);
+            assertEquals(SessionService.INVALID_SESSION, sessionService.authenticate(tampered), tampered);
+        }
+        assertEquals(SessionService.INVALID_SESSION, sessionService.authenticate(null));
+        assertEquals(SessionService.INVALID_SESSION, sessionService.authenticate(key.toLowerCase()));
+        assertEquals(SessionService.INVALID_SESSION, sessionService.authenticate(key + "A"));
+        assertEquals(0, sessionService.getCustomerId("invalid-session-key"));
+
+        SignedSessionServiceImpl other = new SignedSessionServiceImpl(
+                "another secret of 32 bytes......".getBytes(StandardCharsets.UTF_8), 60_000, now::get);
+        assertEquals(SessionService.INVALID_SESSION, other.authenticate(key));
+        assertThrows(IllegalArgumentException.class, () -> new SignedSessionServiceImpl(new byte[8]));
+    }
+
+    @Test
+    @DisplayName("Should expire keys and renew them on the next login")
+    void shouldExpireKeys() {
+        // Given
+        String first = sessionService.createOrGetSession(7).getSessionKey();
+
+        // When
+        now.addAndGet(59_000);
+        String second = sessionService.createOrGetSession(7).getSessionKey();
+        now.addAndGet(1_000);
+
+        // Then
+        assertEquals(SessionService.INVALID_SESSION, sessionService.authenticate(first));
+        assertEquals(7, sessionService.authenticate(second));
+        assertNotEquals(first, second);
+    }
+
+    @Test
+    @DisplayName("Should reject revoked keys until they would have expired")
+    void shouldRevokeKeys() {
+        // Given
+        String revoked = sessionService.createOrGetSession(7).getSessionKey();
+        now.addAndGet(1_000);
+        String kept = sessionService.createOrGetSession(7).getSessionKey();
+
+        // When
+        assertTrue(sessionService.invalidateSession(revoked));
+
+        // Then - only the logged-out key is rejected
+        assertEquals(SessionService.INVALID_SESSION, sessionService.authenticate(revoked));
+        assertFalse(sessionService.invalidateSession(revoked));
+        assertEquals(7, sessionService.authenticate(kept));
+        assertEquals(1, sessionService.getRevokedCount());
+
+        // When - enough logouts to prune, after the first key has expired
+        now.addAndGet(60_000);
+        for (int i = 0; i < 1_024; i++) {
+            assertTrue(sessionService.invalidateSession(sessionService.createOrGetSession(i).getSessionKey()));
+        }
+
+        // Then
+        assertEquals(1_024, sessionService.getRevokedCount());
+    }
+}
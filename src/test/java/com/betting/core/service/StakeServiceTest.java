@@ -1,12 +1,28 @@
 package com.betting.core.service;
 
 import com.betting.api.exception.BettingException;
+import com.betting.core.model.Leaderboard;
+import com.betting.core.model.StakeDistribution;
+import com.betting.core.model.OfferSnapshot;
+import com.betting.core.model.OfferStatus;
+import com.betting.core.model.StakeResult;
 import com.betting.core.service.impl.StakeServiceImpl;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -222,5 +238,477 @@ class StakeServiceTest {
         assertFalse(topStakes.contains("1=10"));
         assertFalse(topStakes.contains("5=50"));
     }
-}
 
+    @Test
+    @DisplayName("Should keep each customer exactly once at their max under concurrent submits")
+    void shouldKeepEachCustomerOnceUnderConcurrentSubmits() throws Exception {
+        // Given
+        int betOfferId = 1;
+        int threads = 8;
+        int customers = 10;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        // When - every thread raises the same customers through interleaved stakes
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int offset = t;
+            futures.add(executor.submit(() -> {
+                for (int stake = 1; stake <= 2_000; stake++) {
+                    for (int customerId = 1; customerId <= customers; customerId++) {
+                        stakeService.submitStake(customerId, betOfferId, stake * threads + offset);
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        // Then
+        List<String> topStakes = stakeService.getTop20Stakes(betOfferId);
+        assertEquals(customers, topStakes.size());
+        for (int customerId = 1; customerId <= customers; customerId++) {
+            assertTrue(topStakes.contains(customerId + "=" + (2_000 * threads + threads - 1)));
+        }
+    }
+
+    @Test
+    @DisplayName("Should only bump the leaderboard version when the top 20 changes")
+    void shouldOnlyBumpLeaderboardVersionWhenTopChanges() {
+        // Given
+        int betOfferId = 1;
+        for (int i = 1; i <= 20; i++) {
+            stakeService.submitStake(i, betOfferId, i * 10);
+        }
+        Leaderboard before = stakeService.getLeaderboard(betOfferId);
+
+        // When - below the 20th stake
+        stakeService.submitStake(100, betOfferId, 5);
+
+        // Then
+        assertSame(before, stakeService.getLeaderboard(betOfferId));
+
+        // When - into the top 20
+        stakeService.submitStake(100, betOfferId, 500);
+
+        // Then
+        Leaderboard after = stakeService.getLeaderboard(betOfferId);
+        assertTrue(after.getVersion() > before.getVersion());
+        assertEquals(20, after.size());
+        assertTrue(new String(after.body(), StandardCharsets.UTF_8).startsWith("100=500,20=200,"));
+    }
+
+    @Test
+    @DisplayName("Should only ever expose complete, ordered leaderboards to concurrent readers")
+    void shouldExposeConsistentLeaderboardsToConcurrentReaders() throws Exception {
+        // Given
+        int betOfferId = 1;
+        AtomicBoolean writing = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        // When - writers keep raising 50 customers while a reader checks every snapshot
+        List<Future<?>> writers = new ArrayList<>();
+        for (int t = 0; t < 3; t++) {
+            int offset = t;
+            writers.add(executor.submit(() -> {
+                for (int stake = 1; stake <= 3_000; stake++) {
+                    stakeService.submitStake(1 + (stake * 7 + offset) % 50, betOfferId, stake * 3 + offset);
+                }
+            }));
+        }
+        Future<Integer> reader = executor.submit(() -> {
+            int checked = 0;
+            while (writing.get()) {
+                Leaderboard leaderboard = stakeService.getLeaderboard(betOfferId);
+                Set<Integer> seen = new HashSet<>();
+                for (int i = 0; i < leaderboard.size(); i++) {
+                    assertTrue(seen.add(leaderboard.getCustomerId(i)), "customer listed twice");
+                    if (i > 0) {
+                        assertTrue(leaderboard.getStake(i - 1) >= leaderboard.getStake(i), "stakes out of order");
+                    }
+                }
+                checked++;
+            }
+            return checked;
+        });
+        for (Future<?> writer : writers) {
+            writer.get();
+        }
+        writing.set(false);
+
+        // Then
+        assertTrue(reader.get() > 0);
+        executor.shutdown();
+        assertEquals(20, stakeService.getLeaderboard(betOfferId).size());
+    }
+
+    @Test
+    @DisplayName("Should apply a stake batch grouped by offer and report each item")
+    void shouldApplyStakeBatchGroupedByOffer() {
+        // Given
+        int customerId = 42;
+        stakeService.submitStake(customerId, 2, 500);
+
+        // When
+        StakeResult[] results = stakeService.submitStakes(customerId,
+                new int[]{1, 2, 0, 1, 3, 1},
+                new int[]{100, 300, 100, 250, 1_000_001, 200});
+
+        // Then
+        assertArrayEquals(new StakeResult[]{
+                StakeResult.ACCEPTED, StakeResult.ACCEPTED, StakeResult.INVALID_BET_OFFER,
+                StakeResult.ACCEPTED, StakeResult.INVALID_STAKE, StakeResult.ACCEPTED}, results);
+        assertEquals(List.of("42=250"), stakeService.getTop20Stakes(1));
+        assertEquals(List.of("42=500"), stakeService.getTop20Stakes(2));
+        assertTrue(stakeService.getTop20Stakes(3).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should reject a stake batch for an invalid customer")
+    void shouldRejectStakeBatchForInvalidCustomer() {
+        assertThrows(BettingException.class,
+                () -> stakeService.submitStakes(0, new int[]{1}, new int[]{100}));
+    }
+
+    @Test
+    @DisplayName("Should journal only stakes that raise a customer's max")
+    void shouldJournalOnlyRaises() {
+        // Given
+        List<String> journaled = new ArrayList<>();
+        stakeService.attachJournal((customerId, betOfferId, stake) ->
+                journaled.add(customerId + "@" + betOfferId + "=" + stake));
+
+        // When
+        stakeService.submitStake(1, 10, 100);
+        stakeService.submitStake(1, 10, 50);
+        stakeService.submitStake(1, 10, 100);
+        stakeService.submitStake(1, 10, 150);
+        stakeService.submitStakes(2, new int[]{10, 10, 11}, new int[]{70, 80, 5});
+
+        // Then
+        assertEquals(List.of("1@10=100", "1@10=150", "2@10=80", "2@11=5"), journaled);
+    }
+
+    @Test
+    @DisplayName("Should reject stakes on suspended and closed offers and never reopen closed ones")
+    void shouldRejectStakesOnOffersThatAreNotOpen() {
+        // Given
+        stakeService.submitStake(1, 10, 100);
+
+        // When
+        stakeService.setOfferStatus(10, OfferStatus.SUSPENDED);
+
+        // Then
+        BettingException suspended = assertThrows(BettingException.class,
+                () -> stakeService.submitStake(2, 10, 200));
+        assertEquals(BettingException.ErrorCode.OFFER_SUSPENDED, suspended.getErrorCode());
+        assertArrayEquals(new StakeResult[]{StakeResult.OFFER_NOT_OPEN, StakeResult.ACCEPTED},
+                stakeService.submitStakes(2, new int[]{10, 11}, new int[]{200, 50}));
+
+        stakeService.setOfferStatus(10, OfferStatus.OPEN);
+        stakeService.submitStake(2, 10, 200);
+        stakeService.setOfferStatus(10, OfferStatus.CLOSED);
+
+        assertThrows(BettingException.class, () -> stakeService.submitStake(3, 10, 300));
+        assertThrows(BettingException.class, () -> stakeService.setOfferStatus(10, OfferStatus.OPEN));
+        assertEquals(OfferStatus.CLOSED, stakeService.getOfferStatus(10));
+        assertEquals(OfferStatus.OPEN, stakeService.getOfferStatus(12));
+        assertEquals(List.of("2=200", "1=100"), stakeService.getTop20Stakes(10));
+    }
+
+    @Test
+    @DisplayName("Should compact idle offers, page archived ones back in and keep their leaderboards")
+    void shouldCompactAndArchiveIdleOffers() {
+        // Given
+        Map<Integer, OfferSnapshot> archived = new HashMap<>();
+        OfferArchive archive = new OfferArchive() {
+            @Override
+            public void store(OfferSnapshot snapshot) {
+                archived.put(snapshot.betOfferId(), snapshot);
+            }
+
+            @Override
+            public OfferSnapshot load(int betOfferId) {
+                return archived.get(betOfferId);
+            }
+
+            @Override
+            public void delete(int betOfferId) {
+                archived.remove(betOfferId);
+            }
+        };
+        StakeServiceImpl service = new StakeServiceImpl();
+        service.startCompaction(3_600_000, 3_600_000, archive);
+        for (int customerId = 1; customerId <= 30; customerId++) {
+            service.submitStake(customerId, 1, customerId * 10);
+            service.submitStake(customerId, 2, customerId);
+        }
+        service.setOfferStatus(2, OfferStatus.CLOSED);
+        List<String> top = service.getTop20Stakes(1);
+        StakeDistribution distribution = service.getStakeDistribution(1);
+
+        // When - the first pass only notices the submits
+        assertEquals(0, service.compactOffers(0, 0));
+        assertEquals(2, service.compactOffers(0, 0));
+
+        // Then
+        assertEquals(Set.of(1, 2), archived.keySet());
+        assertEquals(OfferStatus.CLOSED, archived.get(2).status());
+        assertEquals(top, service.getTop20Stakes(1));
+        assertEquals(distribution, service.getStakeDistribution(1));
+
+        service.submitStake(31, 1, 295);
+        assertEquals(Set.of(2), archived.keySet());
+        assertEquals("30=300", service.getTop20Stakes(1).get(0));
+        assertEquals("31=295", service.getTop20Stakes(1).get(1));
+        assertEquals(new StakeDistribution(31, 4_650 + 295, 163, 287, 300, 300), service.getStakeDistribution(1));
+
+        Map<Integer, Integer> sizes = new HashMap<>();
+        service.exportOffers(snapshot -> sizes.put(snapshot.betOfferId(), snapshot.size()));
+        assertEquals(Map.of(1, 31, 2, 30), sizes);
+        service.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should keep every raise made while offers are being compacted")
+    void shouldKeepRaisesMadeDuringCompaction() throws Exception {
+        // Given
+        StakeServiceImpl service = new StakeServiceImpl();
+        int threads = 4;
+        int perThread = 2_000;
+        AtomicBoolean done = new AtomicBoolean();
+        ExecutorService executor = Executors.newFixedThreadPool(threads + 1);
+
+        // When
+        Future<?> compactor = executor.submit(() -> {
+            while (!done.get()) {
+                service.compactOffers(0, 0);
+            }
+        });
+        List<Future<?>> submitters = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int base = t * perThread;
+            submitters.add(executor.submit(() -> {
+                for (int i = 1; i <= perThread; i++) {
+                    service.submitStake(base + i, 7, base + i);
+                }
+            }));
+        }
+        for (Future<?> submitter : submitters) {
+            submitter.get();
+        }
+        done.set(true);
+        compactor.get();
+        executor.shutdown();
+
+        // Then
+        OfferSnapshot[] exported = new OfferSnapshot[1];
+        service.exportOffers(snapshot -> exported[0] = snapshot);
+        assertEquals(threads * perThread, exported[0].size());
+        assertEquals(threads * perThread + "=" + threads * perThread, service.getTop20Stakes(7).get(0));
+    }
+
+    @Test
+    @DisplayName("Should page through ranks past the top 20 and report entry thresholds")
+    void shouldPageThroughRanksAndReportThresholds() {
+        // Given - 100 customers, stakes 10..1000, customers 50 and 51 tied
+        for (int customerId = 1; customerId <= 100; customerId++) {
+            stakeService.submitStake(customerId, 1, customerId * 10);
+        }
+        stakeService.submitStake(50, 1, 510);
+
+        // When
+        Leaderboard page = stakeService.getStakes(1, 40, 5);
+
+        // Then
+        assertEquals("60=600,59=590,58=580,57=570,56=560", new String(page.body(), StandardCharsets.UTF_8));
+        assertEquals(List.of("51=510", "50=510", "49=490"), stakeService.getStakes(1, 49, 3).entries());
+        assertEquals(List.of("100=1000", "99=990"), stakeService.getStakes(1, 0, 2).entries());
+        assertEquals(List.of("1=10"), stakeService.getStakes(1, 99, 10).entries());
+        assertEquals(0, stakeService.getStakes(1, 100, 10).size());
+        assertEquals(stakeService.getLeaderboard(1).getVersion(), page.getVersion());
+
+        assertEquals(911, stakeService.getEntryThreshold(1, 10));
+        assertEquals(511, stakeService.getEntryThreshold(1, 50));
+        assertEquals(11, stakeService.getEntryThreshold(1, 100));
+        assertEquals(0, stakeService.getEntryThreshold(1, 101));
+        assertEquals(0, stakeService.getEntryThreshold(2, 5));
+        assertThrows(BettingException.class, () -> stakeService.getStakes(1, -1, 10));
+        assertThrows(BettingException.class, () -> stakeService.getStakes(1, 0, 0));
+        assertThrows(BettingException.class, () -> stakeService.getEntryThreshold(1, 0));
+    }
+
+    @Test
+    @DisplayName("Should rank customers outside the top 20, sharing ranks on equal stakes")
+    void shouldRankCustomersOutsideTopEntries() {
+        // Given - 100 customers, stakes 10..1000, customers 50 and 51 tied at 510
+        for (int customerId = 1; customerId <= 100; customerId++) {
+            stakeService.submitStake(customerId, 1, customerId * 10);
+        }
+        stakeService.submitStake(50, 1, 510);
+
+        // Then
+        assertEquals(1, stakeService.getRank(1, 100));
+        assertEquals(20, stakeService.getRank(1, 81));
+        assertEquals(50, stakeService.getRank(1, 51));
+        assertEquals(50, stakeService.getRank(1, 50));
+        assertEquals(52, stakeService.getRank(1, 49));
+        assertEquals(100, stakeService.getRank(1, 1));
+
+        // When - a customer climbs, everyone they pass drops one place
+        stakeService.submitStake(1, 1, 995);
+        assertEquals(2, stakeService.getRank(1, 1));
+        assertEquals(3, stakeService.getRank(1, 99));
+        assertEquals(100, stakeService.getRank(1, 2));
+
+        BettingException missing = assertThrows(BettingException.class, () -> stakeService.getRank(1, 101));
+        assertEquals(BettingException.ErrorCode.CUSTOMER_NOT_FOUND, missing.getErrorCode());
+        assertThrows(BettingException.class, () -> stakeService.getRank(2, 1));
+        assertThrows(BettingException.class, () -> stakeService.getRank(1, 0));
+    }
+
+    @Test
+    @DisplayName("Should rank customers of restored and compacted offers")
+    void shouldRankCustomersOfRestoredAndCompactedOffers() {
+        // Given
+        for (int customerId = 1; customerId <= 50; customerId++) {
+            stakeService.submitStake(customerId, 1, 1_000 - customerId);
+        }
+        List<OfferSnapshot> snapshots = new ArrayList<>();
+        stakeService.exportOffers(snapshots::add);
+
+        // When
+        StakeServiceImpl restored = new StakeServiceImpl();
+        restored.importOffer(snapshots.get(0));
+
+        // Then
+        assertEquals(40, restored.getRank(1, 40));
+        assertEquals(951, restored.getEntryThreshold(1, 50));
+        restored.submitStake(50, 1, 2_000);
+        assertEquals(1, restored.getRank(1, 50));
+        assertEquals(41, restored.getRank(1, 40));
+
+        restored.startCompaction(3_600_000, 3_600_000, null);
+        restored.compactOffers(0, 0);
+        assertEquals(1, restored.compactOffers(0, 0));
+        assertEquals(41, restored.getRank(1, 40));
+        restored.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should rank customers across offers by the sum of their max stakes")
+    void shouldRankCustomersAcrossOffers() {
+        // Given
+        stakeService.submitStake(1, 1, 100);
+        stakeService.submitStake(1, 2, 300);
+        stakeService.submitStake(2, 1, 350);
+        stakeService.submitStake(3, 3, 50);
+
+        // When - a lower stake changes nothing, a raise adds only its delta
+        stakeService.submitStake(1, 2, 200);
+        stakeService.submitStake(2, 1, 390);
+        stakeService.submitStakes(3, new int[]{1, 2, 4}, new int[]{10, 20, 400});
+
+        // Then
+        assertEquals(List.of("3=480", "1=400", "2=390"), stakeService.getCustomerLeaderboard().entries());
+
+        List<OfferSnapshot> snapshots = new ArrayList<>();
+        stakeService.exportOffers(snapshots::add);
+        StakeServiceImpl restored = new StakeServiceImpl();
+        snapshots.forEach(restored::importOffer);
+        snapshots.forEach(restored::importOffer);
+        assertEquals(List.of("3=480", "1=400", "2=390"), restored.getCustomerLeaderboard().entries());
+    }
+
+    @Test
+    @DisplayName("Should keep the distribution of current max stakes through raises and restores")
+    void shouldTrackStakeDistribution() {
+        // Given - 100 customers staking 1 to 100, then customer 1 raising to the top
+        assertEquals(StakeDistribution.EMPTY, stakeService.getStakeDistribution(7));
+        for (int customerId = 1; customerId <= 100; customerId++) {
+            stakeService.submitStake(customerId, 7, customerId);
+        }
+        stakeService.submitStake(1, 7, 1_000);
+        stakeService.submitStake(1, 7, 500);
+
+        // Then - stakes below 64 are exact, higher ones rounded up within 1/32
+        StakeDistribution distribution = stakeService.getStakeDistribution(7);
+        assertEquals(new StakeDistribution(100, 5_049 + 1_000, 51, 91, 101, 1_000), distribution);
+        assertEquals("count=100,sum=6049,p50=51,p90=91,p99=101,max=1000", distribution.format());
+
+        // When - restored into an empty engine, and merged into one that has stakes
+        List<OfferSnapshot> snapshots = new ArrayList<>();
+        stakeService.exportOffers(snapshots::add);
+        StakeServiceImpl restored = new StakeServiceImpl();
+        snapshots.forEach(restored::importOffer);
+        StakeServiceImpl merged = new StakeServiceImpl();
+        merged.submitStake(2, 7, 2_000);
+        snapshots.forEach(merged::importOffer);
+
+        // Then
+        assertEquals(distribution, restored.getStakeDistribution(7));
+        assertEquals(new StakeDistribution(100, 6_049 - 2 + 2_000, 52, 93, 1_007, 2_000),
+                merged.getStakeDistribution(7));
+    }
+
+    @Test
+    @DisplayName("Should rank recent stakes, not only raises, on the windowed leaderboard")
+    void shouldRankRecentStakes() {
+        // Given - the lower stakes are not raises, but they are recent
+        stakeService.restoreStake(1, 7, 900);
+        stakeService.submitStake(2, 7, 300);
+        stakeService.submitStake(2, 7, 200);
+        stakeService.submitStakes(3, new int[]{7, 7, 8}, new int[]{100, 250, 50});
+
+        // When
+        Leaderboard recent = stakeService.getRecentLeaderboard(7, 60_000);
+
+        // Then - replayed stakes are not recent
+        assertEquals(List.of("2=300", "3=250"), recent.entries());
+        assertEquals(List.of("1=900", "2=300", "3=250"), stakeService.getLeaderboard(7).entries());
+        assertThrows(BettingException.class, () -> stakeService.getRecentLeaderboard(7, 0));
+        assertThrows(BettingException.class, () -> stakeService.getRecentLeaderboard(7, 3_600_000));
+    }
+
+    @Test
+    @DisplayName("Should keep exact customer totals under concurrent submits")
+    void shouldKeepExactCustomerTotalsUnderConcurrentSubmits() throws Exception {
+        // Given - 8 threads raise the same 30 customers over 8 offers in random order
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int seed = t;
+            futures.add(executor.submit(() -> {
+                SplittableRandom random = new SplittableRandom(seed);
+                for (int i = 0; i < 20_000; i++) {
+                    int customerId = 1 + random.nextInt(30);
+                    int betOfferId = 1 + random.nextInt(8);
+                    stakeService.submitStake(customerId, betOfferId, random.nextInt(customerId * 100));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        // Then - every total is the sum of the customer's final max stakes
+        Map<Integer, Long> expected = new HashMap<>();
+        for (int betOfferId = 1; betOfferId <= 8; betOfferId++) {
+            Leaderboard top = stakeService.getStakes(betOfferId, 0, 30);
+            for (int i = 0; i < top.size(); i++) {
+                expected.merge(top.getCustomerId(i), (long) top.getStake(i), Long::sum);
+            }
+        }
+        Leaderboard customers = stakeService.getCustomerLeaderboard();
+        assertEquals(20, customers.size());
+        for (int i = 0; i < customers.size(); i++) {
+            assertEquals(expected.get(customers.getCustomerId(i)), (long) customers.getStake(i));
+            if (i > 0) {
+                assertTrue(customers.getStake(i - 1) >= customers.getStake(i));
+            }
+        }
+    }
+}
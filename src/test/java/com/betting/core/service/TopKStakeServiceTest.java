@@ -0,0 +1,163 @@
+package com.betting.core.service;
+
+import com.betting.api.exception.BettingException;
+import com.betting.core.service.impl.TopKStakeServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the bounded top-K stake engine
+ */
+@DisplayName("TopKStakeService Tests")
+class TopKStakeServiceTest {
+
+    private StakeService stakeService;
+
+    @BeforeEach
+    void setUp() {
+        stakeService = new TopKStakeServiceImpl();
+    }
+
+    @Test
+    @DisplayName("Should throw exception for invalid input")
+    void shouldThrowExceptionForInvalidInput() {
+        assertThrows(BettingException.class, () -> stakeService.submitStake(0, 1, 100));
+        assertThrows(BettingException.class, () -> stakeService.submitStake(1, 0, 100));
+        assertThrows(BettingException.class, () -> stakeService.submitStake(1, 1, -1));
+        assertThrows(BettingException.class, () -> stakeService.submitStake(1, 1, 1_000_001));
+        assertThrows(BettingException.class, () -> stakeService.getTop20Stakes(0));
+    }
+
+    @Test
+    @DisplayName("Should return empty list for non-existent bet offer")
+    void shouldReturnEmptyListForNonExistentBetOffer() {
+        assertTrue(stakeService.getTop20Stakes(999).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should return stakes in descending order")
+    void shouldReturnStakesInDescendingOrder() {
+        // Given
+        int betOfferId = 1;
+
+        // When
+        stakeService.submitStake(1, betOfferId, 100);
+        stakeService.submitStake(2, betOfferId, 300);
+        stakeService.submitStake(3, betOfferId, 200);
+
+        // Then
+        assertEquals(List.of("2=300", "3=200", "1=100"), stakeService.getTop20Stakes(betOfferId));
+    }
+
+    @Test
+    @DisplayName("Should keep maximum stake per customer")
+    void shouldKeepMaximumStakePerCustomer() {
+        // Given
+        int betOfferId = 1;
+
+        // When
+        stakeService.submitStake(456, betOfferId, 200);
+        stakeService.submitStake(456, betOfferId, 100);
+        stakeService.submitStake(456, betOfferId, 250);
+
+        // Then
+        assertEquals(List.of("456=250"), stakeService.getTop20Stakes(betOfferId));
+    }
+
+    @Test
+    @DisplayName("Should evict the lowest entry once the board is full")
+    void shouldEvictLowestEntryOnceBoardIsFull() {
+        // Given
+        int betOfferId = 1;
+        for (int i = 1; i <= 20; i++) {
+            stakeService.submitStake(i, betOfferId, i * 10);
+        }
+
+        // When - below threshold, then above threshold
+        stakeService.submitStake(100, betOfferId, 5);
+        stakeService.submitStake(101, betOfferId, 15);
+
+        // Then
+        List<String> topStakes = stakeService.getTop20Stakes(betOfferId);
+        assertEquals(20, topStakes.size());
+        assertEquals("20=200", topStakes.get(0));
+        assertEquals("101=15", topStakes.get(19));
+        assertFalse(topStakes.contains("1=10"));
+        assertFalse(topStakes.contains("100=5"));
+    }
+
+    @Test
+    @DisplayName("Should let an evicted customer return with a higher stake")
+    void shouldLetEvictedCustomerReturnWithHigherStake() {
+        // Given
+        int betOfferId = 1;
+        for (int i = 1; i <= 21; i++) {
+            stakeService.submitStake(i, betOfferId, i * 10);
+        }
+        assertFalse(stakeService.getTop20Stakes(betOfferId).contains("1=10"));
+
+        // When
+        stakeService.submitStake(1, betOfferId, 500);
+
+        // Then
+        List<String> topStakes = stakeService.getTop20Stakes(betOfferId);
+        assertEquals("1=500", topStakes.get(0));
+        assertEquals(20, topStakes.size());
+    }
+
+    @Test
+    @DisplayName("Should rank equal stakes by arrival order")
+    void shouldRankEqualStakesByArrivalOrder() {
+        // Given
+        int betOfferId = 1;
+
+        // When
+        stakeService.submitStake(7, betOfferId, 100);
+        stakeService.submitStake(3, betOfferId, 100);
+        stakeService.submitStake(5, betOfferId, 100);
+
+        // Then
+        assertEquals(List.of("7=100", "3=100", "5=100"), stakeService.getTop20Stakes(betOfferId));
+    }
+
+    @Test
+    @DisplayName("Should page and report thresholds within the kept top entries only")
+    void shouldPageWithinKeptTopEntries() {
+        // Given
+        for (int customerId = 1; customerId <= 30; customerId++) {
+            stakeService.submitStake(customerId, 1, customerId * 10);
+        }
+        stakeService.submitStake(1, 2, 100);
+
+        // Then
+        assertEquals(List.of("25=250", "24=240"), stakeService.getStakes(1, 5, 2).entries());
+        assertEquals(List.of("11=110"), stakeService.getStakes(1, 19, 5).entries());
+        assertEquals(0, stakeService.getStakes(1, 20, 5).size());
+        assertEquals(111, stakeService.getEntryThreshold(1, 20));
+        assertEquals(0, stakeService.getEntryThreshold(2, 50));
+        assertThrows(BettingException.class, () -> stakeService.getEntryThreshold(1, 21));
+    }
+
+    @Test
+    @DisplayName("Should rank customers on the kept top entries only")
+    void shouldRankCustomersOnKeptTopEntries() {
+        // Given
+        for (int customerId = 1; customerId <= 30; customerId++) {
+            stakeService.submitStake(customerId, 1, customerId * 10);
+        }
+        stakeService.submitStake(29, 1, 300);
+
+        // Then
+        assertEquals(1, stakeService.getRank(1, 30));
+        assertEquals(1, stakeService.getRank(1, 29));
+        assertEquals(3, stakeService.getRank(1, 28));
+        assertEquals(20, stakeService.getRank(1, 11));
+        BettingException outside = assertThrows(BettingException.class, () -> stakeService.getRank(1, 10));
+        assertEquals(BettingException.ErrorCode.CUSTOMER_NOT_FOUND, outside.getErrorCode());
+    }
+}
@@ -0,0 +1,170 @@
+package com.betting.core.service.impl;
+
+import com.betting.core.model.Leaderboard;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("AdaptiveLeaderboard Tests")
+class AdaptiveLeaderboardTest {
+
+    @Test
+    @DisplayName("Should split when contended and merge stripes on read")
+    void shouldSplitAndMergeStripesOnRead() {
+        // Given - every window counts as contended, and a split never cools down
+        AdaptiveLeaderboard leaderboard = new AdaptiveLeaderboard(3, 0, 0, 0);
+        leaderboard.offer(1, 100);
+        assertTrue(leaderboard.isSplit());
+        long splitVersion = leaderboard.get().getVersion();
+
+        // When
+        leaderboard.offer(2, 300);
+        leaderboard.offer(3, 200);
+        leaderboard.offer(4, 50);
+        leaderboard.offer(1, 400);
+
+        // Then
+        Leaderboard merged = leaderboard.get();
+        assertEquals(List.of("1=400", "2=300", "3=200"), merged.entries());
+        assertTrue(merged.getVersion() > splitVersion);
+        assertSame(merged, leaderboard.get());
+        assertFalse(leaderboard.admits(200));
+        assertTrue(leaderboard.admits(201));
+    }
+
+    @Test
+    @DisplayName("Should merge back into a single leaderboard when traffic cools")
+    void shouldMergeBackWhenTrafficCools() {
+        // Given - every window counts as contended, and as cool once split
+        AdaptiveLeaderboard leaderboard = new AdaptiveLeaderboard(3, 0, 0, Long.MAX_VALUE);
+        leaderboard.offer(1, 100);
+        assertTrue(leaderboard.isSplit());
+        long splitVersion = leaderboard.get().getVersion();
+
+        // When
+        leaderboard.offer(2, 200);
+
+        // Then
+        assertFalse(leaderboard.isSplit());
+        assertEquals(List.of("2=200", "1=100"), leaderboard.get().entries());
+        assertTrue(leaderboard.get().getVersion() > splitVersion);
+    }
+
+    @Test
+    @DisplayName("Should keep a correct top K while the layout keeps switching")
+    void shouldKeepCorrectTopKAcrossLayoutSwitches() throws Exception {
+        // Given - a layout switch on every offer, the worst case for racing writers
+        int capacity = 20;
+        int threads = 8;
+        int customers = 2_000;
+        AdaptiveLeaderboard leaderboard = new AdaptiveLeaderboard(capacity, 0, 0, Long.MAX_VALUE);
+        ExecutorService executor = Executors.newFixedThreadPool(threads + 1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+
+        // When - every thread raises every customer to customer * 10; a reader checks versions
+        try {
+            Future<?> reader = executor.submit(() -> {
+                long lastVersion = -1;
+                while (writing.get()) {
+                    Leaderboard current = leaderboard.get();
+                    assertTrue(current.getVersion() >= lastVersion);
+                    lastVersion = current.getVersion();
+                    Set<Integer> seen = new HashSet<>();
+                    for (int i = 0; i < current.size(); i++) {
+                        assertTrue(seen.add(current.getCustomerId(i)));
+                    }
+                }
+            });
+            List<Future<?>> writers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int offset = t;
+                writers.add(executor.submit(() -> {
+                    for (int i = 0; i < customers; i++) {
+                        int customerId = 1 + (i + offset * 97) % customers;
+                        leaderboard.offer(customerId, customerId * 5);
+                        leaderboard.offer(customerId, customerId * 10);
+                    }
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+            writing.set(false);
+            reader.get();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Then
+        Leaderboard result = leaderboard.get();
+        assertEquals(capacity, result.size());
+        for (int i = 0; i < capacity; i++) {
+            assertEquals(customers - i, result.getCustomerId(i));
+            assertEquals((customers - i) * 10, result.getStake(i));
+        }
+    }
+
+    @Test
+    @DisplayName("Should not lose a stake published while the layout splits or joins")
+    void shouldNotLoseStakesDuringLayoutSwitches() throws Exception {
+        // Given - a split or a join on every offer, a board large enough that seeding a new
+        // layout takes a while, and each stake offered exactly once, so a stake dropped by a
+        // switch is not restored by another writer
+        int capacity = 200;
+        int threads = 8;
+        int customers = 1_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        try {
+            for (int round = 0; round < 10; round++) {
+                AdaptiveLeaderboard leaderboard = new AdaptiveLeaderboard(capacity, 0, 0, Long.MAX_VALUE);
+                // Distinct stakes in random order, so top stakes arrive throughout the run
+                List<Integer> stakes = new ArrayList<>();
+                for (int i = 1; i <= customers; i++) {
+                    stakes.add(i * 10);
+                }
+                Collections.shuffle(stakes, new Random(round));
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<?>> writers = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    int offset = t;
+                    writers.add(executor.submit(() -> {
+                        start.await();
+                        for (int customerId = 1 + offset; customerId <= customers; customerId += threads) {
+                            leaderboard.offer(customerId, stakes.get(customerId - 1));
+                        }
+                        return null;
+                    }));
+                }
+                start.countDown();
+                for (Future<?> writer : writers) {
+                    writer.get(30, TimeUnit.SECONDS);
+                }
+
+                // Then - the top K is exactly the K highest stakes offered
+                Leaderboard result = leaderboard.get();
+                assertEquals(capacity, result.size(), "round " + round);
+                for (int i = 0; i < capacity; i++) {
+                    assertEquals((customers - i) * 10, result.getStake(i), "round " + round + ", rank " + i);
+                    assertEquals(customers - i, stakes.get(result.getCustomerId(i) - 1) / 10);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
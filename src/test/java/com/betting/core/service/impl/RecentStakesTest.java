@@ -0,0 +1,117 @@
+package com.betting.core.service.impl;
+
+import com.betting.api.exception.BettingException;
+import com.betting.core.model.Leaderboard;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("RecentStakes Tests")
+class RecentStakesTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+
+    @Test
+    @DisplayName("Should rank each customer's highest stake within the window only")
+    void shouldRankStakesWithinWindow() {
+        // Given - 1-second buckets, a ring of 5
+        RecentStakes recent = new RecentStakes(1_000, 5, 3, now::get);
+        recent.record(7, 1, 500);
+        now.addAndGet(1_000);
+        recent.record(7, 2, 300);
+        recent.record(7, 1, 100);
+        recent.record(8, 3, 900);
+        now.addAndGet(1_000);
+        recent.record(7, 3, 300);
+
+        // Then - equal stakes by customer ID
+        assertEquals(List.of("1=500", "2=300", "3=300"), recent.leaderboard(7, 3_000).entries());
+        assertEquals(List.of("2=300", "3=300", "1=100"), recent.leaderboard(7, 2_000).entries());
+        assertEquals(List.of("3=300"), recent.leaderboard(7, 1).entries());
+        assertEquals(List.of("3=900"), recent.leaderboard(8, 5_000).entries());
+
+        // When - the stakes age out of the ring
+        now.addAndGet(5_000);
+
+        // Then
+        assertEquals(0, recent.leaderboard(7, 5_000).size());
+        assertSame(Leaderboard.EMPTY, recent.leaderboard(9, 5_000));
+    }
+
+    @Test
+    @DisplayName("Should match a brute-force window over random stakes")
+    void shouldMatchBruteForce() {
+        RecentStakes recent = new RecentStakes(100, 10, 5, now::get);
+        SplittableRandom random = new SplittableRandom(3);
+        List<long[]> submits = new ArrayList<>();
+
+        for (int i = 0; i < 5_000; i++) {
+            now.addAndGet(random.nextInt(3));
+            int customerId = 1 + random.nextInt(40);
+            // Distinct per customer, so the top entries have no ties to break
+            int stake = (1 + random.nextInt(1_000)) * 64 + customerId;
+            recent.record(7, customerId, stake);
+            submits.add(new long[]{now.get() / 100, customerId, stake});
+
+            if (i % 97 == 0) {
+                long windowMillis = 1 + random.nextInt(1_000);
+                assertEquals(bruteForce(submits, now.get() / 100, (windowMillis + 99) / 100, 5),
+                        recent.leaderboard(7, windowMillis).entries());
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Should drop rings of offers idle for a whole lap")
+    void shouldDropIdleRings() {
+        // Given
+        RecentStakes recent = new RecentStakes(1_000, 5, 3, now::get);
+        recent.record(7, 1, 500);
+
+        // When - only another offer gets stakes for two laps
+        for (int i = 0; i < 10; i++) {
+            now.addAndGet(1_000);
+            recent.record(8, 2, 100 + i);
+        }
+        assertEquals(1, recent.offerCount());
+        now.addAndGet(1_000);
+        recent.record(7, 1, 200);
+
+        // Then - a new ring for offer 7 holds nothing from before
+        assertEquals(List.of("1=200"), recent.leaderboard(7, 5_000).entries());
+        assertEquals(List.of("2=109"), recent.leaderboard(8, 5_000).entries());
+    }
+
+    @Test
+    @DisplayName("Should reject windows that are not positive or longer than the ring")
+    void shouldRejectInvalidWindows() {
+        RecentStakes recent = new RecentStakes(1_000, 5, 3, now::get);
+
+        assertThrows(BettingException.class, () -> recent.leaderboard(7, 0));
+        assertThrows(BettingException.class, () -> recent.leaderboard(7, 5_001));
+        assertEquals(0, recent.leaderboard(7, 5_000).size());
+    }
+
+    private static List<String> bruteForce(List<long[]> submits, long interval, long buckets, int limit) {
+        Map<Integer, Integer> best = new HashMap<>();
+        for (long[] submit : submits) {
+            if (submit[0] > interval - buckets) {
+                best.merge((int) submit[1], (int) submit[2], Math::max);
+            }
+        }
+        return best.entrySet().stream()
+                .sorted(Map.Entry.<Integer, Integer>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(limit)
+                .map(entry -> entry.getKey() + "=" + entry.getValue())
+                .toList();
+    }
+}
@@ -0,0 +1,93 @@
+package com.betting.core.service.impl;
+
+import com.betting.core.model.Session;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("SessionExpiryWheel Tests")
+class SessionExpiryWheelTest {
+
+    private static final long NOW = 1_700_000_000_000L;
+
+    @Test
+    @DisplayName("Should expire sessions once their second has passed")
+    void shouldExpireByExpirySecond() {
+        // Given
+        SessionExpiryWheel wheel = new SessionExpiryWheel(NOW);
+        Session early = session(1, NOW + 1_500);
+        Session late = session(2, NOW + 600_000);
+        wheel.add(early);
+        wheel.add(late);
+        List<Session> expired = new ArrayList<>();
+
+        // Then - not within the expiry second itself
+        assertEquals(0, wheel.expire(NOW + 1_600, expired::add));
+        assertEquals(1, wheel.expire(NOW + 3_000, expired::add));
+        assertEquals(List.of(early), expired);
+
+        // When - the ticker was paused for longer than the ring
+        assertEquals(1, wheel.expire(NOW + 2_000_000, expired::add));
+
+        // Then
+        assertEquals(List.of(early, late), expired);
+        assertEquals(0, wheel.expire(NOW + 4_000_000, expired::add));
+    }
+
+    @Test
+    @DisplayName("Should move renewed sessions to their new expiry second")
+    void shouldRefileRenewedSessions() {
+        // Given
+        SessionExpiryWheel wheel = new SessionExpiryWheel(NOW);
+        Session renewed = session(1, NOW + 10_000);
+        Session nextLap = session(2, NOW + 10_000);
+        wheel.add(renewed);
+        wheel.add(nextLap);
+
+        // When - one moves to a later second, the other to the same slot a lap later
+        renewed.renew(NOW + 70_000);
+        nextLap.renew(NOW + 10_000 + SessionExpiryWheel.SLOTS * 1000L);
+        List<Session> expired = new ArrayList<>();
+
+        // Then
+        assertEquals(0, wheel.expire(NOW + 20_000, expired::add));
+        assertEquals(1, wheel.expire(NOW + 80_000, expired::add));
+        assertEquals(List.of(renewed), expired);
+        assertEquals(1, wheel.expire(NOW + 20_000 + SessionExpiryWheel.SLOTS * 1000L, expired::add));
+        assertEquals(List.of(renewed, nextLap), expired);
+    }
+
+    @Test
+    @DisplayName("Should only visit sessions expiring in the elapsed seconds")
+    void shouldIgnoreLiveSessions() {
+        // Given - many live sessions and a few about to expire
+        SessionExpiryWheel wheel = new SessionExpiryWheel(NOW);
+        List<Session> live = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            Session session = session(i, NOW + 300_000 + i % 1_000);
+            live.add(session);
+            wheel.add(session);
+        }
+        for (int i = 0; i < 10; i++) {
+            wheel.add(session(-i, NOW + 2_000));
+        }
+        List<Session> expired = new ArrayList<>();
+
+        // When
+        assertEquals(10, wheel.expire(NOW + 5_000, expired::add));
+
+        // Then - the live sessions expire with their second
+        assertTrue(expired.stream().allMatch(session -> session.getCustomerId() <= 0));
+        assertEquals(100_000, wheel.expire(NOW + 302_000, expired::add));
+        assertTrue(new HashSet<>(expired).containsAll(live));
+    }
+
+    private static Session session(int customerId, long expiryTime) {
+        return new Session(customerId, "KEY" + customerId, expiryTime);
+    }
+}
@@ -0,0 +1,106 @@
+package com.betting.core.service.impl;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("StakeBucket Tests")
+class StakeBucketTest {
+
+    @Test
+    @DisplayName("Should keep customers in arrival order across chunks")
+    void shouldKeepArrivalOrder() {
+        // Given
+        StakeBucket bucket = new StakeBucket();
+
+        // When - enough customers to span several chunks, then a few leave
+        for (int customerId = 1; customerId <= 100; customerId++) {
+            assertTrue(bucket.add(customerId));
+        }
+        assertFalse(bucket.remove(1));
+        assertFalse(bucket.remove(50));
+        assertFalse(bucket.remove(999));
+
+        // Then
+        List<Integer> customers = customers(bucket);
+        assertEquals(98, bucket.size());
+        assertEquals(98, customers.size());
+        assertEquals(2, customers.get(0));
+        assertEquals(100, customers.get(97));
+        for (int i = 1; i < customers.size(); i++) {
+            assertTrue(customers.get(i - 1) < customers.get(i));
+        }
+    }
+
+    @Test
+    @DisplayName("Should retire an emptied bucket and refuse new customers")
+    void shouldRetireEmptiedBucket() {
+        // Given
+        StakeBucket bucket = new StakeBucket();
+        bucket.add(1);
+        bucket.add(2);
+
+        // When
+        boolean retiredFirst = bucket.remove(1);
+        boolean retiredLast = bucket.remove(2);
+
+        // Then
+        assertFalse(retiredFirst);
+        assertTrue(retiredLast);
+        assertEquals(0, bucket.size());
+        assertFalse(bucket.add(3));
+        assertTrue(customers(bucket).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should keep every customer under concurrent adds")
+    void shouldKeepEveryCustomerUnderConcurrentAdds() throws Exception {
+        // Given
+        StakeBucket bucket = new StakeBucket();
+        int threads = 8;
+        int perThread = 5_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        // When
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int base = t * perThread;
+                futures.add(executor.submit(() -> {
+                    for (int i = 1; i <= perThread; i++) {
+                        bucket.add(base + i);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Then
+        boolean[] seen = new boolean[threads * perThread + 1];
+        bucket.forEach(customerId -> {
+            assertFalse(seen[customerId], "Customer listed twice: " + customerId);
+            seen[customerId] = true;
+        });
+        assertEquals(threads * perThread, bucket.size());
+        for (int customerId = 1; customerId < seen.length; customerId++) {
+            assertTrue(seen[customerId], "Customer missing: " + customerId);
+        }
+    }
+
+    private static List<Integer> customers(StakeBucket bucket) {
+        List<Integer> customers = new ArrayList<>();
+        bucket.forEach(customers::add);
+        return customers;
+    }
+}
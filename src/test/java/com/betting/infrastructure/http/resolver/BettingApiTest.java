@@ -1,8 +1,14 @@
 package com.betting.infrastructure.http.resolver;
 
+import com.betting.api.controller.OfferController;
 import com.betting.api.controller.SessionController;
 import com.betting.api.controller.StakeController;
+import com.betting.api.exception.BettingException;
+import com.betting.core.model.Leaderboard;
+import com.betting.core.model.OfferStatus;
 import com.betting.core.model.Session;
+import com.betting.core.model.StakeDistribution;
+import com.betting.core.model.StakeResult;
 import com.betting.core.service.SessionService;
 import com.betting.core.service.StakeService;
 import com.betting.infrastructure.http.interceptor.LoggingInterceptor;
@@ -21,6 +27,14 @@ import java.util.concurrent.Executors;
 
 import static io.restassured.RestAssured.given;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @TestInstance(TestInstance.Lifecycle.PER_CLASS)
@@ -34,6 +48,7 @@ class BettingApiTest {
     void startServer() throws Exception {
         // 创建 Mock 服务
         mockSessionService = Mockito.mock(SessionService.class);
+        when(mockSessionService.authenticate(anyString())).thenCallRealMethod();
         mockStakeService = Mockito.mock(StakeService.class);
 
         // Mock 行为
@@ -41,22 +56,36 @@ class BettingApiTest {
         when(mockSessionService.createOrGetSession(1234)).thenReturn(session);
         when(mockSessionService.validateSession("SESSION1234")).thenReturn(true);
         when(mockSessionService.getCustomerId("SESSION1234")).thenReturn(1234);
-        List<String> top20Stakes = List.of("1234=1000,5678=500");
-        when(mockStakeService.getTop20Stakes(5678))
+        Leaderboard top20Stakes = new Leaderboard(1, new int[]{1234, 5678}, new int[]{1000, 500});
+        when(mockStakeService.getLeaderboard(5678))
                 .thenReturn(top20Stakes);
+        when(mockStakeService.getStakes(5678, 40, 2))
+                .thenReturn(new Leaderboard(1, new int[]{41, 42}, new int[]{90, 80}));
+        when(mockStakeService.getEntryThreshold(5678, 100)).thenReturn(71);
+        when(mockStakeService.getRank(5678, 1234)).thenReturn(4_321);
+        when(mockStakeService.getRecentLeaderboard(5678, 120_000))
+                .thenReturn(new Leaderboard(2, new int[]{5678}, new int[]{750}));
+        when(mockStakeService.getStakeDistribution(5678))
+                .thenReturn(new StakeDistribution(3, 1_750, 500, 1_000, 1_000, 1_000));
+        when(mockStakeService.getCustomerLeaderboard())
+                .thenReturn(new Leaderboard(3, new int[]{1234}, new int[]{25_000}));
+        when(mockStakeService.submitStakes(1234, new int[]{1, 2, 0}, new int[]{100, 200, 300}))
+                .thenReturn(new StakeResult[]{StakeResult.ACCEPTED, StakeResult.ACCEPTED, StakeResult.INVALID_BET_OFFER});
 
         // 创建 Router
         Router router = new Router(List.of(
                 new PathParamResolver(),
                 new QueryParamResolver(),
                 new BodyParamResolver(),
+                new HeaderParamResolver(),
                 new HttpExchangeResolver()
         ));
 
         router.addInterceptors(new LoggingInterceptor());
         router.registerControllers(
                 new SessionController(mockSessionService),
-                new StakeController(mockSessionService, mockStakeService)
+                new StakeController(mockSessionService, mockStakeService),
+                new OfferController(mockStakeService, "ADMIN-TOKEN")
         );
 
         // 启动 HttpServer
@@ -94,6 +123,132 @@ class BettingApiTest {
                 .statusCode(200)
                 .body(equalTo("1234=1000,5678=500"));
     }
-}
 
+    @Test
+    void testPostStakes() {
+        given()
+                .body("1=100, 2=200,0=300")
+                .post("/stakes?sessionkey=SESSION1234")
+                .then()
+                .statusCode(200)
+                .body(equalTo("AAO"));
+    }
+
+    @Test
+    void testPostStakesRejectsOversizedBatch() {
+        StakeController controller = new StakeController(mockSessionService, mockStakeService);
+        String body = "1=100,".repeat(10_000) + "2=200";
+
+        BettingException e = assertThrows(BettingException.class, () -> controller.postStakes("SESSION1234", body));
+        assertEquals(BettingException.ErrorCode.INVALID_PARAMETER_FORMAT, e.getErrorCode());
+
+        // A trailing comma adds no item
+        assertEquals("AAO", controller.postStakes("SESSION1234", "1=100, 2=200,0=300,"));
+    }
+
+    @Test
+    void testPutStatusRequiresAdminToken() {
+        OfferController controller = new OfferController(mockStakeService, "ADMIN-TOKEN");
+        for (String token : new String[]{null, "", "SESSION1234", "ADMIN-TOKEN "}) {
+            BettingException e = assertThrows(BettingException.class,
+                    () -> controller.putStatus(9012, token, "CLOSED"));
+            assertEquals(BettingException.ErrorCode.ADMIN_REQUIRED, e.getErrorCode());
+        }
+        // Without a configured token no change is allowed
+        assertThrows(BettingException.class,
+                () -> new OfferController(mockStakeService, "").putStatus(9012, "", "CLOSED"));
+
+        given()
+                .body("{\"status\": \"CLOSED\"}")
+                .put("/9012/status")
+                .then()
+                .statusCode(not(equalTo(200)));
+        verify(mockStakeService, never()).setOfferStatus(anyInt(), any());
+
+        given()
+                .header("X-Admin-Token", "ADMIN-TOKEN")
+                .body("{\"status\": \"SUSPENDED\"}")
+                .put("/9012/status")
+                .then()
+                .statusCode(200);
+        verify(mockStakeService).setOfferStatus(9012, OfferStatus.SUSPENDED);
+    }
+
+    @Test
+    void testGetHighStakesNotModified() {
+        String etag = given()
+                .get("/5678/highstakes")
+                .then()
+                .statusCode(200)
+                .extract().header("ETag");
+
+        given()
+                .header("If-None-Match", etag)
+                .get("/5678/highstakes")
+                .then()
+                .statusCode(304)
+                .header("ETag", equalTo(etag))
+                .body(equalTo(""));
+
+        given()
+                .header("If-None-Match", "\"0-1\"")
+                .get("/5678/highstakes")
+                .then()
+                .statusCode(200)
+                .body(equalTo("1234=1000,5678=500"));
+    }
 
+    @Test
+    void testGetHighStakesPage() {
+        given()
+                .get("/5678/highstakes?offset=40&limit=2")
+                .then()
+                .statusCode(200)
+                .body(equalTo("41=90,42=80"));
+    }
+
+    @Test
+    void testGetRecentHighStakes() {
+        given()
+                .get("/5678/highstakes/recent?minutes=2")
+                .then()
+                .statusCode(200)
+                .body(equalTo("5678=750"));
+    }
+
+    @Test
+    void testGetStakeDistribution() {
+        given()
+                .get("/5678/distribution")
+                .then()
+                .statusCode(200)
+                .body(equalTo("count=3,sum=1750,p50=500,p90=1000,p99=1000,max=1000"));
+    }
+
+    @Test
+    void testGetEntryThreshold() {
+        given()
+                .get("/5678/threshold?n=100")
+                .then()
+                .statusCode(200)
+                .body(equalTo("71"));
+    }
+
+    @Test
+    void testGetRank() {
+        given()
+                .get("/5678/rank/1234")
+                .then()
+                .statusCode(200)
+                .body(equalTo("4321"));
+    }
+
+    @Test
+    void testGetCustomerHighStakes() {
+        given()
+                .get("/highstakes")
+                .then()
+                .statusCode(200)
+                .body(equalTo("1234=25000"));
+    }
+}
@@ -3,6 +3,7 @@ package com.betting.infrastructure.http.router;
 
 import com.betting.api.controller.SessionController;
 import com.betting.api.controller.StakeController;
+import com.betting.core.model.Leaderboard;
 import com.betting.core.model.Session;
 import com.betting.core.service.SessionService;
 import com.betting.core.service.StakeService;
@@ -28,6 +29,7 @@ import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.when;
 
@@ -39,6 +41,7 @@ class RouterTest {
     @BeforeEach
     void setUp() {
         mockSessionService = Mockito.mock(SessionService.class);
+        when(mockSessionService.authenticate(anyString())).thenCallRealMethod();
         mockStakeService = Mockito.mock(StakeService.class);
 
         router = new Router(List.of(
@@ -88,8 +91,8 @@ class RouterTest {
     void testGetHighStakes() throws Exception {
         when(mockSessionService.validateSession("SESSION1234")).thenReturn(true);
         when(mockSessionService.getCustomerId("SESSION1234")).thenReturn(5678);
-        List<String> highStakes = List.of("1234=1000", "5678=500"); // Using List.of() for immutable list
-        when(mockStakeService.getTop20Stakes(5678)).thenReturn(highStakes);
+        Leaderboard highStakes = new Leaderboard(1, new int[]{1234, 5678}, new int[]{1000, 500});
+        when(mockStakeService.getLeaderboard(5678)).thenReturn(highStakes);
 
         HttpExchange exchange = MockHttpExchange.create("GET", "/5678/highstakes", null);
 
@@ -0,0 +1,166 @@
+package com.betting.infrastructure.http.stream;
+
+import com.betting.api.controller.StakeController;
+import com.betting.api.controller.StreamController;
+import com.betting.core.service.StakeService;
+import com.betting.core.service.impl.StakeServiceImpl;
+import com.betting.infrastructure.http.resolver.HeaderParamResolver;
+import com.betting.infrastructure.http.resolver.HttpExchangeResolver;
+import com.betting.infrastructure.http.resolver.PathParamResolver;
+import com.betting.infrastructure.http.resolver.QueryParamResolver;
+import com.betting.infrastructure.http.router.Router;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("LeaderboardBroadcaster Tests")
+class LeaderboardBroadcasterTest {
+
+    private StakeService stakeService;
+    private LeaderboardBroadcaster broadcaster;
+    private HttpServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        stakeService = new StakeServiceImpl();
+        broadcaster = new LeaderboardBroadcaster(stakeService, 20, 60_000, 2, 2);
+
+        Router router = new Router(List.of(new PathParamResolver(), new QueryParamResolver(),
+                new HeaderParamResolver(), new HttpExchangeResolver()));
+        router.registerControllers(new StreamController(broadcaster),
+                new StakeController(null, stakeService, broadcaster));
+        server = HttpServer.create(new InetSocketAddress(0), 0);
+        server.createContext("/", router::route);
+        server.setExecutor(Executors.newFixedThreadPool(4));
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        broadcaster.shutdown();
+        server.stop(0);
+    }
+
+    @Test
+    @DisplayName("Should push the current leaderboard, then only changes, to every subscriber")
+    void shouldPushLeaderboardChanges() throws Exception {
+        // Given
+        stakeService.submitStake(1, 7, 100);
+        BufferedReader first = open(7, null);
+        BufferedReader second = open(7, null);
+
+        // Then - both get the current leaderboard
+        assertEquals(List.of("id: 1", "event: leaderboard", "data: 1=100"), readEvent(first));
+        assertEquals(List.of("id: 1", "event: leaderboard", "data: 1=100"), readEvent(second));
+
+        // When - a submit on another offer changes nothing here, a raise does
+        stakeService.submitStake(1, 8, 500);
+        stakeService.submitStake(2, 7, 200);
+
+        // Then
+        assertEquals(List.of("id: 2", "event: leaderboard", "data: 2=200,1=100"), readEvent(first));
+        assertEquals(List.of("id: 2", "event: leaderboard", "data: 2=200,1=100"), readEvent(second));
+        assertEquals(2, broadcaster.subscriberCount());
+    }
+
+    @Test
+    @DisplayName("Should resume from Last-Event-ID and refuse streams over the limit")
+    void shouldResumeAndLimitStreams() throws Exception {
+        // Given
+        stakeService.submitStake(1, 7, 100);
+        BufferedReader resumed = open(7, "1");
+        open(7, null);
+
+        // When
+        HttpURLConnection refused = (HttpURLConnection) URI.create(url(7)).toURL().openConnection();
+
+        // Then - the resumed stream skips the version it has
+        assertEquals(503, refused.getResponseCode());
+        stakeService.submitStake(1, 7, 300);
+        assertEquals(List.of("id: 2", "event: leaderboard", "data: 1=300"), readEvent(resumed));
+    }
+
+    @Test
+    @DisplayName("Should hold a long poll until the leaderboard changes, or answer 304 when the wait ends")
+    void shouldHoldLongPolls() throws Exception {
+        // Given
+        stakeService.submitStake(1, 7, 100);
+        HttpURLConnection first = poll(7, null, 0);
+        String etag = first.getHeaderField("ETag");
+        assertEquals(200, first.getResponseCode());
+
+        // When - one poll waits for a change, another one runs out of time
+        CompletableFuture<HttpURLConnection> changed = CompletableFuture.supplyAsync(() -> poll(7, etag, 5));
+        HttpURLConnection unchanged = poll(8, poll(8, null, 0).getHeaderField("ETag"), 1);
+        while (broadcaster.pollCount() == 0) {
+            Thread.sleep(5);
+        }
+        stakeService.submitStake(2, 7, 200);
+
+        // Then
+        HttpURLConnection response = changed.get(5, TimeUnit.SECONDS);
+        assertEquals(200, response.getResponseCode());
+        assertEquals("2=200,1=100", new String(response.getInputStream().readAllBytes(), StandardCharsets.UTF_8));
+        assertNotEquals(etag, response.getHeaderField("ETag"));
+        assertEquals(304, unchanged.getResponseCode());
+        assertEquals(0, broadcaster.pollCount());
+    }
+
+    private HttpURLConnection poll(int betOfferId, String etag, int waitSeconds) {
+        try {
+            String url = "http://localhost:" + server.getAddress().getPort() + "/" + betOfferId
+                    + "/highstakes?wait=" + waitSeconds;
+            HttpURLConnection connection = (HttpURLConnection) URI.create(url).toURL().openConnection();
+            connection.setReadTimeout(10_000);
+            if (etag != null) {
+                connection.setRequestProperty("If-None-Match", etag);
+            }
+            connection.getResponseCode();
+            return connection;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private BufferedReader open(int betOfferId, String lastEventId) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) URI.create(url(betOfferId)).toURL().openConnection();
+        connection.setReadTimeout(5_000);
+        if (lastEventId != null) {
+            connection.setRequestProperty("Last-Event-ID", lastEventId);
+        }
+        assertEquals(200, connection.getResponseCode());
+        assertEquals("text/event-stream;charset=UTF-8", connection.getContentType());
+        return new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    private String url(int betOfferId) {
+        return "http://localhost:" + server.getAddress().getPort() + "/" + betOfferId + "/highstakes/stream";
+    }
+
+    private static List<String> readEvent(BufferedReader reader) throws IOException {
+        List<String> lines = new ArrayList<>();
+        String line;
+        while ((line = reader.readLine()) != null && !line.isEmpty()) {
+            lines.add(line);
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,119 @@
+package com.betting.infrastructure.persistence;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("StakeLog Tests")
+class StakeLogTest {
+
+    private static final int SEGMENT_BYTES = 64 * StakeLog.RECORD_BYTES;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("Should replay every record across rotated segments after a restart")
+    void shouldReplayEveryRecordAfterRestart() throws Exception {
+        // Given - concurrent appends spanning many small segments
+        int threads = 4;
+        int perThread = 1_000;
+        StakeLog log = new StakeLog(directory, SEGMENT_BYTES, 5);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int base = t * perThread;
+                futures.add(executor.submit(() -> {
+                    for (int i = 1; i <= perThread; i++) {
+                        log.append(base + i, 1 + i % 7, i);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        log.shutdown();
+
+        // When
+        StakeLog reopened = new StakeLog(directory, SEGMENT_BYTES, 5);
+        int[] stakes = new int[threads * perThread + 1];
+        long replayed = reopened.replay((customerId, betOfferId, stake) -> {
+            assertEquals(0, stakes[customerId], "Record replayed twice: " + customerId);
+            assertEquals(1 + stake % 7, betOfferId);
+            stakes[customerId] = stake;
+        });
+        reopened.shutdown();
+
+        // Then
+        assertEquals(threads * perThread, replayed);
+        for (int customerId = 1; customerId < stakes.length; customerId++) {
+            assertEquals((customerId - 1) % perThread + 1, stakes[customerId]);
+        }
+    }
+
+    @Test
+    @DisplayName("Should replay older runs but not the records of the current one")
+    void shouldReplayOnlyPreviousRuns() throws Exception {
+        // Given
+        StakeLog first = new StakeLog(directory, SEGMENT_BYTES, 5);
+        first.append(1, 1, 100);
+        first.shutdown();
+        StakeLog second = new StakeLog(directory, SEGMENT_BYTES, 5);
+        second.append(2, 1, 200);
+        second.shutdown();
+
+        // When
+        StakeLog third = new StakeLog(directory, SEGMENT_BYTES, 5);
+        third.append(3, 1, 300);
+        List<Integer> customers = new ArrayList<>();
+        third.replay((customerId, betOfferId, stake) -> customers.add(customerId));
+        third.shutdown();
+
+        // Then
+        assertEquals(List.of(1, 2), customers);
+    }
+
+    @Test
+    @DisplayName("Should skip torn records")
+    void shouldSkipTornRecords() throws Exception {
+        // Given
+        StakeLog log = new StakeLog(directory, SEGMENT_BYTES, 5);
+        log.append(1, 1, 100);
+        log.append(2, 1, 200);
+        log.shutdown();
+
+        // When - corrupt the stake of the first record
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.sorted().findFirst().orElseThrow();
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4).putInt(0, 999), 8);
+        }
+        List<Integer> customers = new ArrayList<>();
+        StakeLog reopened = new StakeLog(directory, SEGMENT_BYTES, 5);
+        reopened.replay((customerId, betOfferId, stake) -> customers.add(customerId));
+        reopened.shutdown();
+
+        // Then
+        assertEquals(List.of(2), customers);
+    }
+}
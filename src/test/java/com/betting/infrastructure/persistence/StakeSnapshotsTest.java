@@ -0,0 +1,165 @@
+package com.betting.infrastructure.persistence;
+
+import com.betting.core.model.OfferSnapshot;
+import com.betting.core.model.OfferStatus;
+import com.betting.core.service.StakeService;
+import com.betting.core.service.impl.OffHeapStakeServiceImpl;
+import com.betting.core.service.impl.ShardedStakeServiceImpl;
+import com.betting.core.service.impl.StakeServiceImpl;
+import com.betting.core.service.impl.TopKStakeServiceImpl;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("StakeSnapshots Tests")
+class StakeSnapshotsTest {
+
+    private static final int SEGMENT_BYTES = 64 * StakeLog.RECORD_BYTES;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("Should restore every offer into each engine, keeping tie order")
+    void shouldRestoreEveryOfferIntoEachEngine() throws Exception {
+        // Given - ties on the leaderboard arrive in descending customer order
+        StakeService source = new StakeServiceImpl();
+        for (int offer = 1; offer <= 50; offer++) {
+            for (int customerId = 300; customerId >= 1; customerId--) {
+                source.submitStake(customerId, offer, customerId % 40 * 10 + offer);
+            }
+        }
+        StakeSnapshots snapshots = new StakeSnapshots(directory, 3);
+        snapshots.write(source, 7);
+
+        // When / Then
+        for (StakeService target : List.of(new StakeServiceImpl(), new TopKStakeServiceImpl(),
+                new ShardedStakeServiceImpl(2, 64), new OffHeapStakeServiceImpl())) {
+            assertEquals(7, new StakeSnapshots(directory, 5).restore(target));
+            if (target instanceof ShardedStakeServiceImpl sharded) {
+                sharded.shutdown();
+            }
+            assertEquals(export(source).keySet(), export(target).keySet());
+            for (int offer = 1; offer <= 50; offer++) {
+                assertEquals(source.getTop20Stakes(offer), target.getTop20Stakes(offer));
+                assertEquals(Arrays.toString(export(source).get(offer).stakes()),
+                        Arrays.toString(export(target).get(offer).stakes()));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Should replay only the log after the snapshot cut, including status changes")
+    void shouldReplayOnlyLogAfterCut() throws Exception {
+        // Given
+        StakeService service = new StakeServiceImpl();
+        StakeLog log = new StakeLog(directory, SEGMENT_BYTES, 5);
+        service.attachJournal(log);
+        StakeSnapshots snapshots = new StakeSnapshots(directory.resolve("snapshots"), 2);
+        for (int customerId = 1; customerId <= 200; customerId++) {
+            service.submitStake(customerId, 1, customerId);
+        }
+        service.setOfferStatus(3, OfferStatus.CLOSED);
+        long cut = snapshots.take(service, log);
+        service.submitStake(5, 1, 1_000);
+        service.submitStake(7, 2, 500);
+        service.setOfferStatus(1, OfferStatus.SUSPENDED);
+        log.shutdown();
+
+        // When
+        StakeService restored = new StakeServiceImpl();
+        StakeLog reopened = new StakeLog(directory, SEGMENT_BYTES, 5);
+        assertEquals(cut, new StakeSnapshots(directory.resolve("snapshots"), 2).restore(restored));
+        long replayed = reopened.replay(cut, restored.replayTarget());
+        reopened.shutdown();
+
+        // Then
+        assertEquals(3, replayed);
+        assertEquals(OfferStatus.SUSPENDED, restored.getOfferStatus(1));
+        assertEquals(OfferStatus.OPEN, restored.getOfferStatus(2));
+        assertEquals(OfferStatus.CLOSED, restored.getOfferStatus(3));
+        assertEquals(service.getTop20Stakes(1), restored.getTop20Stakes(1));
+        assertEquals(List.of("7=500"), restored.getTop20Stakes(2));
+        assertEquals(200, export(restored).get(1).size());
+    }
+
+    @Test
+    @DisplayName("Should replay status records older than a snapshot that holds the offer closed")
+    void shouldReplayStatusRecordsOlderThanClose() throws Exception {
+        for (StakeService target : List.of(new StakeServiceImpl(), new ShardedStakeServiceImpl(2, 64),
+                new OffHeapStakeServiceImpl())) {
+            // Given - the offer is suspended, then closed, between the log cut and the export
+            StakeService service = new StakeServiceImpl();
+            Path logDirectory = Files.createTempDirectory(directory, "log");
+            StakeLog log = new StakeLog(logDirectory, SEGMENT_BYTES, 5);
+            service.attachJournal(log);
+            service.submitStake(1, 1, 100);
+            long cut = log.rotate();
+            service.setOfferStatus(1, OfferStatus.SUSPENDED);
+            service.setOfferStatus(1, OfferStatus.CLOSED);
+            StakeSnapshots snapshots = new StakeSnapshots(Files.createTempDirectory(directory, "snapshots"), 2);
+            snapshots.write(service, cut);
+            log.shutdown();
+
+            // When
+            StakeLog reopened = new StakeLog(logDirectory, SEGMENT_BYTES, 5);
+            assertEquals(cut, snapshots.restore(target));
+            long replayed = reopened.replay(cut, target.replayTarget());
+            reopened.shutdown();
+            if (target instanceof ShardedStakeServiceImpl sharded) {
+                sharded.shutdown();
+            }
+
+            // Then
+            assertEquals(2, replayed);
+            assertEquals(OfferStatus.CLOSED, target.getOfferStatus(1));
+            assertEquals(List.of("1=100"), target.getTop20Stakes(1));
+        }
+    }
+
+    @Test
+    @DisplayName("Should fall back to the previous snapshot when the newest is damaged")
+    void shouldFallBackToPreviousSnapshot() throws Exception {
+        // Given
+        StakeService service = new StakeServiceImpl();
+        StakeSnapshots snapshots = new StakeSnapshots(directory, 1);
+        service.submitStake(1, 1, 100);
+        snapshots.write(service, 3);
+        service.submitStake(2, 1, 200);
+        snapshots.write(service, 4);
+
+        // When - flip a byte of the newest snapshot
+        Path partition;
+        try (Stream<Path> files = Files.list(directory.resolve("snapshot-4"))) {
+            partition = files.filter(path -> path.toString().endsWith(".bin")).findFirst().orElseThrow();
+        }
+        try (FileChannel channel = FileChannel.open(partition, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0x55}), 2);
+        }
+        StakeService restored = new StakeServiceImpl();
+        long cut = snapshots.restore(restored);
+
+        // Then
+        assertEquals(3, cut);
+        assertEquals(List.of("1=100"), restored.getTop20Stakes(1));
+    }
+
+    private static Map<Integer, OfferSnapshot> export(StakeService service) {
+        Map<Integer, OfferSnapshot> offers = new HashMap<>();
+        service.exportOffers(snapshot -> offers.put(snapshot.betOfferId(), snapshot));
+        return offers;
+    }
+}
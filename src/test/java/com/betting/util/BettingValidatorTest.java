@@ -41,6 +41,11 @@ class BettingValidatorTest {
                 }
                 return 0; // Session not found
             }
+
+            @Override
+            public boolean invalidateSession(String sessionKey) {
+                return validateSession(sessionKey);
+            }
         };
     }
 
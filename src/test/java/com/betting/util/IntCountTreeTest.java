@@ -0,0 +1,188 @@
+package com.betting.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("IntCountTree Tests")
+class IntCountTreeTest {
+
+    @Test
+    @DisplayName("Should count values above and find the n-th highest, counting duplicates")
+    void shouldAnswerOrderStatistics() {
+        IntCountTree tree = new IntCountTree(1_000_000);
+        tree.add(500);
+        tree.add(500);
+        tree.add(0);
+        tree.add(1_000_000);
+        tree.add(2048);
+
+        assertEquals(5, tree.size());
+        assertEquals(0, tree.countAbove(1_000_000));
+        assertEquals(1, tree.countAbove(2048));
+        assertEquals(2, tree.countAbove(500));
+        assertEquals(4, tree.countAbove(499));
+        assertEquals(4, tree.countAbove(0));
+        assertEquals(5, tree.countAbove(-1));
+
+        assertEquals(1_000_000, tree.highest(1));
+        assertEquals(2048, tree.highest(2));
+        assertEquals(500, tree.highest(3));
+        assertEquals(500, tree.highest(4));
+        assertEquals(0, tree.highest(5));
+        assertEquals(-1, tree.highest(6));
+        assertEquals(-1, tree.highest(0));
+
+        tree.remove(500);
+        assertEquals(4, tree.size());
+        assertEquals(0, tree.highest(4));
+        assertEquals(3, tree.countAbove(0));
+    }
+
+    @Test
+    @DisplayName("Should match a sorted array on random values")
+    void shouldMatchSortedArray() {
+        IntCountTree tree = new IntCountTree(5_000);
+        SplittableRandom random = new SplittableRandom(7);
+        int[] values = new int[3_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextInt(5_001);
+            tree.add(values[i]);
+        }
+        Arrays.sort(values);
+
+        for (int n = 1; n <= values.length; n += 37) {
+            assertEquals(values[values.length - n], tree.highest(n));
+        }
+        for (int probe = 0; probe <= 5_000; probe += 13) {
+            int above = values.length - upperBound(values, probe);
+            assertEquals(above, tree.countAbove(probe));
+        }
+    }
+
+    @Test
+    @DisplayName("Should reject values outside the domain")
+    void shouldRejectValuesOutsideDomain() {
+        IntCountTree tree = new IntCountTree(100);
+
+        assertThrows(IllegalArgumentException.class, () -> tree.add(101));
+        assertThrows(IllegalArgumentException.class, () -> tree.add(-1));
+        assertThrows(IllegalArgumentException.class, () -> new IntCountTree(-1));
+    }
+
+    @Test
+    @DisplayName("Should keep exact counts under concurrent moves")
+    void shouldKeepExactCountsUnderConcurrentMoves() throws Exception {
+        IntCountTree tree = new IntCountTree(1_000_000);
+        int threads = 8;
+        int moves = 20_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            int seed = t;
+            futures.add(executor.submit(() -> {
+                // Each thread moves one value upwards, like a customer raising a stake
+                SplittableRandom random = new SplittableRandom(seed);
+                int value = random.nextInt(1_000);
+                tree.add(value);
+                for (int i = 0; i < moves; i++) {
+                    int next = Math.min(value + 1 + random.nextInt(40), 1_000_000);
+                    tree.add(next);
+                    tree.remove(value);
+                    value = next;
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(threads, tree.size());
+        assertEquals(threads, tree.countAbove(-1));
+        assertTrue(tree.highest(threads) > 0);
+        assertEquals(-1, tree.highest(threads + 1));
+    }
+
+    @Test
+    @DisplayName("Should release emptied blocks and keep exact counts as values jump between blocks")
+    void shouldReleaseEmptiedBlocks() throws Exception {
+        // Given
+        IntCountTree tree = new IntCountTree(1_000_000);
+        tree.add(5);
+        tree.add(500_000);
+        tree.add(500_001);
+        assertEquals(2, tree.blocksInUse());
+
+        // When
+        tree.remove(500_000);
+        assertEquals(2, tree.blocksInUse());
+        tree.remove(500_001);
+        tree.remove(5);
+
+        // Then
+        assertEquals(0, tree.blocksInUse());
+        assertEquals(0, tree.size());
+        assertEquals(-1, tree.highest(1));
+
+        // When - every move leaves one block and enters another, from many threads
+        int threads = 8;
+        int moves = 20_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int seed = t;
+            futures.add(executor.submit(() -> {
+                SplittableRandom random = new SplittableRandom(seed);
+                int value = random.nextInt(1_000_001);
+                tree.add(value);
+                for (int i = 0; i < moves; i++) {
+                    int next = random.nextInt(1_000_001);
+                    tree.add(next);
+                    tree.remove(value);
+                    value = next;
+                }
+                return value;
+            }));
+        }
+        int[] values = new int[threads];
+        for (int t = 0; t < threads; t++) {
+            values[t] = futures.get(t).get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        // Then - exactly the final values are counted, in at most one block each
+        Arrays.sort(values);
+        for (int n = 1; n <= threads; n++) {
+            assertEquals(values[threads - n], tree.highest(n));
+            int value = values[threads - n];
+            assertEquals(Arrays.stream(values).filter(v -> v > value).count(), tree.countAbove(value));
+        }
+        assertTrue(tree.blocksInUse() <= threads);
+    }
+
+    private static int upperBound(int[] sorted, int value) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] <= value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
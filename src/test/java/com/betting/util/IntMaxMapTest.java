@@ -0,0 +1,142 @@
+package com.betting.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("IntMaxMap Tests")
+class IntMaxMapTest {
+
+    @Test
+    @DisplayName("Should only raise values")
+    void shouldOnlyRaiseValues() {
+        IntMaxMap map = new IntMaxMap();
+
+        assertEquals(IntMaxMap.NO_VALUE, map.get(7));
+        assertEquals(IntMaxMap.NO_VALUE, map.raise(7, 100));
+        assertEquals(100, map.raise(7, 50));
+        assertEquals(100, map.get(7));
+        assertEquals(100, map.raise(7, 200));
+        assertEquals(200, map.get(7));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    @DisplayName("Should accept zero values")
+    void shouldAcceptZeroValues() {
+        IntMaxMap map = new IntMaxMap();
+
+        assertEquals(IntMaxMap.NO_VALUE, map.raise(1, 0));
+        assertEquals(0, map.get(1));
+        assertEquals(0, map.raise(1, 0));
+    }
+
+    @Test
+    @DisplayName("Should reject invalid keys and values")
+    void shouldRejectInvalidKeysAndValues() {
+        IntMaxMap map = new IntMaxMap();
+
+        assertThrows(IllegalArgumentException.class, () -> map.raise(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> map.raise(-1, 1));
+        assertThrows(IllegalArgumentException.class, () -> map.raise(1, -1));
+        assertThrows(IllegalArgumentException.class, () -> map.get(0));
+    }
+
+    @Test
+    @DisplayName("Should keep all entries across resizes")
+    void shouldKeepAllEntriesAcrossResizes() {
+        IntMaxMap map = new IntMaxMap();
+        int keys = 100_000;
+
+        for (int key = 1; key <= keys; key++) {
+            map.raise(key, key % 1000);
+        }
+        for (int key = 1; key <= keys; key++) {
+            map.raise(key, key % 1000 + 1);
+        }
+
+        assertEquals(keys, map.size());
+        for (int key = 1; key <= keys; key++) {
+            assertEquals(key % 1000 + 1, map.get(key));
+        }
+    }
+
+    @Test
+    @DisplayName("Should visit every existing entry while writers keep resizing")
+    void shouldVisitExistingEntriesDuringResizes() throws Exception {
+        // Given
+        IntMaxMap map = new IntMaxMap();
+        int keys = 10_000;
+        for (int key = 1; key <= keys; key++) {
+            map.raise(key, key);
+        }
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        // When - a writer raises old keys and adds many new ones while we iterate
+        try {
+            Future<?> writer = executor.submit(() -> {
+                for (int key = 1; key <= keys * 20; key++) {
+                    map.raise(key, key + 1);
+                }
+            });
+            int[] seen = new int[keys + 1];
+            map.forEach((key, value) -> {
+                if (key <= keys) {
+                    seen[key]++;
+                    assertTrue(value == key || value == key + 1);
+                }
+            });
+            writer.get();
+
+            // Then
+            for (int key = 1; key <= keys; key++) {
+                assertEquals(1, seen[key], "Key visited " + seen[key] + " times: " + key);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("Should keep the maximum under concurrent raises and resizes")
+    void shouldKeepMaximumUnderConcurrentRaises() throws Exception {
+        IntMaxMap map = new IntMaxMap();
+        int threads = 8;
+        int keys = 20_000;
+        AtomicInteger inserts = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int offset = t;
+            futures.add(executor.submit(() -> {
+                for (int key = 1; key <= keys; key++) {
+                    if (map.raise(key, (key + offset) % threads) == IntMaxMap.NO_VALUE) {
+                        inserts.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+        // Exactly one writer observes each key as new, and every key ends at the maximum offered
+        assertEquals(keys, inserts.get());
+        assertEquals(keys, map.size());
+        for (int key = 1; key <= keys; key++) {
+            assertEquals(threads - 1, map.get(key));
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.betting.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("LogHistogram Tests")
+class LogHistogramTest {
+
+    @Test
+    @DisplayName("Should keep count and sum of current values as they are replaced")
+    void shouldTrackReplacedValues() {
+        LogHistogram histogram = new LogHistogram(1_000_000);
+        histogram.replace(-1, 10);
+        histogram.replace(-1, 20);
+        histogram.replace(-1, 30);
+        histogram.replace(10, 40);
+        histogram.replace(40, 40);
+
+        assertEquals(3, histogram.count());
+        assertEquals(90, histogram.sum());
+        // Values below 64 are exact
+        assertArrayEquals(new int[]{30, 40, 40, 20}, histogram.percentiles(50, 90, 100, 1));
+    }
+
+    @Test
+    @DisplayName("Should round percentiles up to within 1/32 of a sorted array's")
+    void shouldBoundPercentileError() {
+        LogHistogram histogram = new LogHistogram(1_000_000);
+        SplittableRandom random = new SplittableRandom(11);
+        int[] values = new int[10_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 1 + random.nextInt(1_000_000);
+            histogram.replace(-1, values[i]);
+        }
+        Arrays.sort(values);
+
+        for (double percent : new double[]{1, 25, 50, 90, 99, 99.9, 100}) {
+            int exact = values[(int) Math.ceil(percent / 100 * values.length) - 1];
+            int estimate = histogram.percentiles(percent)[0];
+            assertTrue(estimate >= exact, percent + ": " + estimate + " < " + exact);
+            assertTrue(estimate - exact <= exact / 32, percent + ": " + estimate + " vs " + exact);
+        }
+        assertEquals(Arrays.stream(values).asLongStream().sum(), histogram.sum());
+    }
+
+    @Test
+    @DisplayName("Should report zeros when empty and reject values outside the domain")
+    void shouldHandleEmptyAndInvalid() {
+        LogHistogram histogram = new LogHistogram(100);
+
+        assertArrayEquals(new int[]{0, 0}, histogram.percentiles(50, 99));
+        assertThrows(IllegalArgumentException.class, () -> histogram.replace(-1, 101));
+        assertThrows(IllegalArgumentException.class, () -> histogram.replace(5, -2));
+        assertThrows(IllegalArgumentException.class, () -> histogram.percentiles(0));
+
+        LogHistogram wide = new LogHistogram(Integer.MAX_VALUE);
+        wide.replace(-1, Integer.MAX_VALUE);
+        assertArrayEquals(new int[]{Integer.MAX_VALUE}, wide.percentiles(50));
+    }
+
+    @Test
+    @DisplayName("Should keep exact count and sum under concurrent replacements")
+    void shouldStayExactUnderConcurrentReplacements() throws Exception {
+        LogHistogram histogram = new LogHistogram(1_000_000);
+        int threads = 8;
+        int moves = 20_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Integer>> futures = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            int seed = t;
+            futures.add(executor.submit(() -> {
+                // Each thread raises one value, like a customer raising a max stake
+                SplittableRandom random = new SplittableRandom(seed);
+                int value = random.nextInt(1_000);
+                histogram.replace(-1, value);
+                for (int i = 0; i < moves; i++) {
+                    int next = Math.min(value + 1 + random.nextInt(40), 1_000_000);
+                    histogram.replace(value, next);
+                    value = next;
+                }
+                return value;
+            }));
+        }
+        long sum = 0;
+        int max = 0;
+        for (Future<Integer> future : futures) {
+            int value = future.get(30, TimeUnit.SECONDS);
+            sum += value;
+            max = Math.max(max, value);
+        }
+        executor.shutdown();
+
+        assertEquals(threads, histogram.count());
+        assertEquals(sum, histogram.sum());
+        int top = histogram.percentiles(100)[0];
+        assertTrue(top >= max && top - max <= max / 32);
+    }
+}
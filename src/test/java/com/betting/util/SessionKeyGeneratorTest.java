@@ -0,0 +1,67 @@
+package com.betting.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("SessionKeyGenerator Tests")
+class SessionKeyGeneratorTest {
+
+    @Test
+    @DisplayName("Should generate letters-and-digits keys with unrelated neighbours")
+    void shouldGenerateUnrelatedKeys() {
+        SessionKeyGenerator generator = new SessionKeyGenerator();
+        String previous = generator.next();
+
+        for (int i = 0; i < 10_000; i++) {
+            String key = generator.next();
+            assertTrue(key.matches("[A-Z2-7]{" + SessionKeyGenerator.KEY_LENGTH + "}"), key);
+
+            // Consecutive sequence numbers differ in about half of the 128 key bits
+            byte[] a = Base32.decode(previous, 16);
+            byte[] b = Base32.decode(key, 16);
+            int differentBits = 0;
+            for (int j = 0; j < 16; j++) {
+                differentBits += Integer.bitCount((a[j] ^ b[j]) & 0xFF);
+            }
+            assertTrue(differentBits > 24, previous + " -> " + key);
+            previous = key;
+        }
+        assertNotEquals(new SessionKeyGenerator().next(), generator.next());
+    }
+
+    @Test
+    @DisplayName("Should never repeat a key across threads")
+    void shouldNeverRepeatAcrossThreads() throws Exception {
+        SessionKeyGenerator generator = new SessionKeyGenerator();
+        int threads = 8;
+        int keysPerThread = 100_000;
+        Set<String> keys = ConcurrentHashMap.newKeySet(threads * keysPerThread);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < keysPerThread; i++) {
+                    assertTrue(keys.add(generator.next()));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(threads * keysPerThread, keys.size());
+    }
+}
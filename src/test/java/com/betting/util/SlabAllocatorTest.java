@@ -0,0 +1,63 @@
+package com.betting.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("SlabAllocator Tests")
+class SlabAllocatorTest {
+
+    @Test
+    @DisplayName("Should round blocks up to a power of two and carve them from one slab")
+    void shouldCarveRoundedBlocksFromSlab() {
+        SlabAllocator slabs = new SlabAllocator(4096);
+
+        ByteBuffer first = slabs.allocate(100);
+        ByteBuffer second = slabs.allocate(128);
+        ByteBuffer small = slabs.allocate(1);
+
+        assertEquals(128, first.capacity());
+        assertEquals(128, second.capacity());
+        assertEquals(SlabAllocator.MIN_BLOCK_BYTES, small.capacity());
+        assertTrue(first.isDirect());
+        assertEquals(0, first.alignmentOffset(0, Long.BYTES));
+        assertEquals(2 * 4096, slabs.reservedBytes());
+        assertEquals(128 + 128 + 64, slabs.allocatedBytes());
+    }
+
+    @Test
+    @DisplayName("Should reuse freed blocks zeroed, without reserving more memory")
+    void shouldReuseFreedBlocksZeroed() {
+        SlabAllocator slabs = new SlabAllocator(4096);
+        ByteBuffer block = slabs.allocate(256);
+        block.putLong(8, 42L);
+        for (int i = 0; i < 15; i++) {
+            slabs.allocate(256);
+        }
+
+        slabs.free(block);
+        ByteBuffer reused = slabs.allocate(256);
+
+        assertEquals(0L, reused.getLong(8));
+        assertEquals(4096, slabs.reservedBytes());
+        assertEquals(4096, slabs.allocatedBytes());
+    }
+
+    @Test
+    @DisplayName("Should give blocks larger than a slab their own buffer and release it on free")
+    void shouldReleaseOversizedBlocks() {
+        SlabAllocator slabs = new SlabAllocator(4096);
+
+        ByteBuffer large = slabs.allocate(10_000);
+        assertEquals(16_384, large.capacity());
+        assertEquals(16_384, slabs.reservedBytes());
+
+        slabs.free(large);
+        assertEquals(0, slabs.reservedBytes());
+        assertEquals(0, slabs.allocatedBytes());
+        assertThrows(IllegalArgumentException.class, () -> new SlabAllocator(1000));
+    }
+}